@@ -0,0 +1,63 @@
+package com.chaintrust.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Bounded executors used to fan out independent upstream calls.
+ * Pools are sized explicitly so a slow upstream cannot grow threads without limit.
+ */
+@Configuration
+public class ConcurrencyConfig {
+
+    @Bean(destroyMethod = "shutdown")
+    public ExecutorService evaluationExecutor(
+            @Value("${loan.evaluation.threads:16}") int threads,
+            @Value("${loan.evaluation.queue-capacity:256}") int queueCapacity) {
+        // A saturated pool refuses the evaluation (503) rather than running it on the request thread,
+        // where it would block before the stage timeouts are attached.
+        return boundedPool("loan-eval", threads, queueCapacity, new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    @Bean(destroyMethod = "shutdown")
+    public ExecutorService walletFetchExecutor(
+            @Value("${wallet.fetch.threads:16}") int threads,
+            @Value("${wallet.fetch.queue-capacity:256}") int queueCapacity) {
+        // Back-pressure: when saturated the submitting evaluation thread runs the lookup itself; the
+        // evaluation's own features timeout still applies.
+        return boundedPool("wallet-fetch", threads, queueCapacity, new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
+    static ExecutorService boundedPool(String prefix, int threads, int queueCapacity, RejectedExecutionHandler whenSaturated) {
+        int size = Math.max(1, threads);
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(
+                size,
+                size,
+                60L,
+                TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, queueCapacity)),
+                namedDaemonThreads(prefix),
+                whenSaturated
+        );
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    private static ThreadFactory namedDaemonThreads(String prefix) {
+        AtomicInteger counter = new AtomicInteger(1);
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + "-" + counter.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
@@ -0,0 +1,13 @@
+package com.chaintrust.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+/**
+ * Enables {@code @Scheduled} background jobs. They share Spring's single scheduler thread, so
+ * each job only starts work and hands it off instead of blocking.
+ */
+@Configuration
+@EnableScheduling
+public class SchedulingConfig {
+}
@@ -4,13 +4,20 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.web3j.protocol.Web3j;
+import org.web3j.protocol.Web3jService;
 import org.web3j.protocol.http.HttpService;
 
 @Configuration
 public class Web3Config {
 
+    /** Shared transport; also used directly for JSON-RPC methods web3j has no wrapper for. */
     @Bean
-    public Web3j web3j(@Value("${eth.rpc-url}") String rpcUrl) {
-        return Web3j.build(new HttpService(rpcUrl));
+    public Web3jService web3jService(@Value("${eth.rpc-url}") String rpcUrl) {
+        return new HttpService(rpcUrl);
+    }
+
+    @Bean
+    public Web3j web3j(Web3jService web3jService) {
+        return Web3j.build(web3jService);
     }
 }
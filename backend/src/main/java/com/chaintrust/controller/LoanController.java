@@ -2,50 +2,67 @@ package com.chaintrust.controller;
 
 import com.chaintrust.model.LoanRequest;
 import com.chaintrust.model.LoanOutcomeRequest;
+import com.chaintrust.service.ChainOutboxService;
 import com.chaintrust.service.LoanDecisionAuditService;
 import com.chaintrust.service.LoanService;
 import jakarta.validation.Valid;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.CrossOrigin;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.server.ResponseStatusException;
 import org.springframework.http.HttpStatus;
 
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.regex.Pattern;
 
 @RestController
 @RequestMapping("/loan")
 @CrossOrigin(origins = "*")
 public class LoanController {
 
+    private static final Pattern DECISION_HASH = Pattern.compile("[0-9a-f]{64}");
+
     private final LoanService loanService;
     private final LoanDecisionAuditService loanDecisionAuditService;
+    private final ChainOutboxService chainOutboxService;
 
-    public LoanController(LoanService loanService, LoanDecisionAuditService loanDecisionAuditService) {
+    public LoanController(
+            LoanService loanService,
+            LoanDecisionAuditService loanDecisionAuditService,
+            ChainOutboxService chainOutboxService) {
         this.loanService = loanService;
         this.loanDecisionAuditService = loanDecisionAuditService;
+        this.chainOutboxService = chainOutboxService;
     }
 
     @PostMapping("/evaluate")
-    public ResponseEntity<Map<String, Object>> evaluate(@Valid @RequestBody LoanRequest request) {
-        return ResponseEntity.ok(loanService.evaluate(request));
+    public ResponseEntity<Map<String, Object>> evaluate(
+            @Valid @RequestBody LoanRequest request,
+            @RequestParam(defaultValue = "true") boolean explain) {
+        try {
+            return ResponseEntity.ok(loanService.evaluate(request, explain));
+        } catch (RejectedExecutionException ex) {
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Too many evaluations in progress; retry shortly", ex);
+        } catch (LoanService.StageTimeoutException ex) {
+            throw new ResponseStatusException(HttpStatus.GATEWAY_TIMEOUT, ex.getMessage(), ex);
+        }
     }
 
     @PostMapping("/outcome")
     public ResponseEntity<Map<String, Object>> updateOutcome(@Valid @RequestBody LoanOutcomeRequest request) {
         try {
-            String normalizedHash = request.getDecisionHash().toLowerCase();
-            if (normalizedHash.startsWith("0x")) {
-                normalizedHash = normalizedHash.substring(2);
-            }
             return ResponseEntity.ok(
                     loanDecisionAuditService.updateOutcome(
-                            normalizedHash,
+                            normalizeDecisionHash(request.getDecisionHash()),
                             request.getOutcome()
                     )
             );
@@ -54,8 +71,37 @@ public class LoanController {
         }
     }
 
+    /** On-chain status of a decision; the write happens after /evaluate has returned. */
+    @GetMapping("/{decisionHash}/chain-status")
+    public ResponseEntity<Map<String, Object>> chainStatus(@PathVariable String decisionHash) {
+        String hash = normalizeDecisionHash(decisionHash);
+        return chainOutboxService.status(hash)
+                .map(ResponseEntity::ok)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Decision hash not found: " + hash));
+    }
+
+    @GetMapping("/{decisionHash}/proof")
+    public ResponseEntity<Map<String, Object>> proof(@PathVariable String decisionHash) {
+        String hash = normalizeDecisionHash(decisionHash);
+        return chainOutboxService.proof(hash)
+                .map(ResponseEntity::ok)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "No anchor proof for decision hash: " + hash));
+    }
+
     @GetMapping("/training-data")
     public ResponseEntity<List<Map<String, Object>>> exportTrainingData() {
         return ResponseEntity.ok(loanDecisionAuditService.exportLabeledTrainingRows());
     }
+
+    /** Decision hashes are stored as 64 lowercase hex chars without the 0x prefix. */
+    private static String normalizeDecisionHash(String decisionHash) {
+        String hash = decisionHash.toLowerCase(Locale.ROOT);
+        if (hash.startsWith("0x")) {
+            hash = hash.substring(2);
+        }
+        if (!DECISION_HASH.matcher(hash).matches()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "decisionHash must be 64-char hex (0x optional)");
+        }
+        return hash;
+    }
 }
@@ -3,27 +3,68 @@ package com.chaintrust.controller;
 import com.chaintrust.model.RiskResult;
 import com.chaintrust.model.WalletFeatures;
 import com.chaintrust.service.RiskServiceClient;
+import jakarta.validation.ConstraintViolation;
 import jakarta.validation.Valid;
+import jakarta.validation.Validator;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.CrossOrigin;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.List;
+import java.util.Set;
 
 @RestController
 @RequestMapping("/risk")
 @CrossOrigin(origins = "*")
 public class RiskController {
 
+    private static final int MAX_BATCH_SIZE = 500;
+
     private final RiskServiceClient riskServiceClient;
+    private final Validator validator;
 
-    public RiskController(RiskServiceClient riskServiceClient) {
+    public RiskController(RiskServiceClient riskServiceClient, Validator validator) {
         this.riskServiceClient = riskServiceClient;
+        this.validator = validator;
     }
 
     @PostMapping
-    public ResponseEntity<RiskResult> score(@Valid @RequestBody WalletFeatures features) {
-        return ResponseEntity.ok(riskServiceClient.predict(features));
+    public ResponseEntity<RiskResult> score(
+            @Valid @RequestBody WalletFeatures features,
+            @RequestParam(defaultValue = "true") boolean explain) {
+        return ResponseEntity.ok(riskServiceClient.predict(features, explain));
+    }
+
+    @PostMapping("/batch")
+    public ResponseEntity<List<RiskResult>> scoreBatch(
+            @RequestBody List<WalletFeatures> features,
+            @RequestParam(defaultValue = "true") boolean explain) {
+        validateBatch(features);
+        return ResponseEntity.ok(riskServiceClient.predictAll(features, explain));
+    }
+
+    private void validateBatch(List<WalletFeatures> features) {
+        if (features.size() > MAX_BATCH_SIZE) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "Batch has " + features.size() + " items; at most " + MAX_BATCH_SIZE + " are allowed");
+        }
+        for (int i = 0; i < features.size(); i++) {
+            WalletFeatures item = features.get(i);
+            if (item == null) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "features[" + i + "] is null");
+            }
+            Set<ConstraintViolation<WalletFeatures>> violations = validator.validate(item);
+            if (!violations.isEmpty()) {
+                ConstraintViolation<WalletFeatures> first = violations.iterator().next();
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                        "features[" + i + "]." + first.getPropertyPath() + " " + first.getMessage());
+            }
+        }
     }
 }
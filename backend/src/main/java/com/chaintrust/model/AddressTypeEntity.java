@@ -0,0 +1,73 @@
+package com.chaintrust.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import jakarta.persistence.UniqueConstraint;
+
+import java.time.Instant;
+
+@Entity
+@Table(
+        name = "address_types",
+        uniqueConstraints = {
+                @UniqueConstraint(name = "uk_address_types_chain_addr", columnNames = {"chain_id", "address"})
+        }
+)
+public class AddressTypeEntity {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "chain_id", nullable = false)
+    private long chainId;
+
+    @Column(name = "address", nullable = false, length = 42)
+    private String address;
+
+    @Column(name = "smart_contract", nullable = false)
+    private boolean smartContract;
+
+    @Column(name = "checked_at", nullable = false)
+    private Instant checkedAt;
+
+    public Long getId() {
+        return id;
+    }
+
+    public long getChainId() {
+        return chainId;
+    }
+
+    public void setChainId(long chainId) {
+        this.chainId = chainId;
+    }
+
+    public String getAddress() {
+        return address;
+    }
+
+    public void setAddress(String address) {
+        this.address = address;
+    }
+
+    public boolean isSmartContract() {
+        return smartContract;
+    }
+
+    public void setSmartContract(boolean smartContract) {
+        this.smartContract = smartContract;
+    }
+
+    public Instant getCheckedAt() {
+        return checkedAt;
+    }
+
+    public void setCheckedAt(Instant checkedAt) {
+        this.checkedAt = checkedAt;
+    }
+}
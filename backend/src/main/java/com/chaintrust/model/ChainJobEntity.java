@@ -0,0 +1,291 @@
+package com.chaintrust.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.PrePersist;
+import jakarta.persistence.PreUpdate;
+import jakarta.persistence.Table;
+
+import java.time.Instant;
+
+/**
+ * Outbox row for writing one loan decision on chain. Created in the same transaction as the
+ * {@link LoanDecisionEntity} it belongs to (matched by decision hash) and driven to
+ * CONFIRMED or FAILED by the background worker. In anchor mode the job also records which
+ * {@link DecisionAnchorEntity} and leaf position its decision hash was sealed into.
+ * A stuck transaction replaced at higher fees keeps its nonce; the earlier hashes stay in
+ * replaced_tx_hashes because any one of them may still be the one that gets mined.
+ * MINED means the transaction is in a block that does not have enough confirmations yet; the
+ * block hash is kept so a reorg that moves or drops the transaction can be noticed.
+ * A transaction still unmined after every allowed fee bump is cancelled: cancel_tx_hash is a
+ * 0-value self-transfer with the same nonce, and the jobs fail if that one is mined instead.
+ */
+@Entity
+@Table(
+        name = "chain_jobs",
+        indexes = {
+                @Index(name = "idx_chain_job_decision_hash", columnList = "decision_hash", unique = true),
+                @Index(name = "idx_chain_job_status_due", columnList = "status, next_attempt_at"),
+                @Index(name = "idx_chain_job_tx_hash", columnList = "tx_hash"),
+                @Index(name = "idx_chain_job_anchor", columnList = "anchor_id, leaf_index")
+        }
+)
+public class ChainJobEntity {
+
+    public static final String PENDING = "PENDING";
+    public static final String SUBMITTED = "SUBMITTED";
+    public static final String MINED = "MINED";
+    public static final String CONFIRMED = "CONFIRMED";
+    public static final String FAILED = "FAILED";
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "decision_hash", nullable = false, length = 64, unique = true)
+    private String decisionHash;
+
+    @Column(length = 500)
+    private String purpose;
+
+    @Column(nullable = false, length = 16)
+    private String status = PENDING;
+
+    @Column(name = "tx_hash", length = 80)
+    private String txHash;
+
+    private Long nonce;
+
+    @Column(name = "max_fee_per_gas")
+    private Long maxFeePerGas;
+
+    @Column(name = "max_priority_fee_per_gas")
+    private Long maxPriorityFeePerGas;
+
+    @Column(name = "fee_bumps")
+    private Integer feeBumps;
+
+    @Column(name = "replaced_tx_hashes", length = 1000)
+    private String replacedTxHashes;
+
+    @Column(name = "cancel_tx_hash", length = 80)
+    private String cancelTxHash;
+
+    @Column(name = "mined_block_number")
+    private Long minedBlockNumber;
+
+    @Column(name = "mined_block_hash", length = 80)
+    private String minedBlockHash;
+
+    @Column(name = "anchor_id")
+    private Long anchorId;
+
+    @Column(name = "leaf_index")
+    private Integer leafIndex;
+
+    @Column(nullable = false)
+    private int attempts;
+
+    @Column(name = "next_attempt_at", nullable = false)
+    private Instant nextAttemptAt;
+
+    @Column(name = "last_error", length = 1000)
+    private String lastError;
+
+    @Column(name = "created_at", nullable = false)
+    private Instant createdAt;
+
+    @Column(name = "submitted_at")
+    private Instant submittedAt;
+
+    @Column(name = "completed_at")
+    private Instant completedAt;
+
+    @Column(name = "updated_at", nullable = false)
+    private Instant updatedAt;
+
+    @PrePersist
+    void prePersist() {
+        Instant now = Instant.now();
+        if (createdAt == null) {
+            createdAt = now;
+        }
+        if (nextAttemptAt == null) {
+            nextAttemptAt = now;
+        }
+        updatedAt = now;
+    }
+
+    @PreUpdate
+    void preUpdate() {
+        updatedAt = Instant.now();
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public String getDecisionHash() {
+        return decisionHash;
+    }
+
+    public void setDecisionHash(String decisionHash) {
+        this.decisionHash = decisionHash;
+    }
+
+    public String getPurpose() {
+        return purpose;
+    }
+
+    public void setPurpose(String purpose) {
+        this.purpose = purpose;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    public void setStatus(String status) {
+        this.status = status;
+    }
+
+    public String getTxHash() {
+        return txHash;
+    }
+
+    public void setTxHash(String txHash) {
+        this.txHash = txHash;
+    }
+
+    public Long getNonce() {
+        return nonce;
+    }
+
+    public void setNonce(Long nonce) {
+        this.nonce = nonce;
+    }
+
+    public Long getMaxFeePerGas() {
+        return maxFeePerGas;
+    }
+
+    public void setMaxFeePerGas(Long maxFeePerGas) {
+        this.maxFeePerGas = maxFeePerGas;
+    }
+
+    public Long getMaxPriorityFeePerGas() {
+        return maxPriorityFeePerGas;
+    }
+
+    public void setMaxPriorityFeePerGas(Long maxPriorityFeePerGas) {
+        this.maxPriorityFeePerGas = maxPriorityFeePerGas;
+    }
+
+    public int getFeeBumps() {
+        return feeBumps != null ? feeBumps : 0;
+    }
+
+    public void setFeeBumps(int feeBumps) {
+        this.feeBumps = feeBumps;
+    }
+
+    public String getReplacedTxHashes() {
+        return replacedTxHashes;
+    }
+
+    public void setReplacedTxHashes(String replacedTxHashes) {
+        this.replacedTxHashes = replacedTxHashes;
+    }
+
+    public String getCancelTxHash() {
+        return cancelTxHash;
+    }
+
+    public void setCancelTxHash(String cancelTxHash) {
+        this.cancelTxHash = cancelTxHash;
+    }
+
+    public Long getMinedBlockNumber() {
+        return minedBlockNumber;
+    }
+
+    public void setMinedBlockNumber(Long minedBlockNumber) {
+        this.minedBlockNumber = minedBlockNumber;
+    }
+
+    public String getMinedBlockHash() {
+        return minedBlockHash;
+    }
+
+    public void setMinedBlockHash(String minedBlockHash) {
+        this.minedBlockHash = minedBlockHash;
+    }
+
+    public Long getAnchorId() {
+        return anchorId;
+    }
+
+    public void setAnchorId(Long anchorId) {
+        this.anchorId = anchorId;
+    }
+
+    public Integer getLeafIndex() {
+        return leafIndex;
+    }
+
+    public void setLeafIndex(Integer leafIndex) {
+        this.leafIndex = leafIndex;
+    }
+
+    public int getAttempts() {
+        return attempts;
+    }
+
+    public void setAttempts(int attempts) {
+        this.attempts = attempts;
+    }
+
+    public Instant getNextAttemptAt() {
+        return nextAttemptAt;
+    }
+
+    public void setNextAttemptAt(Instant nextAttemptAt) {
+        this.nextAttemptAt = nextAttemptAt;
+    }
+
+    public String getLastError() {
+        return lastError;
+    }
+
+    public void setLastError(String lastError) {
+        this.lastError = lastError;
+    }
+
+    public Instant getCreatedAt() {
+        return createdAt;
+    }
+
+    public Instant getSubmittedAt() {
+        return submittedAt;
+    }
+
+    public void setSubmittedAt(Instant submittedAt) {
+        this.submittedAt = submittedAt;
+    }
+
+    public Instant getCompletedAt() {
+        return completedAt;
+    }
+
+    public void setCompletedAt(Instant completedAt) {
+        this.completedAt = completedAt;
+    }
+
+    public Instant getUpdatedAt() {
+        return updatedAt;
+    }
+}
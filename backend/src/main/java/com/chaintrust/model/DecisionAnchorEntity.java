@@ -0,0 +1,64 @@
+package com.chaintrust.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.PrePersist;
+import jakarta.persistence.Table;
+
+import java.time.Instant;
+
+/**
+ * One sealed epoch of decision hashes in anchor mode. Only {@code merkleRoot} goes on chain;
+ * the leaves are the {@link ChainJobEntity} rows carrying this anchor id, ordered by leaf index.
+ */
+@Entity
+@Table(name = "decision_anchors")
+public class DecisionAnchorEntity {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "merkle_root", nullable = false, length = 64)
+    private String merkleRoot;
+
+    @Column(name = "leaf_count", nullable = false)
+    private int leafCount;
+
+    @Column(name = "created_at", nullable = false)
+    private Instant createdAt;
+
+    @PrePersist
+    void prePersist() {
+        if (createdAt == null) {
+            createdAt = Instant.now();
+        }
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public String getMerkleRoot() {
+        return merkleRoot;
+    }
+
+    public void setMerkleRoot(String merkleRoot) {
+        this.merkleRoot = merkleRoot;
+    }
+
+    public int getLeafCount() {
+        return leafCount;
+    }
+
+    public void setLeafCount(int leafCount) {
+        this.leafCount = leafCount;
+    }
+
+    public Instant getCreatedAt() {
+        return createdAt;
+    }
+}
@@ -0,0 +1,108 @@
+package com.chaintrust.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import jakarta.persistence.UniqueConstraint;
+
+import java.time.Instant;
+
+@Entity
+@Table(
+        name = "wallet_sync_state",
+        uniqueConstraints = {
+                @UniqueConstraint(name = "uk_wallet_sync_chain_addr", columnNames = {"chain_id", "wallet_address"})
+        }
+)
+public class WalletSyncStateEntity {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "chain_id", nullable = false)
+    private long chainId;
+
+    @Column(name = "wallet_address", nullable = false, length = 42)
+    private String walletAddress;
+
+    @Column(name = "last_synced_block", nullable = false)
+    private long lastSyncedBlock;
+
+    /** Lowest block from which every transaction up to last_synced_block is stored; 0 once history is complete. */
+    @Column(name = "oldest_synced_block", nullable = false)
+    private long oldestSyncedBlock;
+
+    /** Saved {@code WalletFeatureAggregator} totals over the stored history, kept once it is complete. */
+    @Column(name = "feature_state", columnDefinition = "TEXT")
+    private String featureState;
+
+    @Column(name = "stored_tx_count", nullable = false)
+    private long storedTxCount;
+
+    @Column(name = "synced_at", nullable = false)
+    private Instant syncedAt;
+
+    public Long getId() {
+        return id;
+    }
+
+    public long getChainId() {
+        return chainId;
+    }
+
+    public void setChainId(long chainId) {
+        this.chainId = chainId;
+    }
+
+    public String getWalletAddress() {
+        return walletAddress;
+    }
+
+    public void setWalletAddress(String walletAddress) {
+        this.walletAddress = walletAddress;
+    }
+
+    public long getLastSyncedBlock() {
+        return lastSyncedBlock;
+    }
+
+    public void setLastSyncedBlock(long lastSyncedBlock) {
+        this.lastSyncedBlock = lastSyncedBlock;
+    }
+
+    public long getOldestSyncedBlock() {
+        return oldestSyncedBlock;
+    }
+
+    public void setOldestSyncedBlock(long oldestSyncedBlock) {
+        this.oldestSyncedBlock = oldestSyncedBlock;
+    }
+
+    public String getFeatureState() {
+        return featureState;
+    }
+
+    public void setFeatureState(String featureState) {
+        this.featureState = featureState;
+    }
+
+    public long getStoredTxCount() {
+        return storedTxCount;
+    }
+
+    public void setStoredTxCount(long storedTxCount) {
+        this.storedTxCount = storedTxCount;
+    }
+
+    public Instant getSyncedAt() {
+        return syncedAt;
+    }
+
+    public void setSyncedAt(Instant syncedAt) {
+        this.syncedAt = syncedAt;
+    }
+}
@@ -0,0 +1,138 @@
+package com.chaintrust.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+import jakarta.persistence.UniqueConstraint;
+
+@Entity
+@Table(
+        name = "wallet_transactions",
+        indexes = {
+                @Index(name = "idx_wallet_tx_wallet_block", columnList = "chain_id, wallet_address, block_number"),
+                @Index(name = "idx_wallet_tx_hash", columnList = "tx_hash")
+        },
+        uniqueConstraints = {
+                @UniqueConstraint(name = "uk_wallet_tx_chain_addr_hash", columnNames = {"chain_id", "wallet_address", "tx_hash"})
+        }
+)
+public class WalletTransactionEntity {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "chain_id", nullable = false)
+    private long chainId;
+
+    @Column(name = "wallet_address", nullable = false, length = 42)
+    private String walletAddress;
+
+    @Column(name = "tx_hash", nullable = false, length = 66)
+    private String txHash;
+
+    @Column(name = "block_number", nullable = false)
+    private long blockNumber;
+
+    @Column(name = "tx_timestamp", nullable = false)
+    private long timestamp;
+
+    @Column(name = "from_address", length = 42)
+    private String fromAddress;
+
+    @Column(name = "to_address", length = 42)
+    private String toAddress;
+
+    @Column(name = "value_eth", nullable = false)
+    private double valueEth;
+
+    @Column(name = "is_contract", nullable = false)
+    private boolean contract;
+
+    @Column(name = "method_id", length = 10)
+    private String methodId;
+
+    @Column(name = "protocol", length = 64)
+    private String protocol;
+
+    @Column(name = "risk_flag", length = 16)
+    private String riskFlag;
+
+    public static WalletTransactionEntity from(long chainId, String walletAddress, TxRecord tx) {
+        WalletTransactionEntity entity = new WalletTransactionEntity();
+        entity.chainId = chainId;
+        entity.walletAddress = walletAddress;
+        entity.txHash = tx.getHash();
+        entity.blockNumber = tx.getBlockNumber();
+        entity.timestamp = tx.getTimestamp();
+        entity.fromAddress = tx.getFrom();
+        entity.toAddress = tx.getTo();
+        entity.valueEth = tx.getValueEth();
+        entity.contract = tx.isContract();
+        entity.methodId = tx.getMethodId();
+        entity.protocol = tx.getProtocol();
+        entity.riskFlag = tx.getRiskFlag();
+        return entity;
+    }
+
+    public TxRecord toTxRecord() {
+        return new TxRecord(txHash, blockNumber, timestamp, fromAddress, toAddress, valueEth,
+                contract, methodId, protocol, riskFlag);
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public long getChainId() {
+        return chainId;
+    }
+
+    public String getWalletAddress() {
+        return walletAddress;
+    }
+
+    public String getTxHash() {
+        return txHash;
+    }
+
+    public long getBlockNumber() {
+        return blockNumber;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public String getFromAddress() {
+        return fromAddress;
+    }
+
+    public String getToAddress() {
+        return toAddress;
+    }
+
+    public double getValueEth() {
+        return valueEth;
+    }
+
+    public boolean isContract() {
+        return contract;
+    }
+
+    public String getMethodId() {
+        return methodId;
+    }
+
+    public String getProtocol() {
+        return protocol;
+    }
+
+    public String getRiskFlag() {
+        return riskFlag;
+    }
+}
@@ -0,0 +1,11 @@
+package com.chaintrust.repository;
+
+import com.chaintrust.model.AddressTypeEntity;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import java.util.Optional;
+
+public interface AddressTypeRepository extends JpaRepository<AddressTypeEntity, Long> {
+
+    Optional<AddressTypeEntity> findByChainIdAndAddress(long chainId, String address);
+}
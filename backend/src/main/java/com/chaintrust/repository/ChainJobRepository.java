@@ -0,0 +1,32 @@
+package com.chaintrust.repository;
+
+import com.chaintrust.model.ChainJobEntity;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+public interface ChainJobRepository extends JpaRepository<ChainJobEntity, Long> {
+
+    Optional<ChainJobEntity> findByDecisionHash(String decisionHash);
+
+    List<ChainJobEntity> findByStatusAndNextAttemptAtLessThanEqualOrderByIdAsc(String status, Instant now, Pageable page);
+
+    @Query("select j.txHash from ChainJobEntity j where j.status in :statuses group by j.txHash order by min(j.id)")
+    List<String> findTxHashesByStatusIn(@Param("statuses") Collection<String> statuses, Pageable page);
+
+    List<ChainJobEntity> findByTxHashAndStatusInOrderByIdAsc(String txHash, Collection<String> statuses);
+
+    @Query("select j.decisionHash from ChainJobEntity j where j.anchorId = :anchorId order by j.leafIndex asc")
+    List<String> findDecisionHashesByAnchorId(@Param("anchorId") long anchorId);
+
+    boolean existsByAnchorId(Long anchorId);
+
+    @Query("select distinct j.nonce from ChainJobEntity j where j.status in :statuses and j.nonce is not null")
+    List<Long> findNoncesByStatusIn(@Param("statuses") Collection<String> statuses);
+}
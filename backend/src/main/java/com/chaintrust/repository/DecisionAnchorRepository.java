@@ -0,0 +1,7 @@
+package com.chaintrust.repository;
+
+import com.chaintrust.model.DecisionAnchorEntity;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+public interface DecisionAnchorRepository extends JpaRepository<DecisionAnchorEntity, Long> {
+}
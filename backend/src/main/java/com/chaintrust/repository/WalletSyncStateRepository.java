@@ -0,0 +1,20 @@
+package com.chaintrust.repository;
+
+import com.chaintrust.model.WalletSyncStateEntity;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.Optional;
+
+public interface WalletSyncStateRepository extends JpaRepository<WalletSyncStateEntity, Long> {
+
+    Optional<WalletSyncStateEntity> findByChainIdAndWalletAddress(long chainId, String walletAddress);
+
+    /** Same lookup, holding a row lock until the transaction ends so syncs of one wallet take turns. */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select s from WalletSyncStateEntity s where s.chainId = :chainId and s.walletAddress = :walletAddress")
+    Optional<WalletSyncStateEntity> findForUpdate(@Param("chainId") long chainId, @Param("walletAddress") String walletAddress);
+}
@@ -0,0 +1,26 @@
+package com.chaintrust.repository;
+
+import com.chaintrust.model.WalletTransactionEntity;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.List;
+
+public interface WalletTransactionRepository extends JpaRepository<WalletTransactionEntity, Long> {
+
+    List<WalletTransactionEntity> findByChainIdAndWalletAddressOrderByBlockNumberDescTimestampDesc(
+            long chainId, String walletAddress, Pageable pageable);
+
+    @Query("select t from WalletTransactionEntity t"
+            + " where t.chainId = :chainId and t.walletAddress = :walletAddress"
+            + " and (t.blockNumber > :afterBlock or (t.blockNumber = :afterBlock and t.id > :afterId))"
+            + " order by t.blockNumber asc, t.id asc")
+    List<WalletTransactionEntity> findPageAfter(
+            @Param("chainId") long chainId,
+            @Param("walletAddress") String walletAddress,
+            @Param("afterBlock") long afterBlock,
+            @Param("afterId") long afterId,
+            Pageable pageable);
+}
@@ -1,136 +1,226 @@
 package com.chaintrust.service;
 
+import com.chaintrust.model.AddressTypeEntity;
+import com.chaintrust.repository.AddressTypeRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.boot.web.client.RestTemplateBuilder;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
-import org.springframework.web.client.RestTemplate;
 import org.web3j.protocol.Web3j;
 import org.web3j.protocol.core.DefaultBlockParameterName;
+import org.web3j.protocol.core.methods.response.EthChainId;
 import org.web3j.protocol.core.methods.response.EthGetCode;
 
 import java.time.Duration;
+import java.time.Instant;
 import java.util.Arrays;
 import java.util.HashSet;
-import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.atomic.AtomicInteger;
 
+/**
+ * Classifies applicant addresses (burn, known protocol, smart contract). Contract checks are
+ * cached by outcome: deployed code never goes away, so contracts are kept until evicted; EOAs
+ * are re-checked after a TTL because code can still be deployed at a counterfactual address;
+ * failed checks are retried after a short negative TTL. Checked results can also be persisted
+ * so they survive restarts; stored rows are keyed by the chain id the RPC node reports, since
+ * that is the chain the code lookups actually ran against.
+ */
 @Service
 public class AddressIntelligenceService {
 
+    private static final Logger log = LoggerFactory.getLogger(AddressIntelligenceService.class);
+
     private final Web3j web3j;
-    private final RestTemplate restTemplate;
-    private final List<String> etherscanApiKeys;
-    private final AtomicInteger keyIndex = new AtomicInteger(0);
-    private final long etherscanChainId;
+    private final EtherscanGateway etherscan;
+    private final AddressTypeRepository addressTypeRepository;
     private final Set<String> burnAddresses;
     private final Set<String> knownProtocolContracts;
     private final boolean rejectContractAddresses;
     private final boolean requireContractCheckSuccess;
+    private final boolean persistEnabled;
+    private final Duration eoaTtl;
+    private final Cache<String, AddressType> typeCache;
+    private final SingleFlight<String, AddressType> typeFlights = new SingleFlight<>();
+    private volatile Long rpcChainId;
 
     public AddressIntelligenceService(
             Web3j web3j,
-            RestTemplateBuilder restTemplateBuilder,
-            @Value("${etherscan.api-keys:}") String etherscanApiKeysCsv,
-            @Value("${etherscan.chain-id:1}") long etherscanChainId,
+            EtherscanGateway etherscan,
+            AddressTypeRepository addressTypeRepository,
+            MeterRegistry meterRegistry,
             @Value("${loan.policy.burn-addresses:0x0000000000000000000000000000000000000000,0x000000000000000000000000000000000000dEaD}") String burnAddressesCsv,
             @Value("${loan.policy.known-contract-addresses:0x7a250d5630b4cf539739df2c5dacb4c659f2488d,0xe592427a0aece92de3edee1f18e0157c05861564,0x68b3465833fb72a70ecdf485e0e4c7bd8665fc45,0x1111111254fb6c44bac0bed2854e76f90643097d}") String knownContractsCsv,
             @Value("${loan.policy.reject-contract-addresses:true}") boolean rejectContractAddresses,
-            @Value("${loan.policy.require-contract-check-success:false}") boolean requireContractCheckSuccess) {
+            @Value("${loan.policy.require-contract-check-success:false}") boolean requireContractCheckSuccess,
+            @Value("${address.cache.max-entries:50000}") long cacheMaxEntries,
+            @Value("${address.cache.eoa-ttl-seconds:3600}") long eoaTtlSeconds,
+            @Value("${address.cache.negative-ttl-seconds:30}") long negativeTtlSeconds,
+            @Value("${address.cache.persist-enabled:false}") boolean persistEnabled) {
         this.web3j = web3j;
-        this.restTemplate = restTemplateBuilder
-                .setConnectTimeout(Duration.ofSeconds(5))
-                .setReadTimeout(Duration.ofSeconds(10))
-                .build();
-        this.etherscanApiKeys = Arrays.stream(etherscanApiKeysCsv.split(","))
-                .map(String::trim)
-                .filter(s -> !s.isBlank())
-                .toList();
-        this.etherscanChainId = etherscanChainId;
+        this.etherscan = etherscan;
+        this.addressTypeRepository = addressTypeRepository;
         this.burnAddresses = parseAddressSet(burnAddressesCsv);
         this.knownProtocolContracts = parseAddressSet(knownContractsCsv);
         this.rejectContractAddresses = rejectContractAddresses;
         this.requireContractCheckSuccess = requireContractCheckSuccess;
+        this.persistEnabled = persistEnabled;
+        this.eoaTtl = Duration.ofSeconds(Math.max(0, eoaTtlSeconds));
+        this.typeCache = Caffeine.newBuilder()
+                .maximumSize(Math.max(0, cacheMaxEntries))
+                .expireAfter(new AddressTypeExpiry(eoaTtl, Duration.ofSeconds(Math.max(0, negativeTtlSeconds))))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, typeCache, "address.type");
     }
 
+    /**
+     * Cached address types are served without any RPC; concurrent misses for the same address
+     * share one lookup.
+     */
     public AddressAssessment assess(String address) {
         String lower = normalize(address);
-        boolean isBurn = burnAddresses.contains(lower);
-        boolean isKnownProtocol = knownProtocolContracts.contains(lower);
+        AddressType type = typeCache.getIfPresent(lower);
+        if (type == null) {
+            type = typeFlights.execute(lower, () -> resolveType(lower));
+        }
+        if (!type.checked() && requireContractCheckSuccess && rejectContractAddresses) {
+            throw new IllegalStateException("Unable to verify address type: " + type.error());
+        }
+        return toAssessment(lower, type);
+    }
 
-        boolean contractCheckSucceeded = false;
-        boolean isSmartContract = false;
-        String contractCheckError = null;
+    private AddressAssessment toAssessment(String lower, AddressType type) {
+        return new AddressAssessment(
+                burnAddresses.contains(lower),
+                knownProtocolContracts.contains(lower),
+                type.smartContract(),
+                type.checked(),
+                type.error()
+        );
+    }
 
+    private AddressType resolveType(String address) {
+        AddressType persisted = loadPersisted(address);
+        if (persisted != null) {
+            typeCache.put(address, persisted);
+            return persisted;
+        }
+
+        AddressType type;
         try {
             EthGetCode codeResp = web3j.ethGetCode(address, DefaultBlockParameterName.LATEST).send();
-            String code = codeResp != null ? codeResp.getCode() : null;
-            isSmartContract = isContractCode(code);
-            contractCheckSucceeded = true;
-        } catch (Exception rpcError) {
-            contractCheckError = rpcError.getMessage();
-            try {
-                String etherscanCode = fetchCodeFromEtherscan(address);
-                if (etherscanCode != null) {
-                    isSmartContract = isContractCode(etherscanCode);
-                    contractCheckSucceeded = true;
-                    contractCheckError = null;
-                }
-            } catch (Exception etherscanError) {
-                contractCheckError = "RPC: " + safeMessage(rpcError) + " | Etherscan: " + safeMessage(etherscanError);
+            if (codeResp != null && codeResp.hasError()) {
+                throw new IllegalStateException(codeResp.getError().getMessage());
             }
+            type = AddressType.checked(isContractCode(codeResp != null ? codeResp.getCode() : null));
+        } catch (Exception rpcError) {
+            type = resolveViaEtherscan(address, safeMessage(rpcError));
+        }
+        remember(address, type);
+        return type;
+    }
 
-            if (!contractCheckSucceeded && requireContractCheckSuccess && rejectContractAddresses) {
-                throw new IllegalStateException("Unable to verify address type: " + contractCheckError, rpcError);
+    private AddressType resolveViaEtherscan(String address, String rpcError) {
+        try {
+            String etherscanCode = fetchCodeFromEtherscan(address);
+            if (etherscanCode != null) {
+                return AddressType.checked(isContractCode(etherscanCode));
             }
+            return AddressType.failed(rpcError);
+        } catch (Exception etherscanError) {
+            return AddressType.failed("RPC: " + rpcError + " | Etherscan: " + safeMessage(etherscanError));
         }
+    }
 
-        return new AddressAssessment(
-                isBurn,
-                isKnownProtocol,
-                isSmartContract,
-                contractCheckSucceeded,
-                contractCheckError
-        );
+    private void remember(String address, AddressType type) {
+        typeCache.put(address, type);
+        if (persistEnabled && type.checked()) {
+            persist(address, type);
+        }
     }
 
-    private String fetchCodeFromEtherscan(String address) {
-        if (etherscanApiKeys.isEmpty()) {
+    private AddressType loadPersisted(String address) {
+        Long chainId = persistEnabled ? rpcChainId() : null;
+        if (chainId == null) {
             return null;
         }
+        try {
+            return addressTypeRepository.findByChainIdAndAddress(chainId, address)
+                    .map(this::fromEntity)
+                    .orElse(null);
+        } catch (Exception ex) {
+            log.warn("Address type lookup failed for {}: {}", address, ex.getMessage());
+            return null;
+        }
+    }
 
-        List<String> keys = orderedApiKeys();
-        for (String key : keys) {
-            String url = "https://api.etherscan.io/v2/api"
-                    + "?chainid=" + etherscanChainId
-                    + "&module=proxy&action=eth_getCode"
-                    + "&address=" + address
-                    + "&tag=latest"
-                    + "&apikey=" + key;
+    /** Stored contracts are always valid; stored EOAs only within the EOA TTL. */
+    private AddressType fromEntity(AddressTypeEntity entity) {
+        if (entity.isSmartContract()) {
+            return AddressType.checked(true, entity.getCheckedAt());
+        }
+        return entity.getCheckedAt().plus(eoaTtl).isAfter(Instant.now()) ? AddressType.checked(false, entity.getCheckedAt()) : null;
+    }
 
-            @SuppressWarnings("unchecked")
-            Map<String, Object> response = restTemplate.getForObject(url, Map.class);
-            if (response == null) {
-                continue;
-            }
+    private void persist(String address, AddressType type) {
+        Long chainId = rpcChainId();
+        if (chainId == null) {
+            return;
+        }
+        try {
+            AddressTypeEntity entity = addressTypeRepository.findByChainIdAndAddress(chainId, address)
+                    .orElseGet(() -> {
+                        AddressTypeEntity created = new AddressTypeEntity();
+                        created.setChainId(chainId);
+                        created.setAddress(address);
+                        return created;
+                    });
+            entity.setSmartContract(type.smartContract());
+            entity.setCheckedAt(type.checkedAt());
+            addressTypeRepository.save(entity);
+        } catch (DataIntegrityViolationException concurrentInsert) {
+            // Another request stored the same address first; its row is equally valid.
+        } catch (Exception ex) {
+            log.warn("Failed to persist address type for {}: {}", address, ex.getMessage());
+        }
+    }
 
-            Object resultObj = response.get("result");
-            if (resultObj != null) {
-                return resultObj.toString();
+    /** eth_chainId of the RPC endpoint, asked once; null (nothing persisted) until the node answers. */
+    private Long rpcChainId() {
+        Long chainId = rpcChainId;
+        if (chainId == null) {
+            try {
+                EthChainId response = web3j.ethChainId().send();
+                if (response.hasError()) {
+                    throw new IllegalStateException(response.getError().getMessage());
+                }
+                chainId = response.getChainId().longValueExact();
+                rpcChainId = chainId;
+            } catch (Exception ex) {
+                log.warn("eth_chainId failed; address types are not persisted until it succeeds: {}", safeMessage(ex));
             }
         }
-        return null;
+        return chainId;
     }
 
-    private List<String> orderedApiKeys() {
-        int start = Math.floorMod(keyIndex.getAndIncrement(), etherscanApiKeys.size());
-        String[] ordered = new String[etherscanApiKeys.size()];
-        for (int i = 0; i < etherscanApiKeys.size(); i++) {
-            ordered[i] = etherscanApiKeys.get((start + i) % etherscanApiKeys.size());
+    private String fetchCodeFromEtherscan(String address) {
+        if (!etherscan.isConfigured()) {
+            return null;
         }
-        return List.of(ordered);
+
+        Map<String, Object> response = etherscan.get("module=proxy&action=eth_getCode"
+                + "&address=" + address
+                + "&tag=latest");
+        Object resultObj = response.get("result");
+        return resultObj != null ? resultObj.toString() : null;
     }
 
     private static boolean isContractCode(String code) {
@@ -159,6 +249,53 @@ public class AddressIntelligenceService {
         return ex != null && ex.getMessage() != null ? ex.getMessage() : "unknown";
     }
 
+    /** {@code checkedAt} is when the code lookup ran, so a reloaded EOA expires from then, not from the reload. */
+    private record AddressType(boolean smartContract, boolean checked, String error, Instant checkedAt) {
+        static AddressType checked(boolean smartContract) {
+            return checked(smartContract, Instant.now());
+        }
+
+        static AddressType checked(boolean smartContract, Instant checkedAt) {
+            return new AddressType(smartContract, true, null, checkedAt);
+        }
+
+        static AddressType failed(String error) {
+            return new AddressType(false, false, error, Instant.now());
+        }
+    }
+
+    private static final class AddressTypeExpiry implements Expiry<String, AddressType> {
+        private final Duration eoaTtl;
+        private final long negativeTtlNanos;
+
+        private AddressTypeExpiry(Duration eoaTtl, Duration negativeTtl) {
+            this.eoaTtl = eoaTtl;
+            this.negativeTtlNanos = negativeTtl.toNanos();
+        }
+
+        @Override
+        public long expireAfterCreate(String key, AddressType value, long currentTime) {
+            if (!value.checked()) {
+                return negativeTtlNanos;
+            }
+            if (value.smartContract()) {
+                return Long.MAX_VALUE;
+            }
+            Duration remaining = Duration.between(Instant.now(), value.checkedAt().plus(eoaTtl));
+            return remaining.isNegative() ? 0 : remaining.toNanos();
+        }
+
+        @Override
+        public long expireAfterUpdate(String key, AddressType value, long currentTime, long currentDuration) {
+            return expireAfterCreate(key, value, currentTime);
+        }
+
+        @Override
+        public long expireAfterRead(String key, AddressType value, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+    }
+
     public record AddressAssessment(
             boolean burnAddress,
             boolean knownProtocolContract,
@@ -1,11 +1,15 @@
 package com.chaintrust.service;
 
+import com.chaintrust.model.LoanDecisionEntity;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.util.StringUtils;
+import org.web3j.abi.EventEncoder;
 import org.web3j.abi.FunctionEncoder;
 import org.web3j.abi.datatypes.Address;
 import org.web3j.abi.datatypes.Bool;
+import org.web3j.abi.datatypes.DynamicArray;
+import org.web3j.abi.datatypes.DynamicStruct;
 import org.web3j.abi.datatypes.Function;
 import org.web3j.abi.datatypes.Utf8String;
 import org.web3j.abi.datatypes.generated.Bytes32;
@@ -13,32 +17,55 @@ import org.web3j.abi.datatypes.generated.Uint256;
 import org.web3j.abi.datatypes.generated.Uint32;
 import org.web3j.abi.datatypes.generated.Uint8;
 import org.web3j.crypto.Credentials;
+import org.web3j.crypto.Hash;
+import org.web3j.crypto.RawTransaction;
 import org.web3j.crypto.WalletUtils;
 import org.web3j.protocol.Web3j;
-import org.web3j.protocol.core.methods.response.EthSendTransaction;
+import org.web3j.protocol.core.BatchRequest;
+import org.web3j.protocol.core.DefaultBlockParameterName;
+import org.web3j.protocol.core.Response;
+import org.web3j.protocol.core.methods.response.EthBlock;
+import org.web3j.protocol.core.methods.response.EthGetTransactionReceipt;
+import org.web3j.protocol.core.methods.response.Log;
 import org.web3j.protocol.core.methods.response.TransactionReceipt;
 import org.web3j.tx.RawTransactionManager;
-import org.web3j.tx.response.PollingTransactionReceiptProcessor;
 import org.web3j.utils.Numeric;
 
+import java.io.IOException;
 import java.math.BigDecimal;
 import java.math.BigInteger;
 import java.math.RoundingMode;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.time.Duration;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 @Service
 public class BlockchainLoanRecorderService {
 
+    private static final BigInteger SELF_TRANSFER_GAS = BigInteger.valueOf(21000);
+
+    private static final String BATCH_ENTRY_SKIPPED_TOPIC =
+            EventEncoder.buildEventSignature("LoanBatchEntrySkipped(bytes32,address)");
+
     private final Web3j web3j;
     private final boolean enabled;
     private final boolean required;
     private final long chainId;
     private final String contractAddress;
-    private final String privateKey;
+    private final boolean configured;
     private final BigInteger gasLimit;
-    private final BigInteger gasPriceWei;
+    private final RawTransactionManager txManager;
+    private final NonceManager nonceManager;
+    private final String signerAddress;
 
     public BlockchainLoanRecorderService(
             Web3j web3j,
@@ -47,110 +74,280 @@ public class BlockchainLoanRecorderService {
             @Value("${blockchain.chain-id:11155111}") long chainId,
             @Value("${blockchain.contract-address:}") String contractAddress,
             @Value("${blockchain.private-key:}") String privateKey,
-            @Value("${blockchain.gas-limit:550000}") long gasLimit,
-            @Value("${blockchain.gas-price-wei:0}") long gasPriceWei) {
+            @Value("${blockchain.gas-limit:550000}") long gasLimit) {
         this.web3j = web3j;
         this.enabled = enabled;
         this.required = required;
         this.chainId = chainId;
         this.contractAddress = contractAddress != null ? contractAddress.trim() : "";
-        this.privateKey = privateKey != null ? privateKey.trim() : "";
+        this.configured = WalletUtils.isValidAddress(this.contractAddress) && isValidPrivateKey(privateKey);
         this.gasLimit = BigInteger.valueOf(Math.max(21000L, gasLimit));
-        this.gasPriceWei = BigInteger.valueOf(Math.max(0L, gasPriceWei));
+        if (configured) {
+            Credentials credentials = Credentials.create(normalizePrivateKey(privateKey));
+            this.txManager = new RawTransactionManager(web3j, credentials, chainId);
+            this.nonceManager = new NonceManager(web3j, credentials.getAddress());
+            this.signerAddress = credentials.getAddress();
+        } else {
+            this.txManager = null;
+            this.nonceManager = null;
+            this.signerAddress = null;
+        }
     }
 
-    public ChainWriteResult recordLoanDecision(
-            String walletAddress,
-            double amountUsd,
-            double riskScore,
-            String creditTier,
-            boolean approved,
-            String decisionHashHex,
-            String purpose) {
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Decides, without any I/O, whether a new decision can be queued for an on-chain write:
+     * DISABLED, FAILED when the contract address or key is missing (an exception instead when
+     * blockchain.required is set), otherwise PENDING.
+     */
+    public ChainWriteResult admit() {
         if (!enabled) {
             return ChainWriteResult.disabled("BLOCKCHAIN_DISABLED");
         }
-
-        if (!isConfigured()) {
+        if (!configured) {
             String msg = "Blockchain config missing or invalid (contract address/private key)";
             if (required) {
                 throw new IllegalStateException(msg);
             }
             return ChainWriteResult.failed(false, msg);
         }
+        return ChainWriteResult.pending();
+    }
 
+    /**
+     * Signs one transaction for the given stored decisions with the next local nonce and sends it:
+     * recordLoanDecision for a single decision, recordLoanDecisionsBatch for several, with the gas
+     * limit scaled by the count. The future completes as soon as the node accepts it (SUBMITTED
+     * with tx hash and nonce) or refuses it with a JSON-RPC error (FAILED, nonce released). When the
+     * call fails without a reply the transaction may still have been accepted, so it is reported
+     * SUBMITTED with the error as a warning; confirmation is tracked separately through
+     * {@link #fetchReceipts}. Calls do not wait for each other, so several transactions can be in
+     * flight at once.
+     * <p>
+     * A non-null {@code nonce} re-signs the same call as a replacement for a transaction already
+     * sent with that nonce (fees must be higher, see {@link GasFeeOracle#replacementFor}).
+     */
+    public CompletableFuture<ChainWriteResult> submit(List<LoanDecisionEntity> decisions, List<String> purposes,
+                                                      BigInteger nonce, GasFeeOracle.Fees fees) {
+        if (!configured) {
+            return CompletableFuture.completedFuture(
+                    ChainWriteResult.failed(false, "Blockchain config missing or invalid (contract address/private key)"));
+        }
+        String data;
         try {
-            Credentials credentials = Credentials.create(normalizePrivateKey(privateKey));
-            RawTransactionManager txManager = new RawTransactionManager(web3j, credentials, chainId);
-
-            Function function = new Function(
-                    "recordLoanDecision",
-                    Arrays.asList(
-                            new Address(walletAddress),
-                            new Uint256(toUsdCents(amountUsd)),
-                            new Uint32(BigInteger.valueOf(toRiskBps(riskScore))),
-                            new Bool(approved),
-                            new Uint8(BigInteger.valueOf(toTierEnumValue(creditTier))),
-                            new Bytes32(toBytes32(decisionHashHex)),
-                            new Utf8String(purpose != null ? purpose : "")
-                    ),
-                    Collections.emptyList()
-            );
+            data = decisions.size() == 1
+                    ? encodeRecordLoanDecision(decisions.get(0), purposes.get(0))
+                    : encodeRecordLoanDecisionsBatch(decisions, purposes);
+        } catch (RuntimeException ex) {
+            return CompletableFuture.completedFuture(ChainWriteResult.failed(true, ex.getMessage()));
+        }
+        return send(data, gasLimit.multiply(BigInteger.valueOf(decisions.size())), nonce, fees);
+    }
 
-            String data = FunctionEncoder.encode(function);
-            BigInteger gasPrice = resolveGasPrice();
-            EthSendTransaction tx = txManager.sendTransaction(gasPrice, gasLimit, contractAddress, data, BigInteger.ZERO);
+    /**
+     * Sends anchorDecisionRoot for a sealed epoch, committing only the Merkle root of its decision
+     * hashes; completes like {@link #submit}.
+     */
+    public CompletableFuture<ChainWriteResult> anchorRoot(String merkleRoot, int leafCount,
+                                                          BigInteger nonce, GasFeeOracle.Fees fees) {
+        if (!configured) {
+            return CompletableFuture.completedFuture(
+                    ChainWriteResult.failed(false, "Blockchain config missing or invalid (contract address/private key)"));
+        }
+        Function function = new Function(
+                "anchorDecisionRoot",
+                Arrays.asList(new Bytes32(toBytes32(merkleRoot)), new Uint256(BigInteger.valueOf(leafCount))),
+                Collections.emptyList()
+        );
+        return send(FunctionEncoder.encode(function), gasLimit, nonce, fees);
+    }
 
-            if (tx == null) {
-                String msg = "Null response from eth_sendRawTransaction";
-                if (required) {
-                    throw new IllegalStateException(msg);
-                }
-                return ChainWriteResult.failed(true, msg);
-            }
+    /**
+     * Replaces the transaction holding {@code nonce} with a 0-value transfer to the signer itself,
+     * so a transaction that will not be mined stops blocking every later nonce. {@code fees} must
+     * outbid the transaction being cancelled; completes like {@link #submit}.
+     */
+    public CompletableFuture<ChainWriteResult> cancel(BigInteger nonce, GasFeeOracle.Fees fees) {
+        if (!configured) {
+            return CompletableFuture.completedFuture(
+                    ChainWriteResult.failed(false, "Blockchain config missing or invalid (contract address/private key)"));
+        }
+        return send(signerAddress, "", SELF_TRANSFER_GAS, nonce, true, fees);
+    }
 
-            if (tx.hasError()) {
-                String msg = tx.getError().getMessage();
-                if (required) {
-                    throw new IllegalStateException(msg);
-                }
-                return ChainWriteResult.failed(true, msg);
+    /**
+     * Fills the nonces that would otherwise stall every later transaction of the signer (see
+     * {@link NonceManager#takeGaps}) with 0-value self-transfers, and returns the nonces filled.
+     * A fill the node refuses goes back to the released set, or resyncs the counter on a nonce
+     * conflict, exactly like a refused decision write.
+     *
+     * @param tracked nonces still held by in-flight jobs, which are never filled
+     */
+    public List<BigInteger> fillNonceGaps(Set<BigInteger> tracked, Duration grace, GasFeeOracle.Fees fees) throws IOException {
+        if (!configured) {
+            return List.of();
+        }
+        List<BigInteger> filled = new ArrayList<>();
+        for (BigInteger nonce : nonceManager.takeGaps(grace, tracked::contains)) {
+            if (send(signerAddress, "", SELF_TRANSFER_GAS, nonce, false, fees).join().isSubmitted()) {
+                filled.add(nonce);
             }
+        }
+        return filled;
+    }
 
-            String txHash = tx.getTransactionHash();
-            TransactionReceipt receipt = new PollingTransactionReceiptProcessor(web3j, 1500, 40)
-                    .waitForTransactionReceipt(txHash);
+    private CompletableFuture<ChainWriteResult> send(String data, BigInteger txGasLimit, BigInteger replacedNonce,
+                                                     GasFeeOracle.Fees fees) {
+        return send(contractAddress, data, txGasLimit, replacedNonce, replacedNonce != null, fees);
+    }
 
-            if (receipt == null) {
-                return ChainWriteResult.submitted(txHash);
+    /**
+     * Signs (EIP-1559 or legacy, as {@code fees} says) and sends; see {@link #submit} for how
+     * errors are handled. A null {@code nonce} allocates the next one. A replacement never touches
+     * the local nonce counter; any other refused send releases its nonce.
+     */
+    private CompletableFuture<ChainWriteResult> send(String to, String data, BigInteger txGasLimit, BigInteger givenNonce,
+                                                     boolean replacement, GasFeeOracle.Fees fees) {
+        BigInteger nonce = givenNonce;
+        String signed;
+        try {
+            if (nonce == null) {
+                nonce = nonceManager.allocate();
             }
+            RawTransaction tx = fees.eip1559()
+                    ? RawTransaction.createTransaction(chainId, nonce, txGasLimit, to, BigInteger.ZERO, data,
+                            fees.maxPriorityFeePerGas(), fees.maxFeePerGas())
+                    : RawTransaction.createTransaction(nonce, fees.maxFeePerGas(), txGasLimit, to,
+                            BigInteger.ZERO, data);
+            signed = txManager.sign(tx);
+        } catch (Exception ex) {
+            if (nonce != null && !replacement) {
+                nonceManager.release(nonce);
+            }
+            return CompletableFuture.completedFuture(ChainWriteResult.failed(true, ex.getMessage()));
+        }
 
-            if (!"0x1".equalsIgnoreCase(receipt.getStatus())) {
-                String msg = "On-chain transaction reverted";
-                if (required) {
-                    throw new IllegalStateException(msg);
-                }
-                return ChainWriteResult.failed(true, msg, txHash);
+        BigInteger sentNonce = nonce;
+        String txHash = Hash.sha3(signed);
+        return web3j.ethSendRawTransaction(signed).sendAsync().handle((response, error) -> {
+            boolean replied = error == null && response != null;
+            String problem;
+            if (error != null) {
+                Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+                problem = cause.getMessage() != null ? cause.getMessage() : cause.getClass().getSimpleName();
+            } else if (response == null) {
+                problem = "Null response from eth_sendRawTransaction";
+            } else if (response.hasError()) {
+                problem = response.getError().getMessage();
+            } else {
+                problem = null;
             }
+            if (problem == null || NonceManager.isAlreadyKnown(problem)) {
+                return ChainWriteResult.submitted(txHash, sentNonce, fees);
+            }
+            if (!replied) {
+                // The node may have accepted it before the call failed. The hash and nonce are known
+                // locally, so it is tracked as sent: a receipt or a fee bump with the same nonce
+                // settles it, and the nonce is never handed to another transaction meanwhile.
+                return ChainWriteResult.submitted(txHash, sentNonce, fees, "Send outcome unknown: " + problem);
+            }
+            if (replacement) {
+                // Underpriced, or one of the earlier versions was mined in the meantime.
+                return ChainWriteResult.failed(true, problem);
+            }
+            if (NonceManager.isNonceConflict(problem)) {
+                nonceManager.resync();
+            } else {
+                nonceManager.release(sentNonce);
+            }
+            return ChainWriteResult.failed(true, problem);
+        });
+    }
 
-            return ChainWriteResult.confirmed(txHash);
-        } catch (Exception ex) {
-            if (required) {
-                throw new IllegalStateException("Failed to record on-chain decision: " + ex.getMessage(), ex);
+    /**
+     * Decision hashes (lowercase hex, no prefix) that a mined recordLoanDecisionsBatch skipped
+     * because the wallet is blacklisted on chain.
+     */
+    public Set<String> skippedDecisionHashes(TransactionReceipt receipt) {
+        Set<String> skipped = new HashSet<>();
+        if (receipt.getLogs() == null) {
+            return skipped;
+        }
+        for (Log entry : receipt.getLogs()) {
+            List<String> topics = entry.getTopics();
+            if (contractAddress.equalsIgnoreCase(entry.getAddress())
+                    && topics != null
+                    && topics.size() > 1
+                    && BATCH_ENTRY_SKIPPED_TOPIC.equalsIgnoreCase(topics.get(0))) {
+                skipped.add(Numeric.cleanHexPrefix(topics.get(1)).toLowerCase(Locale.ROOT));
             }
-            return ChainWriteResult.failed(true, ex.getMessage());
         }
+        return skipped;
     }
 
-    private BigInteger resolveGasPrice() throws Exception {
-        if (gasPriceWei.signum() > 0) {
-            return gasPriceWei;
+    /** The current head block (number and hash only), one eth_getBlockByNumber call. */
+    public EthBlock.Block latestBlock() throws IOException {
+        EthBlock response = web3j.ethGetBlockByNumber(DefaultBlockParameterName.LATEST, false).send();
+        if (response.hasError() || response.getBlock() == null) {
+            throw new IOException("No latest block: " + (response.hasError() ? response.getError().getMessage() : "null"));
         }
-        return web3j.ethGasPrice().send().getGasPrice();
+        return response.getBlock();
     }
 
-    private boolean isConfigured() {
-        return WalletUtils.isValidAddress(contractAddress) && isValidPrivateKey(privateKey);
+    /**
+     * Receipts for all given transactions in one JSON-RPC batch, keyed by the requested hash. A
+     * transaction that is not mined (or whose lookup failed) has no entry. Receipts are matched by
+     * their own transaction hash, since a node may answer a batch in any order.
+     */
+    public Map<String, TransactionReceipt> fetchReceipts(List<String> txHashes) throws IOException {
+        Map<String, TransactionReceipt> receipts = new HashMap<>();
+        if (txHashes.isEmpty()) {
+            return receipts;
+        }
+        Map<String, String> requested = new HashMap<>();
+        BatchRequest batch = web3j.newBatch();
+        for (String txHash : txHashes) {
+            requested.put(txHash.toLowerCase(Locale.ROOT), txHash);
+            batch.add(web3j.ethGetTransactionReceipt(txHash));
+        }
+        for (Response<?> response : batch.send().getResponses()) {
+            if (response instanceof EthGetTransactionReceipt receiptResponse && !receiptResponse.hasError()) {
+                receiptResponse.getTransactionReceipt()
+                        .filter(receipt -> receipt.getTransactionHash() != null)
+                        .ifPresent(receipt -> {
+                            String txHash = requested.get(receipt.getTransactionHash().toLowerCase(Locale.ROOT));
+                            if (txHash != null) {
+                                receipts.put(txHash, receipt);
+                            }
+                        });
+            }
+        }
+        return receipts;
+    }
+
+    private static String encodeRecordLoanDecisionsBatch(List<LoanDecisionEntity> decisions, List<String> purposes) {
+        List<LoanDecisionInput> inputs = new ArrayList<>(decisions.size());
+        for (int i = 0; i < decisions.size(); i++) {
+            inputs.add(new LoanDecisionInput(decisions.get(i), purposes.get(i)));
+        }
+        Function function = new Function(
+                "recordLoanDecisionsBatch",
+                Collections.singletonList(new DynamicArray<>(LoanDecisionInput.class, inputs)),
+                Collections.emptyList()
+        );
+        return FunctionEncoder.encode(function);
+    }
+
+    private static String encodeRecordLoanDecision(LoanDecisionEntity decision, String purpose) {
+        Function function = new Function(
+                "recordLoanDecision",
+                new LoanDecisionInput(decision, purpose).getValue(),
+                Collections.emptyList()
+        );
+        return FunctionEncoder.encode(function);
     }
 
     private static boolean isValidPrivateKey(String value) {
@@ -208,41 +405,62 @@ public class BlockchainLoanRecorderService {
         return Numeric.hexStringToByteArray("0x" + normalized);
     }
 
+    /** ABI form of the contract's LoanDecisionInput struct. */
+    private static final class LoanDecisionInput extends DynamicStruct {
+        LoanDecisionInput(LoanDecisionEntity decision, String purpose) {
+            super(
+                    new Address(decision.getWalletAddress()),
+                    new Uint256(toUsdCents(decision.getRequestedAmount())),
+                    new Uint32(BigInteger.valueOf(toRiskBps(decision.getRiskScore()))),
+                    new Bool(decision.isApproved()),
+                    new Uint8(BigInteger.valueOf(toTierEnumValue(decision.getCreditTier()))),
+                    new Bytes32(toBytes32(decision.getDecisionHash())),
+                    new Utf8String(purpose != null ? purpose : "")
+            );
+        }
+    }
+
     public static final class ChainWriteResult {
         private final boolean configured;
         private final boolean submitted;
         private final boolean confirmed;
         private final String status;
         private final String txHash;
+        private final BigInteger nonce;
+        private final GasFeeOracle.Fees fees;
         private final String error;
 
-        private ChainWriteResult(boolean configured, boolean submitted, boolean confirmed, String status, String txHash, String error) {
+        private ChainWriteResult(boolean configured, boolean submitted, boolean confirmed, String status,
+                                 String txHash, BigInteger nonce, GasFeeOracle.Fees fees, String error) {
             this.configured = configured;
             this.submitted = submitted;
             this.confirmed = confirmed;
             this.status = status;
             this.txHash = txHash;
+            this.nonce = nonce;
+            this.fees = fees;
             this.error = error;
         }
 
         public static ChainWriteResult disabled(String status) {
-            return new ChainWriteResult(false, false, false, status, null, null);
+            return new ChainWriteResult(false, false, false, status, null, null, null, null);
         }
 
         public static ChainWriteResult failed(boolean configured, String error) {
-            return new ChainWriteResult(configured, false, false, "FAILED", null, error);
+            return new ChainWriteResult(configured, false, false, "FAILED", null, null, null, error);
         }
 
-        public static ChainWriteResult failed(boolean configured, String error, String txHash) {
-            return new ChainWriteResult(configured, true, false, "FAILED", txHash, error);
+        public static ChainWriteResult pending() {
+            return new ChainWriteResult(true, false, false, "PENDING", null, null, null, null);
         }
 
-        public static ChainWriteResult submitted(String txHash) {
-            return new ChainWriteResult(true, true, false, "SUBMITTED", txHash, null);
+        public static ChainWriteResult submitted(String txHash, BigInteger nonce, GasFeeOracle.Fees fees) {
+            return submitted(txHash, nonce, fees, null);
         }
 
-        public static ChainWriteResult confirmed(String txHash) {
-            return new ChainWriteResult(true, true, true, "CONFIRMED", txHash, null);
+        /** Sent, but {@code warning} says the node's answer was lost; see {@link BlockchainLoanRecorderService#submit}. */
+        public static ChainWriteResult submitted(String txHash, BigInteger nonce, GasFeeOracle.Fees fees, String warning) {
+            return new ChainWriteResult(true, true, false, "SUBMITTED", txHash, nonce, fees, warning);
         }
 
         public boolean isConfigured() {
@@ -265,6 +483,14 @@ public class BlockchainLoanRecorderService {
             return txHash;
         }
 
+        public BigInteger getNonce() {
+            return nonce;
+        }
+
+        public GasFeeOracle.Fees getFees() {
+            return fees;
+        }
+
         public String getError() {
             return error;
         }
@@ -0,0 +1,392 @@
+package com.chaintrust.service;
+
+import com.chaintrust.model.ChainJobEntity;
+import com.chaintrust.model.DecisionAnchorEntity;
+import com.chaintrust.model.LoanDecisionEntity;
+import com.chaintrust.repository.ChainJobRepository;
+import com.chaintrust.repository.DecisionAnchorRepository;
+import com.chaintrust.repository.LoanDecisionRepository;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.web3j.utils.Numeric;
+
+import java.math.BigInteger;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * Transactional outbox for on-chain decision writes. A job row is written in the same
+ * transaction as its loan decision; {@link ChainOutboxWorker} then moves it through
+ * PENDING -> SUBMITTED -> MINED -> CONFIRMED (or FAILED), and every transition copies the status,
+ * tx hash and error onto the decision row in one transaction. A reorg that drops a MINED
+ * transaction moves its jobs back to SUBMITTED. Transitions take a list of jobs
+ * because every job sent in the same transaction (a batch or an anchored epoch) moves together.
+ */
+@Service
+public class ChainOutboxService {
+
+    private static final List<String> IN_FLIGHT = List.of(ChainJobEntity.SUBMITTED, ChainJobEntity.MINED);
+
+    private final ChainJobRepository chainJobRepository;
+    private final LoanDecisionRepository loanDecisionRepository;
+    private final DecisionAnchorRepository decisionAnchorRepository;
+
+    public ChainOutboxService(
+            ChainJobRepository chainJobRepository,
+            LoanDecisionRepository loanDecisionRepository,
+            DecisionAnchorRepository decisionAnchorRepository) {
+        this.chainJobRepository = chainJobRepository;
+        this.loanDecisionRepository = loanDecisionRepository;
+        this.decisionAnchorRepository = decisionAnchorRepository;
+    }
+
+    /**
+     * Queues a write for the decision unless one is already queued, in flight or done; a failed
+     * job is queued again. The decision's on-chain fields are set from the job either way.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void enqueue(LoanDecisionEntity decision, String purpose) {
+        ChainJobEntity job = chainJobRepository.findByDecisionHash(decision.getDecisionHash()).orElse(null);
+        if (job == null || ChainJobEntity.FAILED.equals(job.getStatus())) {
+            if (job == null) {
+                job = new ChainJobEntity();
+                job.setDecisionHash(decision.getDecisionHash());
+            }
+            job.setPurpose(purpose);
+            job.setStatus(ChainJobEntity.PENDING);
+            job.setAttempts(0);
+            job.setNextAttemptAt(Instant.now());
+            job.setTxHash(null);
+            job.setNonce(null);
+            job.setMaxFeePerGas(null);
+            job.setMaxPriorityFeePerGas(null);
+            job.setFeeBumps(0);
+            job.setReplacedTxHashes(null);
+            job.setCancelTxHash(null);
+            job.setMinedBlockNumber(null);
+            job.setMinedBlockHash(null);
+            job.setAnchorId(null);
+            job.setLeafIndex(null);
+            job.setLastError(null);
+            job.setSubmittedAt(null);
+            job.setCompletedAt(null);
+            chainJobRepository.save(job);
+        }
+        copyToDecision(job, decision);
+    }
+
+    @Transactional(readOnly = true)
+    public List<ChainJobEntity> dueJobs(int limit) {
+        return chainJobRepository.findByStatusAndNextAttemptAtLessThanEqualOrderByIdAsc(
+                ChainJobEntity.PENDING, Instant.now(), PageRequest.of(0, Math.max(1, limit)));
+    }
+
+    /** Distinct transactions that still have SUBMITTED or MINED jobs, oldest first. */
+    @Transactional(readOnly = true)
+    public List<String> inFlightTxHashes(int limit) {
+        return chainJobRepository.findTxHashesByStatusIn(IN_FLIGHT, PageRequest.of(0, Math.max(1, limit)));
+    }
+
+    /** Nonces held by SUBMITTED or MINED jobs; none of them may be filled by something else. */
+    @Transactional(readOnly = true)
+    public Set<BigInteger> inFlightNonces() {
+        Set<BigInteger> nonces = new HashSet<>();
+        chainJobRepository.findNoncesByStatusIn(IN_FLIGHT).forEach(nonce -> nonces.add(BigInteger.valueOf(nonce)));
+        return nonces;
+    }
+
+    @Transactional(readOnly = true)
+    public List<ChainJobEntity> inFlightJobs(String txHash) {
+        return chainJobRepository.findByTxHashAndStatusInOrderByIdAsc(txHash, IN_FLIGHT);
+    }
+
+    @Transactional(readOnly = true)
+    public Optional<LoanDecisionEntity> decisionFor(ChainJobEntity job) {
+        return loanDecisionRepository.findByDecisionHash(job.getDecisionHash());
+    }
+
+    /** The anchor a job was sealed into, for rebuilding its anchorDecisionRoot call. */
+    @Transactional(readOnly = true)
+    public Optional<DecisionAnchorEntity> anchorFor(ChainJobEntity job) {
+        return job.getAnchorId() == null ? Optional.empty() : decisionAnchorRepository.findById(job.getAnchorId());
+    }
+
+    /**
+     * Seals due jobs into an anchor epoch: computes the Merkle root over their decision hashes
+     * in list order and stores each job's leaf index. The jobs stay PENDING until the root is sent.
+     * A retry of a refused send with the same jobs in the same order reuses their anchor. Otherwise
+     * a new anchor is sealed, and an earlier anchor left without jobs is deleted; its root was
+     * never accepted, since its jobs were still PENDING.
+     */
+    @Transactional
+    public DecisionAnchorEntity sealAnchor(List<ChainJobEntity> jobs) {
+        Map<Long, ChainJobEntity> managed = new HashMap<>();
+        chainJobRepository.findAllById(jobs.stream().map(ChainJobEntity::getId).toList())
+                .forEach(job -> managed.put(job.getId(), job));
+        Set<Long> previousAnchors = new HashSet<>();
+        boolean sameLeaves = true;
+        for (int i = 0; i < jobs.size(); i++) {
+            ChainJobEntity job = managed.get(jobs.get(i).getId());
+            if (job.getAnchorId() != null) {
+                previousAnchors.add(job.getAnchorId());
+            }
+            sameLeaves &= job.getAnchorId() != null && Integer.valueOf(i).equals(job.getLeafIndex());
+        }
+        if (sameLeaves && previousAnchors.size() == 1) {
+            Optional<DecisionAnchorEntity> existing = decisionAnchorRepository.findById(previousAnchors.iterator().next())
+                    .filter(anchor -> anchor.getLeafCount() == jobs.size());
+            if (existing.isPresent()) {
+                return existing.get();
+            }
+        }
+
+        List<String> decisionHashes = jobs.stream().map(ChainJobEntity::getDecisionHash).toList();
+        DecisionAnchorEntity anchor = new DecisionAnchorEntity();
+        anchor.setMerkleRoot(Numeric.toHexStringNoPrefix(DecisionMerkleTree.root(decisionHashes)));
+        anchor.setLeafCount(jobs.size());
+        decisionAnchorRepository.save(anchor);
+        for (int i = 0; i < jobs.size(); i++) {
+            ChainJobEntity job = managed.get(jobs.get(i).getId());
+            job.setAnchorId(anchor.getId());
+            job.setLeafIndex(i);
+            chainJobRepository.save(job);
+        }
+        for (Long previous : previousAnchors) {
+            if (!chainJobRepository.existsByAnchorId(previous)) {
+                decisionAnchorRepository.deleteById(previous);
+            }
+        }
+        return anchor;
+    }
+
+    /** {@code warning} is set when the send's outcome is unknown (see BlockchainLoanRecorderService#submit). */
+    @Transactional
+    public void markSubmitted(List<Long> jobIds, String txHash, BigInteger nonce, GasFeeOracle.Fees fees, String warning) {
+        update(jobIds, List.of(ChainJobEntity.PENDING), job -> {
+            job.setStatus(ChainJobEntity.SUBMITTED);
+            job.setTxHash(txHash);
+            job.setNonce(nonce != null ? nonce.longValueExact() : null);
+            setFees(job, fees);
+            job.setAttempts(job.getAttempts() + 1);
+            job.setSubmittedAt(Instant.now());
+            job.setLastError(truncate(warning));
+        });
+    }
+
+    /** Schedules another attempt after an exponential backoff, or fails the job after maxAttempts. */
+    @Transactional
+    public void markAttemptFailed(List<Long> jobIds, String error, int maxAttempts, Duration backoff) {
+        update(jobIds, List.of(ChainJobEntity.PENDING), job -> {
+            int attempts = job.getAttempts() + 1;
+            job.setAttempts(attempts);
+            job.setLastError(truncate(error));
+            if (attempts >= maxAttempts) {
+                job.setStatus(ChainJobEntity.FAILED);
+                job.setCompletedAt(Instant.now());
+            } else {
+                long delayMs = backoff.toMillis() << Math.min(attempts - 1, 10);
+                job.setNextAttemptAt(Instant.now().plusMillis(delayMs));
+            }
+        });
+    }
+
+    /**
+     * Records a replacement of the jobs' stuck transaction: same nonce, higher fees, new hash.
+     * The old hash is kept in replaced_tx_hashes and the bump delay starts over.
+     */
+    @Transactional
+    public void markReplaced(List<Long> jobIds, String txHash, GasFeeOracle.Fees fees, String warning) {
+        update(jobIds, List.of(ChainJobEntity.SUBMITTED), job -> {
+            String replaced = job.getReplacedTxHashes();
+            job.setReplacedTxHashes(replaced == null ? job.getTxHash() : replaced + "," + job.getTxHash());
+            job.setTxHash(txHash);
+            setFees(job, fees);
+            job.setFeeBumps(job.getFeeBumps() + 1);
+            job.setSubmittedAt(Instant.now());
+            job.setLastError(truncate(warning));
+        });
+    }
+
+    /**
+     * The jobs' transaction was not mined after every allowed fee bump, so a 0-value self-transfer
+     * ({@code cancelTxHash}) now bids for its nonce to unblock the transactions after it. The jobs
+     * stay in flight: if one of their own versions still wins they confirm as usual, otherwise
+     * they fail once the self-transfer is confirmed.
+     */
+    @Transactional
+    public void markCancelling(List<Long> jobIds, String cancelTxHash, String warning) {
+        update(jobIds, List.of(ChainJobEntity.SUBMITTED), job -> {
+            job.setCancelTxHash(cancelTxHash);
+            job.setSubmittedAt(Instant.now());
+            job.setLastError(truncate("Not mined after " + job.getFeeBumps() + " fee bump(s); cancelling nonce "
+                    + job.getNonce() + " with self-transfer " + cancelTxHash
+                    + (warning != null ? " (" + warning + ")" : "")));
+        });
+    }
+
+    /** The cancelling self-transfer took the jobs' nonce, so the decisions were not written. */
+    @Transactional
+    public void markCancelled(List<Long> jobIds, String cancelTxHash) {
+        update(jobIds, IN_FLIGHT, job -> {
+            job.setStatus(ChainJobEntity.FAILED);
+            job.setTxHash(cancelTxHash);
+            job.setLastError(truncate("Not mined after " + job.getFeeBumps() + " fee bump(s); nonce " + job.getNonce()
+                    + " was taken by cancelling self-transfer " + cancelTxHash));
+            job.setCompletedAt(Instant.now());
+        });
+    }
+
+    /**
+     * The jobs' transaction is in a block but not yet deep enough to count as confirmed.
+     * {@code txHash} is the version that was mined, which may be one the jobs replaced.
+     */
+    @Transactional
+    public void markMined(List<Long> jobIds, String txHash, long blockNumber, String blockHash) {
+        update(jobIds, IN_FLIGHT, job -> {
+            job.setStatus(ChainJobEntity.MINED);
+            job.setTxHash(txHash);
+            job.setMinedBlockNumber(blockNumber);
+            job.setMinedBlockHash(blockHash);
+            job.setLastError(null);
+        });
+    }
+
+    /** A reorg dropped the block the jobs' transaction was mined in; wait for it to be mined again. */
+    @Transactional
+    public void markReorged(List<Long> jobIds) {
+        update(jobIds, List.of(ChainJobEntity.MINED), job -> {
+            job.setStatus(ChainJobEntity.SUBMITTED);
+            job.setLastError("Block " + job.getMinedBlockNumber() + " was reorganized away; waiting to be mined again");
+            job.setMinedBlockNumber(null);
+            job.setMinedBlockHash(null);
+        });
+    }
+
+    /** {@code txHash} is the transaction that was mined, which may be one the jobs replaced. */
+    @Transactional
+    public void markConfirmed(List<Long> jobIds, String txHash) {
+        update(jobIds, IN_FLIGHT, job -> {
+            job.setStatus(ChainJobEntity.CONFIRMED);
+            job.setTxHash(txHash);
+            job.setLastError(null);
+            job.setCompletedAt(Instant.now());
+        });
+    }
+
+    @Transactional
+    public void markReverted(List<Long> jobIds, String txHash, String error) {
+        update(jobIds, IN_FLIGHT, job -> {
+            job.setStatus(ChainJobEntity.FAILED);
+            job.setTxHash(txHash);
+            job.setLastError(truncate(error));
+            job.setCompletedAt(Instant.now());
+        });
+    }
+
+    /** On-chain status of a decision for the status endpoint, or empty if the hash is unknown. */
+    @Transactional(readOnly = true)
+    public Optional<Map<String, Object>> status(String decisionHash) {
+        Optional<LoanDecisionEntity> decision = loanDecisionRepository.findByDecisionHash(decisionHash);
+        if (decision.isEmpty()) {
+            return Optional.empty();
+        }
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("decisionHash", decisionHash);
+        response.put("onChainStatus", decision.get().getOnChainStatus());
+        response.put("onChainTxHash", decision.get().getOnChainTxHash());
+        response.put("onChainError", decision.get().getOnChainError());
+        chainJobRepository.findByDecisionHash(decisionHash).ifPresent(job -> {
+            response.put("nonce", job.getNonce());
+            response.put("anchorId", job.getAnchorId());
+            response.put("maxFeePerGas", job.getMaxFeePerGas());
+            response.put("maxPriorityFeePerGas", job.getMaxPriorityFeePerGas());
+            response.put("feeBumps", job.getFeeBumps());
+            response.put("cancelTxHash", job.getCancelTxHash());
+            response.put("minedBlockNumber", job.getMinedBlockNumber());
+            response.put("minedBlockHash", job.getMinedBlockHash());
+            response.put("attempts", job.getAttempts());
+            response.put("nextAttemptAt", ChainJobEntity.PENDING.equals(job.getStatus()) ? job.getNextAttemptAt() : null);
+            response.put("queuedAt", job.getCreatedAt());
+            response.put("submittedAt", job.getSubmittedAt());
+            response.put("completedAt", job.getCompletedAt());
+        });
+        return Optional.of(response);
+    }
+
+    /**
+     * Merkle inclusion proof of an anchored decision, or empty if the hash is unknown or has not
+     * been sealed into an anchor yet.
+     */
+    @Transactional(readOnly = true)
+    public Optional<Map<String, Object>> proof(String decisionHash) {
+        ChainJobEntity job = chainJobRepository.findByDecisionHash(decisionHash).orElse(null);
+        if (job == null || job.getAnchorId() == null) {
+            return Optional.empty();
+        }
+        DecisionAnchorEntity anchor = decisionAnchorRepository.findById(job.getAnchorId()).orElse(null);
+        if (anchor == null) {
+            return Optional.empty();
+        }
+        List<String> leaves = chainJobRepository.findDecisionHashesByAnchorId(anchor.getId());
+        List<String> proof = DecisionMerkleTree.proof(leaves, job.getLeafIndex()).stream()
+                .map(Numeric::toHexString)
+                .toList();
+
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("decisionHash", decisionHash);
+        response.put("anchorId", anchor.getId());
+        response.put("merkleRoot", "0x" + anchor.getMerkleRoot());
+        response.put("leafIndex", job.getLeafIndex());
+        response.put("leafCount", anchor.getLeafCount());
+        response.put("leaf", Numeric.toHexString(DecisionMerkleTree.leaf(decisionHash)));
+        response.put("proof", proof);
+        response.put("hashing", "leaf = sha256(0x00 || decisionHash); node = sha256(0x01 || min(a, b) || max(a, b))");
+        response.put("onChainStatus", job.getStatus());
+        response.put("onChainTxHash", job.getTxHash());
+        response.put("sealedAt", anchor.getCreatedAt());
+        return Optional.of(response);
+    }
+
+    /** Applies a transition to each job that is still in one of {@code expectedStatuses}. */
+    private void update(List<Long> jobIds, List<String> expectedStatuses, Consumer<ChainJobEntity> change) {
+        for (ChainJobEntity job : chainJobRepository.findAllById(jobIds)) {
+            if (!expectedStatuses.contains(job.getStatus())) {
+                continue;
+            }
+            change.accept(job);
+            chainJobRepository.save(job);
+            loanDecisionRepository.findByDecisionHash(job.getDecisionHash()).ifPresent(decision -> {
+                copyToDecision(job, decision);
+                loanDecisionRepository.save(decision);
+            });
+        }
+    }
+
+    private static void setFees(ChainJobEntity job, GasFeeOracle.Fees fees) {
+        job.setMaxFeePerGas(fees != null ? fees.maxFeePerGas().longValueExact() : null);
+        job.setMaxPriorityFeePerGas(fees != null && fees.eip1559() ? fees.maxPriorityFeePerGas().longValueExact() : null);
+    }
+
+    private static void copyToDecision(ChainJobEntity job, LoanDecisionEntity decision) {
+        decision.setOnChainStatus(job.getStatus());
+        decision.setOnChainTxHash(job.getTxHash());
+        decision.setOnChainError(job.getLastError());
+    }
+
+    private static String truncate(String value) {
+        if (value == null) {
+            return null;
+        }
+        return value.length() <= 1000 ? value : value.substring(0, 1000);
+    }
+}
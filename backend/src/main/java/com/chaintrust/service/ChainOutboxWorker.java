@@ -0,0 +1,401 @@
+package com.chaintrust.service;
+
+import com.chaintrust.model.ChainJobEntity;
+import com.chaintrust.model.DecisionAnchorEntity;
+import com.chaintrust.model.LoanDecisionEntity;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.web3j.protocol.core.methods.response.EthBlock;
+import org.web3j.protocol.core.methods.response.TransactionReceipt;
+
+import java.math.BigInteger;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Drains the chain outbox off the request path. Every blockchain.outbox.poll-interval-ms it
+ * polls the head block; on a new head it checks the receipts of all in-flight transactions in one
+ * JSON-RPC batch (no waiting), confirming them blockchain.receipts.confirmations blocks deep and
+ * following reorgs until then. It then sends due PENDING jobs, all transactions in flight at once with locally allocated nonces.
+ * <ul>
+ *   <li>record mode: one recordLoanDecision per job, or with blockchain.batch.enabled
+ *   recordLoanDecisionsBatch groups of up to blockchain.batch.max-size; a partial group waits
+ *   until its oldest job has been due for blockchain.batch.window-ms.</li>
+ *   <li>anchor mode: due jobs are sealed into an epoch of up to blockchain.anchor.max-leaves once
+ *   the oldest has waited blockchain.anchor.epoch-ms, and only the epoch's Merkle root is sent.</li>
+ * </ul>
+ * A send the node refuses is retried with exponential backoff up to blockchain.outbox.max-attempts;
+ * a reverted transaction fails its jobs. Fees come from {@link GasFeeOracle}. A transaction still
+ * unmined blockchain.fees.bump-after-ms after it was sent is re-signed with the same nonce and
+ * bumped fees, at most blockchain.fees.max-bumps times; since any version may end up mined, the
+ * receipts of the replaced hashes are checked too. One still unmined after the last bump is
+ * cancelled with a 0-value self-transfer at the same nonce; its jobs fail if that transfer wins.
+ * A nonce below the node's pending count that no in-flight job holds (its send was refused and
+ * nothing reused it) would stall every later transaction, so once it has been free for
+ * bump-after-ms it is filled with such a self-transfer too. Runs on its own thread; only one pass
+ * is in flight at a time.
+ */
+@Component
+public class ChainOutboxWorker {
+
+    private static final Logger log = LoggerFactory.getLogger(ChainOutboxWorker.class);
+
+    private final ChainOutboxService chainOutboxService;
+    private final BlockchainLoanRecorderService blockchainLoanRecorderService;
+    private final GasFeeOracle gasFeeOracle;
+    private final int batchSize;
+    private final int maxAttempts;
+    private final Duration retryBackoff;
+    private final boolean anchorMode;
+    private final int decisionsPerTx;
+    private final Duration window;
+    private final Duration bumpAfter;
+    private final int maxFeeBumps;
+    private final int confirmations;
+    private final int maxTracked;
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "chain-outbox");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final AtomicBoolean running = new AtomicBoolean();
+    private String lastHeadHash;
+
+    public ChainOutboxWorker(
+            ChainOutboxService chainOutboxService,
+            BlockchainLoanRecorderService blockchainLoanRecorderService,
+            GasFeeOracle gasFeeOracle,
+            @Value("${blockchain.mode:record}") String mode,
+            @Value("${blockchain.outbox.batch-size:20}") int batchSize,
+            @Value("${blockchain.outbox.max-attempts:5}") int maxAttempts,
+            @Value("${blockchain.outbox.retry-backoff-ms:5000}") long retryBackoffMs,
+            @Value("${blockchain.batch.enabled:false}") boolean batchEnabled,
+            @Value("${blockchain.batch.max-size:20}") int batchMaxSize,
+            @Value("${blockchain.batch.window-ms:1000}") long batchWindowMs,
+            @Value("${blockchain.anchor.max-leaves:10000}") int anchorMaxLeaves,
+            @Value("${blockchain.anchor.epoch-ms:60000}") long anchorEpochMs,
+            @Value("${blockchain.fees.bump-after-ms:60000}") long bumpAfterMs,
+            @Value("${blockchain.fees.max-bumps:3}") int maxFeeBumps,
+            @Value("${blockchain.receipts.confirmations:1}") int confirmations,
+            @Value("${blockchain.receipts.max-tracked:200}") int maxTracked) {
+        this.chainOutboxService = chainOutboxService;
+        this.blockchainLoanRecorderService = blockchainLoanRecorderService;
+        this.gasFeeOracle = gasFeeOracle;
+        this.batchSize = Math.max(1, batchSize);
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.retryBackoff = Duration.ofMillis(Math.max(100, retryBackoffMs));
+        this.anchorMode = "anchor".equals(mode == null ? "" : mode.trim().toLowerCase(Locale.ROOT));
+        if (anchorMode) {
+            this.decisionsPerTx = Math.max(1, anchorMaxLeaves);
+            this.window = Duration.ofMillis(Math.max(0, anchorEpochMs));
+        } else {
+            this.decisionsPerTx = batchEnabled ? Math.max(1, batchMaxSize) : 1;
+            this.window = Duration.ofMillis(Math.max(0, batchWindowMs));
+        }
+        this.bumpAfter = Duration.ofMillis(Math.max(1000, bumpAfterMs));
+        this.maxFeeBumps = Math.max(0, maxFeeBumps);
+        this.confirmations = Math.max(1, confirmations);
+        this.maxTracked = Math.max(1, maxTracked);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    @Scheduled(fixedDelayString = "${blockchain.outbox.poll-interval-ms:2000}")
+    void tick() {
+        if (!blockchainLoanRecorderService.isEnabled() || !running.compareAndSet(false, true)) {
+            return;
+        }
+        executor.execute(() -> {
+            try {
+                trackInFlight();
+                submitDue();
+                fillNonceGaps();
+            } catch (RuntimeException e) {
+                log.warn("Chain outbox pass failed: {}", e.getMessage());
+            } finally {
+                running.set(false);
+            }
+        });
+    }
+
+    /**
+     * Runs once per new head block: fetches the receipts of every in-flight transaction, and of the
+     * versions it replaced, in one JSON-RPC batch and moves each transaction's jobs from its
+     * receipt. Receipts cannot change without a new head, so a pass that sees the same head skips.
+     */
+    private void trackInFlight() {
+        EthBlock.Block head;
+        try {
+            head = blockchainLoanRecorderService.latestBlock();
+        } catch (Exception e) {
+            log.debug("Head block lookup failed: {}", e.getMessage());
+            return;
+        }
+        if (head.getHash() != null && head.getHash().equalsIgnoreCase(lastHeadHash)) {
+            return;
+        }
+
+        Map<String, List<ChainJobEntity>> jobsByTx = new LinkedHashMap<>();
+        List<String> lookups = new ArrayList<>();
+        for (String txHash : chainOutboxService.inFlightTxHashes(maxTracked)) {
+            List<ChainJobEntity> jobs = chainOutboxService.inFlightJobs(txHash);
+            if (!jobs.isEmpty()) {
+                jobsByTx.put(txHash, jobs);
+                lookups.addAll(versions(txHash, jobs.get(0)));
+            }
+        }
+        Map<String, TransactionReceipt> receipts;
+        try {
+            receipts = blockchainLoanRecorderService.fetchReceipts(lookups);
+        } catch (Exception e) {
+            log.debug("Receipt batch of {} lookup(s) failed: {}", lookups.size(), e.getMessage());
+            return;
+        }
+        long headNumber = head.getNumber().longValueExact();
+        jobsByTx.forEach((txHash, jobs) -> track(txHash, jobs, receipts, headNumber));
+        lastHeadHash = head.getHash();
+    }
+
+    /**
+     * MINED until the receipt's block is blockchain.receipts.confirmations deep, then CONFIRMED
+     * (or FAILED for a revert or a skipped batch entry). A MINED transaction whose receipt is gone,
+     * or now names another block, was caught in a reorg and is tracked again from there.
+     */
+    private void track(String txHash, List<ChainJobEntity> jobs, Map<String, TransactionReceipt> receipts, long head) {
+        ChainJobEntity first = jobs.get(0);
+        String minedHash = versions(txHash, first).stream().filter(receipts::containsKey).findFirst().orElse(null);
+        if (minedHash == null) {
+            if (ChainJobEntity.MINED.equals(first.getStatus())) {
+                log.warn("Transaction {} dropped from block {} by a reorg", txHash, first.getMinedBlockNumber());
+                chainOutboxService.markReorged(ids(jobs));
+            } else {
+                replaceIfStuck(jobs);
+            }
+            return;
+        }
+
+        TransactionReceipt receipt = receipts.get(minedHash);
+        long blockNumber = receipt.getBlockNumber().longValueExact();
+        if (head - blockNumber + 1 < confirmations) {
+            if (!minedHash.equalsIgnoreCase(txHash) || !receipt.getBlockHash().equalsIgnoreCase(first.getMinedBlockHash())) {
+                if (ChainJobEntity.MINED.equals(first.getStatus())) {
+                    log.warn("Transaction {} moved from block {} to {} by a reorg", minedHash, first.getMinedBlockNumber(), blockNumber);
+                }
+                chainOutboxService.markMined(ids(jobs), minedHash, blockNumber, receipt.getBlockHash());
+            }
+            return;
+        }
+
+        if (minedHash.equalsIgnoreCase(first.getCancelTxHash())) {
+            log.warn("Chain write of {} decision(s) cancelled: nonce {} taken by self-transfer {}",
+                    jobs.size(), first.getNonce(), minedHash);
+            chainOutboxService.markCancelled(ids(jobs), minedHash);
+            return;
+        }
+        if (!"0x1".equalsIgnoreCase(receipt.getStatus())) {
+            log.warn("Chain write of {} decision(s) reverted in {}", jobs.size(), minedHash);
+            chainOutboxService.markReverted(ids(jobs), minedHash, "On-chain transaction reverted");
+            return;
+        }
+        Set<String> skipped = blockchainLoanRecorderService.skippedDecisionHashes(receipt);
+        List<Long> confirmed = new ArrayList<>();
+        List<Long> rejected = new ArrayList<>();
+        for (ChainJobEntity job : jobs) {
+            (skipped.contains(job.getDecisionHash()) ? rejected : confirmed).add(job.getId());
+        }
+        chainOutboxService.markConfirmed(confirmed, minedHash);
+        if (!rejected.isEmpty()) {
+            chainOutboxService.markReverted(rejected, minedHash, "Skipped on chain: wallet is blacklisted");
+        }
+    }
+
+    /** The current hash first, then the versions it replaced, newest first, then any cancelling self-transfer. */
+    private static List<String> versions(String txHash, ChainJobEntity job) {
+        List<String> versions = new ArrayList<>();
+        versions.add(txHash);
+        if (job.getReplacedTxHashes() != null) {
+            List<String> replaced = new ArrayList<>(Arrays.asList(job.getReplacedTxHashes().split(",")));
+            Collections.reverse(replaced);
+            versions.addAll(replaced);
+        }
+        if (job.getCancelTxHash() != null && !versions.contains(job.getCancelTxHash())) {
+            versions.add(job.getCancelTxHash());
+        }
+        return versions;
+    }
+
+    /**
+     * Re-signs the same call with the same nonce at bumped fees once the transaction has waited
+     * bump-after-ms. If the node refuses (underpriced, or a version was mined in the meantime and
+     * the nonce is now too low) nothing changes and the receipts decide on the next pass. After
+     * max-bumps replacements the nonce is cancelled instead, once.
+     */
+    private void replaceIfStuck(List<ChainJobEntity> jobs) {
+        ChainJobEntity first = jobs.get(0);
+        if (first.getNonce() == null
+                || first.getMaxFeePerGas() == null
+                || first.getCancelTxHash() != null
+                || first.getSubmittedAt() == null
+                || first.getSubmittedAt().plus(bumpAfter).isAfter(Instant.now())) {
+            return;
+        }
+        BigInteger maxFee = BigInteger.valueOf(first.getMaxFeePerGas());
+        GasFeeOracle.Fees previous = first.getMaxPriorityFeePerGas() != null
+                ? new GasFeeOracle.Fees(true, maxFee, BigInteger.valueOf(first.getMaxPriorityFeePerGas()))
+                : new GasFeeOracle.Fees(false, maxFee, maxFee);
+        GasFeeOracle.Fees fees;
+        try {
+            fees = gasFeeOracle.replacementFor(previous);
+        } catch (Exception e) {
+            log.warn("Chain outbox could not price a replacement for {}: {}", first.getTxHash(), e.getMessage());
+            return;
+        }
+
+        BigInteger nonce = BigInteger.valueOf(first.getNonce());
+        if (first.getFeeBumps() >= maxFeeBumps) {
+            cancel(jobs, nonce, fees);
+            return;
+        }
+        CompletableFuture<BlockchainLoanRecorderService.ChainWriteResult> send;
+        Optional<DecisionAnchorEntity> anchor = chainOutboxService.anchorFor(first);
+        if (anchor.isPresent()) {
+            send = blockchainLoanRecorderService.anchorRoot(
+                    anchor.get().getMerkleRoot(), anchor.get().getLeafCount(), nonce, fees);
+        } else {
+            List<LoanDecisionEntity> decisions = new ArrayList<>();
+            for (ChainJobEntity job : jobs) {
+                Optional<LoanDecisionEntity> decision = chainOutboxService.decisionFor(job);
+                if (decision.isEmpty()) {
+                    return;
+                }
+                decisions.add(decision.get());
+            }
+            List<String> purposes = jobs.stream().map(ChainJobEntity::getPurpose).toList();
+            send = blockchainLoanRecorderService.submit(decisions, purposes, nonce, fees);
+        }
+
+        BlockchainLoanRecorderService.ChainWriteResult result = send.join();
+        if (result.isSubmitted()) {
+            log.info("Replaced stuck transaction {} (nonce {}) with {} at maxFeePerGas {}",
+                    first.getTxHash(), nonce, result.getTxHash(), fees.maxFeePerGas());
+            chainOutboxService.markReplaced(ids(jobs), result.getTxHash(), fees, result.getError());
+        } else {
+            log.info("Replacement of {} (nonce {}) refused: {}", first.getTxHash(), nonce, result.getError());
+        }
+    }
+
+    private void cancel(List<ChainJobEntity> jobs, BigInteger nonce, GasFeeOracle.Fees fees) {
+        ChainJobEntity first = jobs.get(0);
+        BlockchainLoanRecorderService.ChainWriteResult result = blockchainLoanRecorderService.cancel(nonce, fees).join();
+        if (result.isSubmitted()) {
+            log.warn("Transaction {} (nonce {}) not mined after {} fee bump(s); cancelling with self-transfer {}",
+                    first.getTxHash(), nonce, first.getFeeBumps(), result.getTxHash());
+            chainOutboxService.markCancelling(ids(jobs), result.getTxHash(), result.getError());
+        } else {
+            log.warn("Cancellation of {} (nonce {}) refused: {}", first.getTxHash(), nonce, result.getError());
+        }
+    }
+
+    /** Fills nonces that were released and never reused, or that the node is still waiting on. */
+    private void fillNonceGaps() {
+        try {
+            List<BigInteger> filled = blockchainLoanRecorderService.fillNonceGaps(
+                    chainOutboxService.inFlightNonces(), bumpAfter, gasFeeOracle.current());
+            if (!filled.isEmpty()) {
+                log.warn("Filled stalled nonce(s) {} with self-transfers", filled);
+            }
+        } catch (Exception e) {
+            log.debug("Nonce gap check failed: {}", e.getMessage());
+        }
+    }
+
+    private void submitDue() {
+        List<ChainJobEntity> jobs = chainOutboxService.dueJobs(anchorMode ? decisionsPerTx : batchSize * decisionsPerTx);
+        if (jobs.isEmpty()) {
+            return;
+        }
+        if (jobs.size() < decisionsPerTx && jobs.get(0).getNextAttemptAt().plus(window).isAfter(Instant.now())) {
+            return;
+        }
+        GasFeeOracle.Fees fees;
+        try {
+            fees = gasFeeOracle.current();
+        } catch (Exception e) {
+            log.warn("Chain outbox could not price transactions: {}", e.getMessage());
+            return;
+        }
+
+        if (anchorMode) {
+            DecisionAnchorEntity anchor = chainOutboxService.sealAnchor(jobs);
+            log.info("Anchoring {} decision(s) under Merkle root {} (anchor {})",
+                    anchor.getLeafCount(), anchor.getMerkleRoot(), anchor.getId());
+            complete(jobs, blockchainLoanRecorderService.anchorRoot(anchor.getMerkleRoot(), anchor.getLeafCount(), null, fees));
+            return;
+        }
+
+        List<ChainJobEntity> ready = new ArrayList<>();
+        List<LoanDecisionEntity> decisions = new ArrayList<>();
+        for (ChainJobEntity job : jobs) {
+            Optional<LoanDecisionEntity> decision = chainOutboxService.decisionFor(job);
+            if (decision.isEmpty()) {
+                chainOutboxService.markAttemptFailed(List.of(job.getId()), "Loan decision not found", 1, retryBackoff);
+                continue;
+            }
+            ready.add(job);
+            decisions.add(decision.get());
+        }
+
+        // Nonces are allocated in group order and all sends go out before any response is awaited.
+        List<List<ChainJobEntity>> groups = new ArrayList<>();
+        List<CompletableFuture<BlockchainLoanRecorderService.ChainWriteResult>> sends = new ArrayList<>();
+        for (int from = 0; from < ready.size(); from += decisionsPerTx) {
+            int to = Math.min(ready.size(), from + decisionsPerTx);
+            List<ChainJobEntity> group = ready.subList(from, to);
+            List<String> purposes = group.stream().map(ChainJobEntity::getPurpose).toList();
+            groups.add(group);
+            sends.add(blockchainLoanRecorderService.submit(decisions.subList(from, to), purposes, null, fees));
+        }
+        for (int i = 0; i < groups.size(); i++) {
+            complete(groups.get(i), sends.get(i));
+        }
+    }
+
+    private void complete(List<ChainJobEntity> jobs, CompletableFuture<BlockchainLoanRecorderService.ChainWriteResult> send) {
+        BlockchainLoanRecorderService.ChainWriteResult result = send.join();
+        if (result.isSubmitted()) {
+            if (result.getError() != null) {
+                log.warn("Chain write of {} decision(s) tracked as {} (nonce {}): {}",
+                        jobs.size(), result.getTxHash(), result.getNonce(), result.getError());
+            }
+            chainOutboxService.markSubmitted(ids(jobs), result.getTxHash(), result.getNonce(), result.getFees(), result.getError());
+        } else {
+            log.warn("Chain write of {} decision(s) failed (attempt {}): {}",
+                    jobs.size(), jobs.get(0).getAttempts() + 1, result.getError());
+            chainOutboxService.markAttemptFailed(ids(jobs), result.getError(), maxAttempts, retryBackoff);
+        }
+    }
+
+    private static List<Long> ids(List<ChainJobEntity> jobs) {
+        return jobs.stream().map(ChainJobEntity::getId).toList();
+    }
+}
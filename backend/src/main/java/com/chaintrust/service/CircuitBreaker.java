@@ -0,0 +1,129 @@
+package com.chaintrust.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Closed / open / half-open breaker shared by every caller of one upstream.
+ * <ul>
+ *   <li>CLOSED: calls pass; {@code failureThreshold} consecutive failures (or one
+ *       {@link #trip}) open the breaker.</li>
+ *   <li>OPEN: calls are rejected without touching the upstream. Only {@link #probeSucceeded}
+ *       (a background health check) moves it on, to HALF_OPEN.</li>
+ *   <li>HALF_OPEN: up to {@code halfOpenCalls} trial calls pass at once; a success closes the
+ *       breaker and a failure opens it again.</li>
+ * </ul>
+ * Publishes {@code <name>.circuit.state} (0 closed, 1 half-open, 2 open),
+ * {@code <name>.circuit.transitions{to=...}} and {@code <name>.circuit.rejected}, each carrying
+ * the given tags.
+ */
+public final class CircuitBreaker {
+
+    public enum State { CLOSED, HALF_OPEN, OPEN }
+
+    private static final Logger log = LoggerFactory.getLogger(CircuitBreaker.class);
+
+    private final String name;
+    private final int failureThreshold;
+    private final int halfOpenCalls;
+    private final Map<State, Counter> transitions = new EnumMap<>(State.class);
+    private final Counter rejected;
+
+    private State state = State.CLOSED;
+    private int consecutiveFailures;
+    private int trialsInFlight;
+
+    public CircuitBreaker(String name, int failureThreshold, int halfOpenCalls, MeterRegistry meterRegistry, Tags tags) {
+        this.name = name + tags.stream().map(t -> " " + t.getValue()).reduce("", String::concat);
+        this.failureThreshold = Math.max(1, failureThreshold);
+        this.halfOpenCalls = Math.max(1, halfOpenCalls);
+        for (State s : State.values()) {
+            transitions.put(s, meterRegistry.counter(name + ".circuit.transitions", tags.and("to", s.name().toLowerCase())));
+        }
+        this.rejected = meterRegistry.counter(name + ".circuit.rejected", tags);
+        meterRegistry.gauge(name + ".circuit.state", tags, this,
+                b -> b.state() == State.CLOSED ? 0 : b.state() == State.HALF_OPEN ? 1 : 2);
+    }
+
+    public synchronized State state() {
+        return state;
+    }
+
+    /**
+     * Cheap admission check for callers about to queue work: false (counted as a rejection)
+     * while the breaker is open. Does not take a half-open trial slot.
+     */
+    public synchronized boolean allowRequest() {
+        if (state == State.OPEN) {
+            rejected.increment();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Returns false (and counts a rejection) when the upstream call must not be made. Every
+     * permitted call must be followed by exactly one {@link #onSuccess} or {@link #onFailure}.
+     */
+    public synchronized boolean tryAcquire() {
+        switch (state) {
+            case CLOSED -> {
+                return true;
+            }
+            case HALF_OPEN -> {
+                if (trialsInFlight < halfOpenCalls) {
+                    trialsInFlight++;
+                    return true;
+                }
+            }
+            default -> { }
+        }
+        rejected.increment();
+        return false;
+    }
+
+    public synchronized void onSuccess() {
+        consecutiveFailures = 0;
+        if (state == State.HALF_OPEN) {
+            trialsInFlight = Math.max(0, trialsInFlight - 1);
+            transition(State.CLOSED, "trial call succeeded");
+        }
+    }
+
+    public synchronized void onFailure(String reason) {
+        if (state == State.HALF_OPEN) {
+            trialsInFlight = Math.max(0, trialsInFlight - 1);
+            transition(State.OPEN, "trial call failed: " + reason);
+        } else if (state == State.CLOSED && ++consecutiveFailures >= failureThreshold) {
+            transition(State.OPEN, consecutiveFailures + " consecutive failures, last: " + reason);
+        }
+    }
+
+    /** Opens immediately, e.g. on a reply that means the upstream is cold or restarting. */
+    public synchronized void trip(String reason) {
+        if (state != State.OPEN) {
+            transition(State.OPEN, reason);
+        }
+    }
+
+    /** Called by the health prober; lets trial calls through if the breaker is open. */
+    public synchronized void probeSucceeded() {
+        if (state == State.OPEN) {
+            transition(State.HALF_OPEN, "health probe succeeded");
+        }
+    }
+
+    private void transition(State to, String reason) {
+        log.warn("{} circuit {} -> {} ({})", name, state, to, reason);
+        state = to;
+        consecutiveFailures = 0;
+        trialsInFlight = 0;
+        transitions.get(to).increment();
+    }
+}
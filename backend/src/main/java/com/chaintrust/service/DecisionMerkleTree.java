@@ -0,0 +1,91 @@
+package com.chaintrust.service;
+
+import org.web3j.utils.Numeric;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * SHA-256 Merkle tree over decision hashes, hashed the same way as
+ * ChainTrust.verifyDecisionProof: leaf = sha256(0x00 || decisionHash),
+ * node = sha256(0x01 || min(a, b) || max(a, b)). An odd node at the end of a level moves up
+ * unchanged. Because pairs are sorted, a proof is just the sibling hashes from leaf to root.
+ */
+final class DecisionMerkleTree {
+
+    private DecisionMerkleTree() {
+    }
+
+    static byte[] root(List<String> decisionHashes) {
+        List<byte[]> level = leaves(decisionHashes);
+        if (level.isEmpty()) {
+            throw new IllegalArgumentException("Merkle tree needs at least one leaf");
+        }
+        while (level.size() > 1) {
+            level = parents(level);
+        }
+        return level.get(0);
+    }
+
+    /** Sibling hashes from the leaf at {@code index} up to the root. */
+    static List<byte[]> proof(List<String> decisionHashes, int index) {
+        if (index < 0 || index >= decisionHashes.size()) {
+            throw new IllegalArgumentException("Leaf index out of range: " + index);
+        }
+        List<byte[]> proof = new ArrayList<>();
+        List<byte[]> level = leaves(decisionHashes);
+        int position = index;
+        while (level.size() > 1) {
+            int sibling = position ^ 1;
+            if (sibling < level.size()) {
+                proof.add(level.get(sibling));
+            }
+            level = parents(level);
+            position >>= 1;
+        }
+        return proof;
+    }
+
+    static byte[] leaf(String decisionHash) {
+        MessageDigest digest = sha256();
+        digest.update((byte) 0x00);
+        digest.update(Numeric.hexStringToByteArray(decisionHash));
+        return digest.digest();
+    }
+
+    private static List<byte[]> leaves(List<String> decisionHashes) {
+        List<byte[]> leaves = new ArrayList<>(decisionHashes.size());
+        for (String decisionHash : decisionHashes) {
+            leaves.add(leaf(decisionHash));
+        }
+        return leaves;
+    }
+
+    private static List<byte[]> parents(List<byte[]> level) {
+        List<byte[]> parents = new ArrayList<>((level.size() + 1) / 2);
+        for (int i = 0; i < level.size(); i += 2) {
+            parents.add(i + 1 < level.size() ? node(level.get(i), level.get(i + 1)) : level.get(i));
+        }
+        return parents;
+    }
+
+    private static byte[] node(byte[] a, byte[] b) {
+        boolean ordered = Arrays.compareUnsigned(a, b) <= 0;
+        MessageDigest digest = sha256();
+        digest.update((byte) 0x01);
+        digest.update(ordered ? a : b);
+        digest.update(ordered ? b : a);
+        return digest.digest();
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 unavailable", e);
+        }
+    }
+}
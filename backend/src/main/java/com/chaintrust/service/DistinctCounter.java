@@ -0,0 +1,114 @@
+package com.chaintrust.service;
+
+import java.nio.ByteBuffer;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Counts distinct strings in bounded memory. Up to {@value #EXACT_LIMIT} values are kept as
+ * 64-bit hashes and counted exactly; past that they are folded into a HyperLogLog sketch of
+ * 2^{@value #PRECISION} one-byte registers (about 1.6% standard error). Either way the saved
+ * {@link State} holds at most 8 KB, however long the history. Strings are hashed ASCII
+ * case-insensitively, so hex addresses need no lowercase copy.
+ */
+public final class DistinctCounter {
+
+    static final int EXACT_LIMIT = 1024;
+    static final int PRECISION = 12;
+    private static final int REGISTERS = 1 << PRECISION;
+
+    private Set<Long> exact = new HashSet<>();
+    private byte[] registers;
+
+    static DistinctCounter restore(State state) {
+        DistinctCounter counter = new DistinctCounter();
+        if (state == null) {
+            return counter;
+        }
+        if (state.registers() != null) {
+            if (state.registers().length != REGISTERS) {
+                throw new IllegalArgumentException("Distinct counter has " + state.registers().length + " registers");
+            }
+            counter.exact = null;
+            counter.registers = state.registers().clone();
+        } else if (state.hashes() != null) {
+            ByteBuffer hashes = ByteBuffer.wrap(state.hashes());
+            while (hashes.remaining() >= Long.BYTES) {
+                counter.exact.add(hashes.getLong());
+            }
+        }
+        return counter;
+    }
+
+    void add(String value) {
+        long hash = hash(value);
+        if (registers != null) {
+            record(hash);
+        } else if (exact.add(hash) && exact.size() > EXACT_LIMIT) {
+            registers = new byte[REGISTERS];
+            exact.forEach(this::record);
+            exact = null;
+        }
+    }
+
+    long count() {
+        if (registers == null) {
+            return exact.size();
+        }
+        double inverseSum = 0;
+        int empty = 0;
+        for (byte register : registers) {
+            inverseSum += 1.0 / (1L << register);
+            if (register == 0) {
+                empty++;
+            }
+        }
+        double alpha = 0.7213 / (1 + 1.079 / REGISTERS);
+        double estimate = alpha * REGISTERS * REGISTERS / inverseSum;
+        if (estimate <= 2.5 * REGISTERS && empty > 0) {
+            // Linear counting is more accurate while many registers are still empty.
+            estimate = REGISTERS * Math.log((double) REGISTERS / empty);
+        }
+        return Math.round(estimate);
+    }
+
+    State state() {
+        if (registers != null) {
+            return new State(null, registers.clone());
+        }
+        ByteBuffer hashes = ByteBuffer.allocate(exact.size() * Long.BYTES);
+        exact.forEach(hashes::putLong);
+        return new State(hashes.array(), null);
+    }
+
+    private void record(long hash) {
+        int index = (int) (hash >>> (64 - PRECISION));
+        byte rank = (byte) (Long.numberOfLeadingZeros((hash << PRECISION) | (1L << (PRECISION - 1))) + 1);
+        if (rank > registers[index]) {
+            registers[index] = rank;
+        }
+    }
+
+    /** FNV-1a over ASCII-lowercased chars, then the MurmurHash3 finalizer to spread the bits. */
+    static long hash(String value) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c >= 'A' && c <= 'Z') {
+                c += 'a' - 'A';
+            }
+            h ^= c;
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    /** Packed 64-bit hashes while exact, otherwise the sketch registers; Jackson writes both as base64. */
+    public record State(byte[] hashes, byte[] registers) {
+    }
+}
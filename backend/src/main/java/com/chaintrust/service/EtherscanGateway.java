@@ -0,0 +1,338 @@
+package com.chaintrust.service;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.web.client.RestTemplateBuilder;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.client.JdkClientHttpRequestFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+/**
+ * Single entry point for Etherscan calls. Each API key gets its own token bucket sized to the
+ * plan's per-second quota, keys that come back rate-limited or invalid are benched with
+ * exponential backoff, and waiting callers are served in arrival order through a fair lock.
+ * All requests share one keep-alive HTTP client.
+ */
+@Service
+public class EtherscanGateway {
+
+    private static final Logger log = LoggerFactory.getLogger(EtherscanGateway.class);
+
+    private static final long RATE_LIMIT_BACKOFF_BASE_MS = 1_000;
+    private static final long RATE_LIMIT_BACKOFF_MAX_MS = 60_000;
+    private static final long INVALID_KEY_BACKOFF_MS = 10 * 60_000;
+
+    private final RestTemplate restTemplate;
+    private final JsonFactory jsonFactory;
+    private final String baseUrl;
+    private final long chainId;
+    private final List<KeyState> keys;
+    private final ReentrantLock permitLock = new ReentrantLock(true);
+    private final long acquireTimeoutNanos;
+    private final Counter rateLimitedCounter;
+    private final Counter invalidKeyCounter;
+    private final Counter failureCounter;
+
+    public EtherscanGateway(
+            RestTemplateBuilder builder,
+            ObjectMapper objectMapper,
+            MeterRegistry meterRegistry,
+            @Value("${etherscan.base-url:https://api.etherscan.io/v2/api}") String baseUrl,
+            @Value("${etherscan.api-keys:}") String apiKeysCsv,
+            @Value("${etherscan.chain-id:1}") long chainId,
+            @Value("${etherscan.rate-limit-per-second:5}") double permitsPerSecond,
+            @Value("${etherscan.acquire-timeout-ms:10000}") long acquireTimeoutMs) {
+        HttpClient httpClient = HttpClient.newBuilder()
+                .connectTimeout(Duration.ofSeconds(5))
+                .version(HttpClient.Version.HTTP_2)
+                .build();
+        JdkClientHttpRequestFactory requestFactory = new JdkClientHttpRequestFactory(httpClient);
+        requestFactory.setReadTimeout(Duration.ofSeconds(10));
+        this.restTemplate = builder.requestFactory(() -> requestFactory).build();
+        this.jsonFactory = objectMapper.getFactory();
+        this.baseUrl = baseUrl;
+        this.chainId = chainId;
+        double rate = permitsPerSecond > 0 ? permitsPerSecond : 5;
+        this.keys = Arrays.stream(apiKeysCsv.split(","))
+                .map(String::trim)
+                .filter(k -> !k.isBlank())
+                .map(k -> new KeyState(k, rate))
+                .toList();
+        this.acquireTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, acquireTimeoutMs));
+        this.rateLimitedCounter = meterRegistry.counter("etherscan.responses", "outcome", "rate_limited");
+        this.invalidKeyCounter = meterRegistry.counter("etherscan.responses", "outcome", "invalid_key");
+        this.failureCounter = meterRegistry.counter("etherscan.responses", "outcome", "failed");
+        meterRegistry.gauge("etherscan.keys.available", keys, this::availableKeyCount);
+    }
+
+    public boolean isConfigured() {
+        return !keys.isEmpty();
+    }
+
+    public long chainId() {
+        return chainId;
+    }
+
+    /**
+     * Sends {@code module=...&action=...} style query parameters (without chainid/apikey) and
+     * returns the decoded response. Rate-limit, invalid-key and transient replies are retried on
+     * the next healthy key; any other reply is returned for the caller to interpret.
+     */
+    @SuppressWarnings("unchecked")
+    public Map<String, Object> get(String query) {
+        return execute(query, url -> {
+            Map<String, Object> resp = restTemplate.getForObject(url, Map.class);
+            if (resp == null) {
+                return null;
+            }
+            Object result = resp.get("result");
+            return new Envelope<>(str(resp.get("status")), str(resp.get("message")),
+                    result instanceof String text ? text : "", resp);
+        }).result();
+    }
+
+    /**
+     * Same retry semantics as {@link #get(String)}, but the body is decoded token by token from
+     * the response stream. When {@code result} is a JSON array it is handed to {@code reader},
+     * which must consume it through the closing bracket; a string result is kept as text.
+     */
+    public <T> Envelope<T> getStreaming(String query, ResultReader<T> reader) {
+        return execute(query, url -> restTemplate.execute(url, HttpMethod.GET, null,
+                response -> decode(response.getBody(), reader)));
+    }
+
+    private <T> Envelope<T> execute(String query, Function<String, Envelope<T>> call) {
+        if (keys.isEmpty()) {
+            throw new IllegalStateException("ETHERSCAN_API_KEYS is missing");
+        }
+
+        String lastError = "Unknown Etherscan error";
+        int maxAttempts = Math.max(2, keys.size());
+        long deadline = System.nanoTime() + acquireTimeoutNanos;
+        for (int attempt = 0; attempt < maxAttempts; attempt++) {
+            KeyState key = acquireKey(deadline);
+            if (key == null) {
+                break;
+            }
+
+            Envelope<T> resp;
+            try {
+                resp = call.apply(baseUrl + "?chainid=" + chainId + "&" + query + "&apikey=" + key.apiKey);
+            } catch (Exception ex) {
+                key.recordFailure();
+                failureCounter.increment();
+                lastError = "Etherscan request failed: " + ex.getMessage();
+                continue;
+            }
+            if (resp == null) {
+                key.recordFailure();
+                failureCounter.increment();
+                lastError = "Empty Etherscan response";
+                continue;
+            }
+
+            if ("0".equals(resp.status())) {
+                String normalized = (resp.message() + " " + resp.resultText()).toLowerCase(Locale.ROOT);
+                if (normalized.contains("rate limit")) {
+                    key.demote(key.nextRateLimitBackoffMs());
+                    rateLimitedCounter.increment();
+                    lastError = "Etherscan rate limit reached";
+                    continue;
+                }
+                if (normalized.contains("invalid api key")) {
+                    key.demote(INVALID_KEY_BACKOFF_MS);
+                    invalidKeyCounter.increment();
+                    log.warn("Etherscan rejected API key ending in {} — benched for {}s",
+                            key.suffix(), INVALID_KEY_BACKOFF_MS / 1000);
+                    lastError = "Etherscan invalid API key";
+                    continue;
+                }
+                if (normalized.contains("temporarily unavailable") || normalized.contains("timeout")) {
+                    key.recordFailure();
+                    failureCounter.increment();
+                    lastError = "Etherscan transient response: " + normalized.trim();
+                    continue;
+                }
+            }
+
+            key.recordSuccess();
+            return resp;
+        }
+        throw new IllegalStateException(lastError);
+    }
+
+    private <T> Envelope<T> decode(InputStream body, ResultReader<T> reader) throws IOException {
+        try (JsonParser parser = jsonFactory.createParser(body)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                return null;
+            }
+            String status = "";
+            String message = "";
+            String resultText = "";
+            T result = null;
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                JsonToken value = parser.nextToken();
+                switch (field) {
+                    case "status" -> status = parser.getValueAsString("");
+                    case "message" -> message = parser.getValueAsString("");
+                    case "result" -> {
+                        if (value == JsonToken.START_ARRAY) {
+                            result = reader.read(parser);
+                        } else if (value == JsonToken.VALUE_STRING) {
+                            resultText = parser.getText();
+                        } else {
+                            parser.skipChildren();
+                        }
+                    }
+                    default -> parser.skipChildren();
+                }
+            }
+            return new Envelope<>(status, message, resultText, result);
+        }
+    }
+
+    /**
+     * Blocks until some key has a token, or returns null at the deadline. The fair lock is held
+     * while waiting, so callers queue in arrival order instead of racing for refilled tokens.
+     */
+    private KeyState acquireKey(long deadline) {
+        permitLock.lock();
+        try {
+            while (true) {
+                long now = System.nanoTime();
+                long soonest = Long.MAX_VALUE;
+                for (KeyState key : byHealth()) {
+                    long wait = key.nanosUntilAvailable(now);
+                    if (wait == 0) {
+                        key.takeToken();
+                        return key;
+                    }
+                    soonest = Math.min(soonest, wait);
+                }
+                if (soonest == Long.MAX_VALUE || now + soonest > deadline) {
+                    return null;
+                }
+                LockSupport.parkNanos(soonest);
+                if (Thread.currentThread().isInterrupted()) {
+                    return null;
+                }
+            }
+        } finally {
+            permitLock.unlock();
+        }
+    }
+
+    private List<KeyState> byHealth() {
+        List<KeyState> ordered = new ArrayList<>(keys);
+        ordered.sort(Comparator.comparingDouble((KeyState k) -> k.healthScore).reversed());
+        return ordered;
+    }
+
+    private double availableKeyCount(List<KeyState> states) {
+        long now = System.nanoTime();
+        return states.stream().filter(k -> k.benchedUntilNanos <= now).count();
+    }
+
+    private static String str(Object o) {
+        return o != null ? o.toString() : "";
+    }
+
+    /**
+     * Decoded Etherscan reply: {@code resultText} holds a string result (usually an error or
+     * "No transactions found"); {@code result} holds the decoded array or map, if any.
+     */
+    public record Envelope<T>(String status, String message, String resultText, T result) {}
+
+    @FunctionalInterface
+    public interface ResultReader<T> {
+        /** Called with the parser positioned on START_ARRAY; must return positioned on END_ARRAY. */
+        T read(JsonParser parser) throws IOException;
+    }
+
+    /**
+     * Token bucket plus health bookkeeping for one key. Mutated only under {@code permitLock},
+     * except the outcome recorders, which only touch volatile fields.
+     */
+    private static final class KeyState {
+        private final String apiKey;
+        private final double capacity;
+        private final double tokensPerNano;
+        private double tokens;
+        private long lastRefillNanos;
+        private volatile long benchedUntilNanos;
+        private volatile int consecutiveRateLimits;
+        private volatile double healthScore = 1.0;
+
+        private KeyState(String apiKey, double permitsPerSecond) {
+            this.apiKey = apiKey;
+            this.capacity = Math.max(1.0, permitsPerSecond);
+            this.tokensPerNano = permitsPerSecond / TimeUnit.SECONDS.toNanos(1);
+            this.tokens = capacity;
+            this.lastRefillNanos = System.nanoTime();
+        }
+
+        private long nanosUntilAvailable(long now) {
+            if (benchedUntilNanos > now) {
+                return benchedUntilNanos - now;
+            }
+            tokens = Math.min(capacity, tokens + (now - lastRefillNanos) * tokensPerNano);
+            lastRefillNanos = now;
+            if (tokens >= 1.0) {
+                return 0;
+            }
+            return Math.max(1, (long) Math.ceil((1.0 - tokens) / tokensPerNano));
+        }
+
+        private void takeToken() {
+            tokens -= 1.0;
+        }
+
+        private void recordSuccess() {
+            consecutiveRateLimits = 0;
+            healthScore = healthScore * 0.9 + 0.1;
+        }
+
+        private void recordFailure() {
+            healthScore = healthScore * 0.9;
+        }
+
+        private long nextRateLimitBackoffMs() {
+            int strikes = Math.min(consecutiveRateLimits, 6);
+            consecutiveRateLimits = strikes + 1;
+            return Math.min(RATE_LIMIT_BACKOFF_MAX_MS, RATE_LIMIT_BACKOFF_BASE_MS << strikes);
+        }
+
+        private void demote(long backoffMs) {
+            healthScore = healthScore * 0.5;
+            benchedUntilNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(backoffMs);
+        }
+
+        private String suffix() {
+            return apiKey.length() <= 4 ? apiKey : apiKey.substring(apiKey.length() - 4);
+        }
+    }
+}
@@ -4,6 +4,7 @@ import com.chaintrust.model.WalletFeatures;
 import org.springframework.stereotype.Service;
 
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.regex.Pattern;
 
@@ -12,6 +13,25 @@ public class FeatureService {
 
     private static final Pattern ETH_ADDRESS_PATTERN = Pattern.compile("^0x[a-fA-F0-9]{40}$");
 
+    /** Model input order; must match FEATURES in ml-train/train_model.py. */
+    public static final List<String> ML_FEATURES = List.of(
+            "wallet_age_days",
+            "tx_count",
+            "avg_tx_value_eth",
+            "unique_contracts",
+            "incoming_outgoing_ratio",
+            "tx_variance",
+            "defi_protocol_count",
+            "flash_loan_count",
+            "liquidation_events",
+            "nft_transaction_count",
+            "max_single_tx_eth",
+            "dormant_period_days",
+            "collateral_ratio",
+            "cross_chain_count",
+            "rugpull_exposure_score"
+    );
+
     public void requireValidAddress(String address) {
         if (address == null || !ETH_ADDRESS_PATTERN.matcher(address).matches()) {
             throw new IllegalArgumentException("Invalid wallet address format");
@@ -65,6 +85,27 @@ public class FeatureService {
         return payload;
     }
 
+    /** Same values as {@link #toMlPayload}, as a primitive vector in {@link #ML_FEATURES} order. */
+    public double[] toMlVector(WalletFeatures features) {
+        return new double[] {
+                features.getWalletAgeDays(),
+                features.getTxCount(),
+                features.getAvgTxValue(),
+                features.getUniqueContracts(),
+                features.getIncomingOutgoingRatio(),
+                features.getTxVariance(),
+                features.getDefiProtocolCount(),
+                features.getFlashLoanCount(),
+                features.getLiquidationEvents(),
+                features.getNftTransactionCount(),
+                features.getMaxSingleTxEth(),
+                features.getDormantPeriodDays(),
+                features.getCollateralRatio(),
+                features.getCrossChainCount(),
+                features.getRugpullExposureScore()
+        };
+    }
+
     private static double clamp(double v, double min, double max) {
         return Math.max(min, Math.min(max, v));
     }
@@ -0,0 +1,314 @@
+package com.chaintrust.service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.web3j.protocol.Web3j;
+import org.web3j.protocol.Web3jService;
+import org.web3j.protocol.core.Request;
+import org.web3j.protocol.core.Response;
+import org.web3j.utils.Numeric;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Keeps transaction fees in memory so an on-chain write never waits on a fee lookup. Every
+ * blockchain.fees.refresh-ms it asynchronously samples eth_feeHistory over the last
+ * blockchain.fees.history-blocks blocks and adds each block's priority-fee reward (at
+ * blockchain.fees.priority-percentile) to a rolling window of blockchain.fees.window-blocks blocks.
+ * The EIP-1559 tip is that percentile over the window (at least min-priority-fee-wei), and
+ * maxFeePerGas is the next block's base fee times base-fee-multiplier plus the tip, which
+ * leaves room for the base fee to rise for a few blocks.
+ * <p>
+ * A node without base fees or without eth_feeHistory gets legacy pricing from eth_gasPrice. Any
+ * other sampling error (timeout, HTTP 5xx, dropped connection) is treated as transient: the
+ * last fees stay in use and the next refresh tries eth_feeHistory again. A fixed
+ * blockchain.gas-price-wei turns sampling off.
+ */
+@Component
+public class GasFeeOracle {
+
+    private static final Logger log = LoggerFactory.getLogger(GasFeeOracle.class);
+    /** JSON-RPC 2.0 "Method not found". */
+    private static final int METHOD_NOT_FOUND = -32601;
+
+    private final Web3jService web3jService;
+    private final Web3j web3j;
+    private final boolean enabled;
+    private final BigInteger fixedGasPrice;
+    private final int historyBlocks;
+    private final int windowBlocks;
+    private final double priorityPercentile;
+    private final BigDecimal baseFeeMultiplier;
+    private final BigInteger minPriorityFee;
+    private final int bumpPercent;
+    private final long staleAfterNanos;
+    private final TreeMap<Long, BigInteger> rewardsByBlock = new TreeMap<>();
+    private final AtomicBoolean sampling = new AtomicBoolean();
+    private volatile boolean feeHistorySupported;
+    private volatile Fees current;
+    private volatile long sampledAt;
+
+    public GasFeeOracle(
+            Web3jService web3jService,
+            Web3j web3j,
+            MeterRegistry meterRegistry,
+            @Value("${blockchain.enabled:false}") boolean enabled,
+            @Value("${blockchain.gas-price-wei:0}") long gasPriceWei,
+            @Value("${blockchain.fees.eip1559:true}") boolean eip1559,
+            @Value("${blockchain.fees.refresh-ms:12000}") long refreshMs,
+            @Value("${blockchain.fees.history-blocks:20}") int historyBlocks,
+            @Value("${blockchain.fees.window-blocks:200}") int windowBlocks,
+            @Value("${blockchain.fees.priority-percentile:50}") double priorityPercentile,
+            @Value("${blockchain.fees.base-fee-multiplier:2.0}") double baseFeeMultiplier,
+            @Value("${blockchain.fees.min-priority-fee-wei:100000000}") long minPriorityFeeWei,
+            @Value("${blockchain.fees.bump-percent:15}") int bumpPercent) {
+        this.web3jService = web3jService;
+        this.web3j = web3j;
+        this.enabled = enabled;
+        this.fixedGasPrice = gasPriceWei > 0 ? BigInteger.valueOf(gasPriceWei) : null;
+        this.feeHistorySupported = eip1559;
+        this.historyBlocks = Math.max(1, Math.min(1024, historyBlocks));
+        this.windowBlocks = Math.max(1, windowBlocks);
+        this.priorityPercentile = Math.max(0.0, Math.min(100.0, priorityPercentile));
+        this.baseFeeMultiplier = BigDecimal.valueOf(Math.max(1.0, baseFeeMultiplier));
+        this.minPriorityFee = BigInteger.valueOf(Math.max(0L, minPriorityFeeWei));
+        // Nodes refuse a replacement that does not raise both fees by at least 10%.
+        this.bumpPercent = Math.max(10, bumpPercent);
+        this.staleAfterNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1000, refreshMs) * 3);
+
+        Gauge.builder("chain.fee.max", this, oracle -> oracle.current == null ? Double.NaN : oracle.current.maxFeePerGas().doubleValue())
+                .description("maxFeePerGas (or legacy gas price) the next write will use")
+                .baseUnit("wei")
+                .register(meterRegistry);
+        Gauge.builder("chain.fee.priority", this, oracle -> oracle.current == null || !oracle.current.eip1559()
+                        ? Double.NaN : oracle.current.maxPriorityFeePerGas().doubleValue())
+                .description("maxPriorityFeePerGas the next write will use")
+                .baseUnit("wei")
+                .register(meterRegistry);
+    }
+
+    /** Only starts the RPC calls, so the shared scheduler thread is never held. */
+    @Scheduled(initialDelay = 0, fixedDelayString = "${blockchain.fees.refresh-ms:12000}")
+    void refresh() {
+        if (!enabled || fixedGasPrice != null || !sampling.compareAndSet(false, true)) {
+            return;
+        }
+        sample().whenComplete((fees, error) -> {
+            sampling.set(false);
+            if (error != null) {
+                log.warn("Fee sampling failed: {}", rootMessage(error));
+            }
+        });
+    }
+
+    /**
+     * Fees for a new transaction, from memory. Samples synchronously only when nothing has been
+     * sampled yet or the last sample is older than three refresh intervals; if that sample fails,
+     * the last fees are still returned when there are any.
+     */
+    public Fees current() throws IOException {
+        if (fixedGasPrice != null) {
+            return Fees.legacy(fixedGasPrice);
+        }
+        Fees fees = current;
+        if (fees != null && System.nanoTime() - sampledAt < staleAfterNanos) {
+            return fees;
+        }
+        try {
+            return sample().join();
+        } catch (CompletionException e) {
+            if (fees != null) {
+                log.warn("Fee sampling failed ({}); keeping the last fees", rootMessage(e));
+                return fees;
+            }
+            throw new IOException("Fee sampling failed: " + rootMessage(e), e);
+        }
+    }
+
+    /**
+     * Fees for replacing a stuck transaction that was sent with {@code previous}: the current
+     * fees, but each at least bump-percent above what was paid before.
+     */
+    public Fees replacementFor(Fees previous) throws IOException {
+        Fees now = current();
+        BigInteger maxFee = now.maxFeePerGas().max(raise(previous.maxFeePerGas()));
+        if (!now.eip1559()) {
+            return Fees.legacy(maxFee);
+        }
+        BigInteger tip = now.maxPriorityFeePerGas().max(raise(previous.maxPriorityFeePerGas()));
+        return Fees.eip1559(maxFee.max(tip), tip);
+    }
+
+    private BigInteger raise(BigInteger value) {
+        return value.multiply(BigInteger.valueOf(100L + bumpPercent)).add(BigInteger.valueOf(99)).divide(BigInteger.valueOf(100));
+    }
+
+    private CompletableFuture<Fees> sample() {
+        CompletableFuture<Fees> sampled;
+        if (feeHistorySupported) {
+            sampled = sampleFeeHistory().exceptionallyCompose(error -> {
+                if (!(rootCause(error) instanceof FeeHistoryUnsupportedException)) {
+                    return CompletableFuture.failedFuture(error);
+                }
+                log.info("eth_feeHistory unusable ({}); using legacy gas pricing", rootMessage(error));
+                feeHistorySupported = false;
+                return sampleGasPrice();
+            });
+        } else {
+            sampled = sampleGasPrice();
+        }
+        return sampled.thenApply(fees -> {
+            current = fees;
+            sampledAt = System.nanoTime();
+            return fees;
+        });
+    }
+
+    private CompletableFuture<Fees> sampleGasPrice() {
+        return web3j.ethGasPrice().sendAsync().thenApply(response -> {
+            if (response.hasError()) {
+                throw new IllegalStateException(response.getError().getMessage());
+            }
+            return Fees.legacy(response.getGasPrice());
+        });
+    }
+
+    private CompletableFuture<Fees> sampleFeeHistory() {
+        Request<?, FeeHistoryResponse> request = new Request<>(
+                "eth_feeHistory",
+                Arrays.asList(
+                        Numeric.encodeQuantity(BigInteger.valueOf(historyBlocks)),
+                        "latest",
+                        Collections.singletonList(priorityPercentile)),
+                web3jService,
+                FeeHistoryResponse.class);
+        return request.sendAsync().thenApply(response -> {
+            if (response.hasError()) {
+                if (response.getError().getCode() == METHOD_NOT_FOUND) {
+                    throw new FeeHistoryUnsupportedException(response.getError().getMessage());
+                }
+                throw new IllegalStateException(response.getError().getMessage());
+            }
+            FeeHistory history = response.getResult();
+            if (history == null || history.getBaseFeePerGas() == null || history.getBaseFeePerGas().isEmpty()) {
+                throw new FeeHistoryUnsupportedException("node reports no base fee");
+            }
+            List<String> baseFees = history.getBaseFeePerGas();
+            BigInteger nextBaseFee = Numeric.decodeQuantity(baseFees.get(baseFees.size() - 1));
+            BigInteger tip = record(history).max(minPriorityFee);
+            BigInteger maxFee = new BigDecimal(nextBaseFee).multiply(baseFeeMultiplier).toBigInteger().add(tip);
+            return Fees.eip1559(maxFee, tip);
+        });
+    }
+
+    /** Adds the sampled blocks to the rolling window and returns the window's tip percentile. */
+    private BigInteger record(FeeHistory history) {
+        synchronized (rewardsByBlock) {
+            if (history.getReward() != null && history.getOldestBlock() != null) {
+                long oldest = Numeric.decodeQuantity(history.getOldestBlock()).longValueExact();
+                for (int i = 0; i < history.getReward().size(); i++) {
+                    List<String> percentiles = history.getReward().get(i);
+                    if (percentiles != null && !percentiles.isEmpty()) {
+                        rewardsByBlock.put(oldest + i, Numeric.decodeQuantity(percentiles.get(0)));
+                    }
+                }
+            }
+            while (rewardsByBlock.size() > windowBlocks) {
+                rewardsByBlock.pollFirstEntry();
+            }
+            if (rewardsByBlock.isEmpty()) {
+                return BigInteger.ZERO;
+            }
+            List<BigInteger> sorted = new ArrayList<>(rewardsByBlock.values());
+            Collections.sort(sorted);
+            int rank = (int) Math.ceil(priorityPercentile / 100.0 * sorted.size()) - 1;
+            return sorted.get(Math.max(0, Math.min(sorted.size() - 1, rank)));
+        }
+    }
+
+    private static Throwable rootCause(Throwable error) {
+        Throwable cause = error;
+        while (cause.getCause() != null && cause != cause.getCause()) {
+            cause = cause.getCause();
+        }
+        return cause;
+    }
+
+    private static String rootMessage(Throwable error) {
+        Throwable cause = rootCause(error);
+        return cause.getMessage() != null ? cause.getMessage() : cause.getClass().getSimpleName();
+    }
+
+    /** The node cannot price EIP-1559 transactions at all, as opposed to a failed request. */
+    private static final class FeeHistoryUnsupportedException extends IllegalStateException {
+
+        private static final long serialVersionUID = 1L;
+
+        FeeHistoryUnsupportedException(String message) {
+            super(message);
+        }
+    }
+
+    /**
+     * Fees for one transaction. For legacy pricing both fields hold the gas price.
+     */
+    public record Fees(boolean eip1559, BigInteger maxFeePerGas, BigInteger maxPriorityFeePerGas) {
+
+        static Fees legacy(BigInteger gasPrice) {
+            return new Fees(false, gasPrice, gasPrice);
+        }
+
+        static Fees eip1559(BigInteger maxFeePerGas, BigInteger maxPriorityFeePerGas) {
+            return new Fees(true, maxFeePerGas, maxPriorityFeePerGas);
+        }
+    }
+
+    public static class FeeHistoryResponse extends Response<FeeHistory> {
+    }
+
+    public static class FeeHistory {
+        private String oldestBlock;
+        private List<String> baseFeePerGas;
+        private List<List<String>> reward;
+
+        public String getOldestBlock() {
+            return oldestBlock;
+        }
+
+        public void setOldestBlock(String oldestBlock) {
+            this.oldestBlock = oldestBlock;
+        }
+
+        public List<String> getBaseFeePerGas() {
+            return baseFeePerGas;
+        }
+
+        public void setBaseFeePerGas(List<String> baseFeePerGas) {
+            this.baseFeePerGas = baseFeePerGas;
+        }
+
+        public List<List<String>> getReward() {
+            return reward;
+        }
+
+        public void setReward(List<List<String>> reward) {
+            this.reward = reward;
+        }
+    }
+}
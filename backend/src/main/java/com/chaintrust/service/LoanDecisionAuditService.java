@@ -1,11 +1,13 @@
 package com.chaintrust.service;
 
+import com.chaintrust.model.ChainJobEntity;
 import com.chaintrust.model.LoanDecisionEntity;
 import com.chaintrust.model.WalletFeatures;
 import com.chaintrust.repository.LoanDecisionRepository;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.time.Instant;
 import java.util.ArrayList;
@@ -22,17 +24,25 @@ public class LoanDecisionAuditService {
     private final LoanDecisionRepository repository;
     private final FeatureService featureService;
     private final ObjectMapper objectMapper;
+    private final ChainOutboxService chainOutboxService;
 
     public LoanDecisionAuditService(
             LoanDecisionRepository repository,
             FeatureService featureService,
-            ObjectMapper objectMapper) {
+            ObjectMapper objectMapper,
+            ChainOutboxService chainOutboxService) {
         this.repository = repository;
         this.featureService = featureService;
         this.objectMapper = objectMapper;
+        this.chainOutboxService = chainOutboxService;
     }
 
-    public void persistDecision(
+    /**
+     * Stores the decision. With {@code onChainStatus} PENDING, the on-chain write is queued in the
+     * same transaction, and the returned entity carries the queued (or earlier) job's status.
+     */
+    @Transactional
+    public LoanDecisionEntity persistDecision(
             String decisionHash,
             String walletAddress,
             double requestedAmount,
@@ -47,7 +57,8 @@ public class LoanDecisionAuditService {
             List<String> reasons,
             String onChainStatus,
             String onChainTxHash,
-            String onChainError) {
+            String onChainError,
+            String purpose) {
         LoanDecisionEntity entity = repository.findByDecisionHash(decisionHash).orElseGet(LoanDecisionEntity::new);
         entity.setDecisionHash(decisionHash);
         entity.setWalletAddress(walletAddress);
@@ -72,7 +83,10 @@ public class LoanDecisionAuditService {
             entity.setReasonsJson("[]");
         }
 
-        repository.save(entity);
+        if (ChainJobEntity.PENDING.equals(onChainStatus)) {
+            chainOutboxService.enqueue(entity, purpose);
+        }
+        return repository.save(entity);
     }
 
     public Map<String, Object> updateOutcome(String decisionHash, String outcomeRaw) {
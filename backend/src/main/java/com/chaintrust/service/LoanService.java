@@ -1,8 +1,12 @@
 package com.chaintrust.service;
 
+import com.chaintrust.model.ChainJobEntity;
+import com.chaintrust.model.LoanDecisionEntity;
 import com.chaintrust.model.LoanRequest;
 import com.chaintrust.model.RiskResult;
 import com.chaintrust.model.WalletFeatures;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.nio.charset.StandardCharsets;
@@ -12,6 +16,17 @@ import java.util.ArrayList;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
 
 @Service
 public class LoanService {
@@ -23,6 +38,10 @@ public class LoanService {
     private final LoanPolicyService loanPolicyService;
     private final BlockchainLoanRecorderService blockchainLoanRecorderService;
     private final LoanDecisionAuditService loanDecisionAuditService;
+    private final ExecutorService evaluationExecutor;
+    private final long featuresTimeoutMs;
+    private final long riskTimeoutMs;
+    private final long addressTimeoutMs;
 
     public LoanService(
             FeatureService featureService,
@@ -31,7 +50,11 @@ public class LoanService {
             AddressIntelligenceService addressIntelligenceService,
             LoanPolicyService loanPolicyService,
             BlockchainLoanRecorderService blockchainLoanRecorderService,
-            LoanDecisionAuditService loanDecisionAuditService) {
+            LoanDecisionAuditService loanDecisionAuditService,
+            @Qualifier("evaluationExecutor") ExecutorService evaluationExecutor,
+            @Value("${loan.evaluation.features-timeout-ms:30000}") long featuresTimeoutMs,
+            @Value("${loan.evaluation.risk-timeout-ms:90000}") long riskTimeoutMs,
+            @Value("${loan.evaluation.address-timeout-ms:20000}") long addressTimeoutMs) {
         this.featureService = featureService;
         this.walletService = walletService;
         this.riskServiceClient = riskServiceClient;
@@ -39,14 +62,58 @@ public class LoanService {
         this.loanPolicyService = loanPolicyService;
         this.blockchainLoanRecorderService = blockchainLoanRecorderService;
         this.loanDecisionAuditService = loanDecisionAuditService;
+        this.evaluationExecutor = evaluationExecutor;
+        this.featuresTimeoutMs = featuresTimeoutMs;
+        this.riskTimeoutMs = riskTimeoutMs;
+        this.addressTimeoutMs = addressTimeoutMs;
     }
 
     public Map<String, Object> evaluate(LoanRequest loanRequest) {
+        return evaluate(loanRequest, true);
+    }
+
+    /**
+     * {@code explain=false} skips feature contributions; the response then has featureContributions=null.
+     *
+     * @throws RejectedExecutionException when the evaluation pool is saturated; nothing has been stored
+     * @throws StageTimeoutException when a stage outlives its timeout; nothing has been stored
+     */
+    public Map<String, Object> evaluate(LoanRequest loanRequest, boolean explain) {
         featureService.requireValidAddress(loanRequest.getWalletAddress());
+        long startedAt = System.nanoTime();
+        Map<String, Long> stageTimings = new ConcurrentHashMap<>();
+        String walletAddress = loanRequest.getWalletAddress();
+
+        // Features -> risk is a dependent chain; the address-type check only needs the address,
+        // so it runs alongside and the total latency becomes the slower of the two branches.
+        // The risk call is asynchronous, so no executor thread waits on ml-service.
+        AtomicBoolean abandoned = new AtomicBoolean();
+        CompletableFuture<WalletFeatures> featuresFuture = CompletableFuture
+                .supplyAsync(timed("features", stageTimings, () -> {
+                    if (abandoned.get()) {
+                        throw new CancellationException("Loan evaluation abandoned before the features stage started");
+                    }
+                    return walletService.extractFeatures(walletAddress);
+                }), evaluationExecutor)
+                .orTimeout(featuresTimeoutMs, TimeUnit.MILLISECONDS);
+        CompletableFuture<AddressIntelligenceService.AddressAssessment> addressFuture;
+        try {
+            addressFuture = CompletableFuture
+                    .supplyAsync(timed("address", stageTimings, () -> addressIntelligenceService.assess(walletAddress)), evaluationExecutor)
+                    .orTimeout(addressTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException saturated) {
+            // Cancelling the future alone would not stop a queued task from fetching history.
+            abandoned.set(true);
+            featuresFuture.cancel(false);
+            throw saturated;
+        }
+        CompletableFuture<RiskResult> riskFuture = featuresFuture.thenCompose(f ->
+                timedAsync("risk", stageTimings, () -> riskServiceClient.predictAsync(f, explain))
+                        .orTimeout(riskTimeoutMs, TimeUnit.MILLISECONDS));
 
-        WalletFeatures features = walletService.extractFeatures(loanRequest.getWalletAddress());
-        RiskResult riskResult = riskServiceClient.predict(features);
-        AddressIntelligenceService.AddressAssessment addressAssessment = addressIntelligenceService.assess(loanRequest.getWalletAddress());
+        WalletFeatures features = await("features", featuresFuture, featuresTimeoutMs);
+        RiskResult riskResult = await("risk", riskFuture, riskTimeoutMs);
+        AddressIntelligenceService.AddressAssessment addressAssessment = await("address", addressFuture, addressTimeoutMs);
 
         LoanPolicyService.PolicyDecision policyDecision = loanPolicyService.evaluate(
                 loanRequest,
@@ -62,15 +129,8 @@ public class LoanService {
                 + policyDecision.creditTier();
         String decisionHash = sha256Hex(decisionPayload);
 
-        BlockchainLoanRecorderService.ChainWriteResult chainWrite = blockchainLoanRecorderService.recordLoanDecision(
-                loanRequest.getWalletAddress(),
-                loanRequest.getAmount(),
-                policyDecision.riskScore(),
-                policyDecision.creditTier(),
-                policyDecision.approved(),
-                decisionHash,
-                loanRequest.getPurpose()
-        );
+        // The chain write is only queued here; ChainOutboxWorker sends it after the response.
+        BlockchainLoanRecorderService.ChainWriteResult chainWrite = blockchainLoanRecorderService.admit();
 
         List<String> reasons = buildReasons(loanRequest, features, riskResult, policyDecision, addressAssessment);
 
@@ -104,14 +164,8 @@ public class LoanService {
         response.put("policyHardRejected", policyDecision.hardRejected());
         response.put("policyReasons", policyDecision.policyReasons());
 
-        response.put("onChainStatus", chainWrite.getStatus());
-        response.put("onChainConfigured", chainWrite.isConfigured());
-        response.put("onChainSubmitted", chainWrite.isSubmitted());
-        response.put("onChainConfirmed", chainWrite.isConfirmed());
-        response.put("onChainTxHash", chainWrite.getTxHash());
-        response.put("onChainError", chainWrite.getError());
-
-        loanDecisionAuditService.persistDecision(
+        long persistStartedAt = System.nanoTime();
+        LoanDecisionEntity saved = loanDecisionAuditService.persistDecision(
                 decisionHash,
                 loanRequest.getWalletAddress(),
                 loanRequest.getAmount(),
@@ -126,8 +180,23 @@ public class LoanService {
                 reasons,
                 chainWrite.getStatus(),
                 chainWrite.getTxHash(),
-                chainWrite.getError()
+                chainWrite.getError(),
+                loanRequest.getPurpose()
         );
+        stageTimings.put("persist", elapsedMs(persistStartedAt));
+
+        String onChainStatus = saved.getOnChainStatus();
+        response.put("onChainStatus", onChainStatus);
+        response.put("onChainConfigured", chainWrite.isConfigured());
+        response.put("onChainSubmitted", ChainJobEntity.SUBMITTED.equals(onChainStatus)
+                || ChainJobEntity.MINED.equals(onChainStatus)
+                || ChainJobEntity.CONFIRMED.equals(onChainStatus));
+        response.put("onChainConfirmed", ChainJobEntity.CONFIRMED.equals(onChainStatus));
+        response.put("onChainTxHash", saved.getOnChainTxHash());
+        response.put("onChainError", saved.getOnChainError());
+
+        stageTimings.put("total", elapsedMs(startedAt));
+        response.put("stageTimingsMs", orderedTimings(stageTimings));
 
         return response;
     }
@@ -218,6 +287,59 @@ public class LoanService {
         return reasons;
     }
 
+    private static <T> Supplier<T> timed(String stage, Map<String, Long> timings, Supplier<T> body) {
+        return () -> {
+            long stageStartedAt = System.nanoTime();
+            try {
+                return body.get();
+            } finally {
+                timings.put(stage, elapsedMs(stageStartedAt));
+            }
+        };
+    }
+
+    private static <T> CompletableFuture<T> timedAsync(String stage, Map<String, Long> timings,
+                                                      Supplier<CompletableFuture<T>> body) {
+        long stageStartedAt = System.nanoTime();
+        return body.get().whenComplete((result, ex) -> timings.put(stage, elapsedMs(stageStartedAt)));
+    }
+
+    private static <T> T await(String stage, CompletableFuture<T> future, long timeoutMs) {
+        try {
+            return future.get();
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Loan evaluation interrupted during stage: " + stage, ie);
+        } catch (ExecutionException ex) {
+            Throwable cause = ex.getCause();
+            while (cause instanceof CompletionException && cause.getCause() != null) {
+                cause = cause.getCause();
+            }
+            if (cause instanceof TimeoutException) {
+                throw new StageTimeoutException(stage, timeoutMs, cause);
+            }
+            if (cause instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            throw new IllegalStateException("Loan evaluation stage '" + stage + "' failed: " + cause.getMessage(), cause);
+        }
+    }
+
+    private static Map<String, Long> orderedTimings(Map<String, Long> timings) {
+        Map<String, Long> ordered = new LinkedHashMap<>();
+        for (String stage : List.of("features", "risk", "address", "persist", "total")) {
+            Long value = timings.get(stage);
+            if (value != null) {
+                ordered.put(stage, value);
+            }
+        }
+        return ordered;
+    }
+
+    private static long elapsedMs(long startedAtNanos) {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAtNanos);
+    }
+
     private static double round3(double value) {
         return Math.round(value * 1000.0) / 1000.0;
     }
@@ -235,4 +357,11 @@ public class LoanService {
             throw new IllegalStateException("SHA-256 not available", e);
         }
     }
-}
\ No newline at end of file
+
+    /** A loan evaluation stage did not finish within its configured timeout. */
+    public static final class StageTimeoutException extends RuntimeException {
+        StageTimeoutException(String stage, long timeoutMs, Throwable cause) {
+            super("Loan evaluation stage '" + stage + "' timed out after " + timeoutMs + " ms", cause);
+        }
+    }
+}
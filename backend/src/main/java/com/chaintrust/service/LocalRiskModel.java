@@ -0,0 +1,495 @@
+package com.chaintrust.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * In-memory copy of the model exported by ml-train/export_model.py, evaluated the same way
+ * scikit-learn evaluates it: log1p on the skewed columns, StandardScaler, weighted soft vote
+ * over the ensemble members, then the average of the isotonic calibrators.
+ * {@link #explain} attributes a prediction to the input columns by walking the decision
+ * paths once (tree members) or from the coefficients (logistic members), instead of
+ * re-scoring the row once per feature.
+ * Immutable once parsed and safe to share between threads.
+ */
+public final class LocalRiskModel {
+
+    static final String FORMAT = "chaintrust-model";
+    static final int FORMAT_VERSION = 1;
+
+    private final List<String> features;
+    /** For model column i, the index of the value in the {@link FeatureService#toMlVector} vector. */
+    private final int[] inputIndex;
+    private final boolean[] log1p;
+    private final double[] mean;
+    private final double[] scale;
+    private final Member[] members;
+    private final double weightSum;
+    private final boolean explainable;
+    private final double[][] calibratorX;
+    private final double[][] calibratorY;
+    private final String trainedAt;
+
+    private LocalRiskModel(List<String> features, int[] inputIndex, boolean[] log1p, double[] mean, double[] scale,
+                           Member[] members, double[][] calibratorX, double[][] calibratorY, String trainedAt) {
+        this.features = features;
+        this.inputIndex = inputIndex;
+        this.log1p = log1p;
+        this.mean = mean;
+        this.scale = scale;
+        this.members = members;
+        double sum = 0;
+        for (Member m : members) {
+            sum += m.weight();
+        }
+        this.weightSum = sum;
+        boolean canExplain = true;
+        for (Member m : members) {
+            canExplain &= m.explainable();
+        }
+        this.explainable = canExplain;
+        this.calibratorX = calibratorX;
+        this.calibratorY = calibratorY;
+        this.trainedAt = trainedAt;
+    }
+
+    public static LocalRiskModel parse(JsonNode doc) {
+        if (!FORMAT.equals(doc.path("format").asText()) || doc.path("format_version").asInt() != FORMAT_VERSION) {
+            throw new IllegalArgumentException("Unsupported model export format: "
+                    + doc.path("format").asText() + " v" + doc.path("format_version").asText());
+        }
+
+        List<String> features = new ArrayList<>();
+        doc.path("features").forEach(n -> features.add(n.asText()));
+        int n = features.size();
+        int[] inputIndex = new int[n];
+        for (int i = 0; i < n; i++) {
+            inputIndex[i] = FeatureService.ML_FEATURES.indexOf(features.get(i));
+            if (inputIndex[i] < 0) {
+                throw new IllegalArgumentException("Model expects unknown feature: " + features.get(i));
+            }
+        }
+
+        boolean[] log1p = new boolean[n];
+        doc.path("log1p_indices").forEach(idx -> {
+            if (idx.asInt() < n) {
+                log1p[idx.asInt()] = true;
+            }
+        });
+
+        double[] mean = new double[n];
+        double[] scale = new double[n];
+        Arrays.fill(scale, 1.0);
+        JsonNode scaler = doc.path("scaler");
+        if (scaler.isObject()) {
+            mean = doubles(scaler.path("mean"), n);
+            scale = doubles(scaler.path("scale"), n);
+        }
+
+        List<Member> members = new ArrayList<>();
+        for (JsonNode m : doc.path("estimators")) {
+            double weight = m.path("weight").asDouble(1.0);
+            String type = m.path("type").asText();
+            switch (type) {
+                case "gradient_boosting" -> members.add(new GradientBoosting(weight,
+                        m.path("init_raw").asDouble(), m.path("learning_rate").asDouble(), Forest.parse(m.path("trees"), n)));
+                case "random_forest" -> members.add(new RandomForest(weight, Forest.parse(m.path("trees"), n)));
+                case "logistic" -> members.add(new Logistic(weight, doubles(m.path("coef"), n), m.path("intercept").asDouble()));
+                default -> throw new IllegalArgumentException("Unsupported estimator type: " + type);
+            }
+        }
+        if (members.isEmpty()) {
+            throw new IllegalArgumentException("Model export has no estimators");
+        }
+
+        JsonNode calibrators = doc.path("calibrators");
+        double[][] calX = new double[calibrators.size()][];
+        double[][] calY = new double[calibrators.size()][];
+        for (int i = 0; i < calibrators.size(); i++) {
+            JsonNode c = calibrators.get(i);
+            calX[i] = doubles(c.path("x"), -1);
+            calY[i] = doubles(c.path("y"), calX[i].length);
+            if (calX[i].length == 0) {
+                throw new IllegalArgumentException("Empty isotonic calibrator");
+            }
+        }
+
+        return new LocalRiskModel(List.copyOf(features), inputIndex, log1p, mean, scale,
+                members.toArray(new Member[0]), calX, calY, doc.path("trained_at").asText(null));
+    }
+
+    public List<String> features() {
+        return features;
+    }
+
+    public String trainedAt() {
+        return trainedAt;
+    }
+
+    /**
+     * Maps a {@link FeatureService#toMlVector} vector to the model's column order and applies
+     * the log1p columns; this is the "raw" matrix row ml-service builds before predict_proba.
+     */
+    public double[] transform(double[] mlVector) {
+        double[] row = new double[inputIndex.length];
+        for (int i = 0; i < row.length; i++) {
+            double v = mlVector[inputIndex[i]];
+            row[i] = log1p[i] ? Math.log1p(v) : v;
+        }
+        return row;
+    }
+
+    /** P(repaid) for a transformed row, clamped to [0, 1]. */
+    public double predictProbability(double[] row) {
+        double[] x = scaled(row);
+        double voted = 0;
+        for (Member m : members) {
+            voted += m.weight() * m.probability(x);
+        }
+        return calibrate(voted / weightSum);
+    }
+
+    /** False for exports written before trees carried node covers. */
+    public boolean isExplainable() {
+        return explainable;
+    }
+
+    /**
+     * Per-column contributions to P(repaid) for a transformed row, in {@link #features()} order.
+     * Tree members use path attributions (each split credits its feature with the change in
+     * the cover-weighted expected value between the node and the child taken), logistic
+     * members use coefficient times scaled input. Both are mapped to probability space and
+     * through the calibrators with a single ratio, so the contributions sum to the row's
+     * probability minus the base probability (the cover-weighted expectation of each member).
+     */
+    public double[] explain(double[] row) {
+        if (!explainable) {
+            throw new IllegalStateException("Model export has no node covers; re-export it to enable explanations");
+        }
+        double[] x = scaled(row);
+        double[] contributions = new double[x.length];
+        double[] phi = new double[x.length];
+        double voted = 0;
+        double votedBase = 0;
+        for (Member m : members) {
+            Arrays.fill(phi, 0.0);
+            double base = m.explain(x, phi);
+            double sum = 0;
+            for (int i = 0; i < phi.length; i++) {
+                contributions[i] += m.weight() * phi[i];
+                sum += phi[i];
+            }
+            voted += m.weight() * (base + sum);
+            votedBase += m.weight() * base;
+        }
+        double p = voted / weightSum;
+        double base = votedBase / weightSum;
+        double ratio = Math.abs(p - base) > 1e-12 ? (calibrate(p) - calibrate(base)) / (p - base) : 1.0;
+        for (int i = 0; i < contributions.length; i++) {
+            contributions[i] = contributions[i] / weightSum * ratio;
+        }
+        return contributions;
+    }
+
+    private double[] scaled(double[] row) {
+        double[] x = new double[row.length];
+        for (int i = 0; i < x.length; i++) {
+            x[i] = (row[i] - mean[i]) / scale[i];
+        }
+        return x;
+    }
+
+    private double calibrate(double p) {
+        if (calibratorX.length > 0) {
+            double calibrated = 0;
+            for (int c = 0; c < calibratorX.length; c++) {
+                double v = interpolate(calibratorX[c], calibratorY[c], p);
+                // Same tolerance scikit-learn applies to calibrated probabilities.
+                if (v > 1.0 && v <= 1.0 + 1e-5) {
+                    v = 1.0;
+                }
+                calibrated += v;
+            }
+            p = calibrated / calibratorX.length;
+        }
+        return Math.max(0.0, Math.min(1.0, p));
+    }
+
+    private static double sigmoid(double z) {
+        return 1.0 / (1.0 + Math.exp(-z));
+    }
+
+    /**
+     * Rescales log-odds attributions (summing to raw - baseRaw) to probability space and
+     * returns the base probability.
+     */
+    private static double toProbability(double raw, double baseRaw, double[] phi) {
+        double p = sigmoid(raw);
+        double base = sigmoid(baseRaw);
+        double ratio = Math.abs(raw - baseRaw) > 1e-12 ? (p - base) / (raw - baseRaw) : p * (1.0 - p);
+        for (int i = 0; i < phi.length; i++) {
+            phi[i] *= ratio;
+        }
+        return base;
+    }
+
+    /** Isotonic predict with out_of_bounds="clip": linear interpolation between thresholds. */
+    private static double interpolate(double[] xs, double[] ys, double x) {
+        int last = xs.length - 1;
+        if (x <= xs[0]) {
+            return ys[0];
+        }
+        if (x >= xs[last]) {
+            return ys[last];
+        }
+        int lo = 0;
+        int hi = last;
+        while (hi - lo > 1) {
+            int mid = (lo + hi) >>> 1;
+            if (xs[mid] < x) {
+                lo = mid;
+            } else {
+                hi = mid;
+            }
+        }
+        double slope = (ys[hi] - ys[lo]) / (xs[hi] - xs[lo]);
+        return slope * (x - xs[lo]) + ys[lo];
+    }
+
+    private static double[] doubles(JsonNode array, int expected) {
+        if (!array.isArray() || (expected >= 0 && array.size() != expected)) {
+            throw new IllegalArgumentException("Expected an array of " + expected + " numbers");
+        }
+        double[] out = new double[array.size()];
+        for (int i = 0; i < out.length; i++) {
+            out[i] = array.get(i).asDouble();
+        }
+        return out;
+    }
+
+    private interface Member {
+        double weight();
+
+        double probability(double[] x);
+
+        boolean explainable();
+
+        /** Adds per-column probability attributions to {@code phi} and returns the base probability. */
+        double explain(double[] x, double[] phi);
+    }
+
+    private record GradientBoosting(double weight, double initRaw, double learningRate, Forest trees) implements Member {
+        @Override
+        public double probability(double[] x) {
+            double raw = initRaw;
+            for (int t = 0; t < trees.size(); t++) {
+                raw += learningRate * trees.predict(t, x);
+            }
+            return sigmoid(raw);
+        }
+
+        @Override
+        public boolean explainable() {
+            return trees.hasCover();
+        }
+
+        @Override
+        public double explain(double[] x, double[] phi) {
+            double baseRaw = initRaw;
+            double raw = initRaw;
+            for (int t = 0; t < trees.size(); t++) {
+                double rootExpected = trees.expected(t);
+                baseRaw += learningRate * rootExpected;
+                raw += learningRate * (rootExpected + trees.attribute(t, x, phi, learningRate));
+            }
+            return toProbability(raw, baseRaw, phi);
+        }
+    }
+
+    private record RandomForest(double weight, Forest trees) implements Member {
+        @Override
+        public double probability(double[] x) {
+            double sum = 0;
+            for (int t = 0; t < trees.size(); t++) {
+                sum += trees.predict(t, x);
+            }
+            return sum / trees.size();
+        }
+
+        @Override
+        public boolean explainable() {
+            return trees.hasCover();
+        }
+
+        @Override
+        public double explain(double[] x, double[] phi) {
+            double share = 1.0 / trees.size();
+            double base = 0;
+            for (int t = 0; t < trees.size(); t++) {
+                base += trees.expected(t);
+                trees.attribute(t, x, phi, share);
+            }
+            return base * share;
+        }
+    }
+
+    private record Logistic(double weight, double[] coef, double intercept) implements Member {
+        @Override
+        public double probability(double[] x) {
+            double z = intercept;
+            for (int i = 0; i < coef.length; i++) {
+                z += coef[i] * x[i];
+            }
+            return sigmoid(z);
+        }
+
+        @Override
+        public boolean explainable() {
+            return true;
+        }
+
+        @Override
+        public double explain(double[] x, double[] phi) {
+            // Scaled inputs are zero at the training mean, so the intercept is the base log-odds.
+            double z = intercept;
+            for (int i = 0; i < coef.length; i++) {
+                phi[i] += coef[i] * x[i];
+                z += coef[i] * x[i];
+            }
+            return toProbability(z, intercept, phi);
+        }
+    }
+
+    /**
+     * All trees of one member flattened into parallel arrays; child indices are absolute.
+     * Leaves have {@code left == -1}. {@code expected} is the cover-weighted mean of the leaf
+     * values under each node, or null when the export has no covers.
+     */
+    private static final class Forest {
+        private final int[] roots;
+        private final int[] left;
+        private final int[] right;
+        private final int[] feature;
+        private final double[] threshold;
+        private final double[] value;
+        private final double[] expected;
+
+        private Forest(int[] roots, int[] left, int[] right, int[] feature, double[] threshold, double[] value,
+                       double[] cover) {
+            this.roots = roots;
+            this.left = left;
+            this.right = right;
+            this.feature = feature;
+            this.threshold = threshold;
+            this.value = value;
+            this.expected = cover == null ? null : expectations(left, right, value, cover);
+        }
+
+        /**
+         * Children always come after their parent in scikit-learn's node order, so one
+         * backwards pass fills every node from its children. Internal node values are not
+         * used: gradient boosting rewrites only the leaves during its line search.
+         */
+        private static double[] expectations(int[] left, int[] right, double[] value, double[] cover) {
+            double[] e = new double[value.length];
+            for (int i = value.length - 1; i >= 0; i--) {
+                if (left[i] < 0) {
+                    e[i] = value[i];
+                } else {
+                    double cl = cover[left[i]];
+                    double cr = cover[right[i]];
+                    e[i] = cl + cr > 0 ? (cl * e[left[i]] + cr * e[right[i]]) / (cl + cr) : 0.5 * (e[left[i]] + e[right[i]]);
+                }
+            }
+            return e;
+        }
+
+        static Forest parse(JsonNode trees, int featureCount) {
+            int total = 0;
+            for (JsonNode tree : trees) {
+                total += tree.path("left").size();
+            }
+            int[] roots = new int[trees.size()];
+            int[] left = new int[total];
+            int[] right = new int[total];
+            int[] feature = new int[total];
+            double[] threshold = new double[total];
+            double[] value = new double[total];
+            double[] cover = new double[total];
+            boolean hasCover = true;
+
+            int offset = 0;
+            int t = 0;
+            for (JsonNode tree : trees) {
+                int size = tree.path("left").size();
+                JsonNode l = tree.path("left");
+                JsonNode r = tree.path("right");
+                JsonNode f = tree.path("feature");
+                JsonNode th = tree.path("threshold");
+                JsonNode v = tree.path("value");
+                JsonNode c = tree.path("cover");
+                hasCover &= c.size() == size;
+                if (r.size() != size || f.size() != size || th.size() != size || v.size() != size) {
+                    throw new IllegalArgumentException("Tree " + t + " has inconsistent array lengths");
+                }
+                roots[t++] = offset;
+                for (int i = 0; i < size; i++) {
+                    int li = l.get(i).asInt();
+                    int ri = r.get(i).asInt();
+                    boolean leaf = li < 0;
+                    if (!leaf && (li >= size || ri < 0 || ri >= size || f.get(i).asInt() >= featureCount)) {
+                        throw new IllegalArgumentException("Tree " + (t - 1) + " has an out-of-range node " + i);
+                    }
+                    left[offset + i] = leaf ? -1 : offset + li;
+                    right[offset + i] = leaf ? -1 : offset + ri;
+                    feature[offset + i] = f.get(i).asInt();
+                    threshold[offset + i] = th.get(i).asDouble();
+                    value[offset + i] = v.get(i).asDouble();
+                    if (hasCover) {
+                        cover[offset + i] = c.get(i).asDouble();
+                    }
+                }
+                offset += size;
+            }
+            return new Forest(roots, left, right, feature, threshold, value, hasCover ? cover : null);
+        }
+
+        int size() {
+            return roots.length;
+        }
+
+        double predict(int tree, double[] x) {
+            int node = roots[tree];
+            while (left[node] >= 0) {
+                // scikit-learn trees compare float32 inputs against float64 thresholds.
+                node = (float) x[feature[node]] <= threshold[node] ? left[node] : right[node];
+            }
+            return value[node];
+        }
+
+        boolean hasCover() {
+            return expected != null;
+        }
+
+        double expected(int tree) {
+            return expected[roots[tree]];
+        }
+
+        /**
+         * Walks the decision path of {@code tree}, adding {@code share} times each step's change
+         * in expected value to the split feature; returns the unscaled leaf minus root expectation.
+         */
+        double attribute(int tree, double[] x, double[] phi, double share) {
+            int node = roots[tree];
+            while (left[node] >= 0) {
+                int next = (float) x[feature[node]] <= threshold[node] ? left[node] : right[node];
+                phi[feature[node]] += share * (expected[next] - expected[node]);
+                node = next;
+            }
+            return expected[node] - expected[roots[tree]];
+        }
+    }
+}
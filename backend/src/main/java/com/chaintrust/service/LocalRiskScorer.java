@@ -0,0 +1,159 @@
+package com.chaintrust.service;
+
+import com.chaintrust.model.RiskResult;
+import com.chaintrust.model.WalletFeatures;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Scores wallets in-process from the JSON export of the trained model (model.json next to
+ * model.pkl). Produces the same RiskResult fields as ml-service /predict: risk score, level,
+ * feature contributions and denial reasons. Contributions come from
+ * {@link LocalRiskModel#explain} when the export carries node covers, and from ml-service's
+ * per-feature perturbation otherwise.
+ */
+@Service
+public class LocalRiskScorer {
+
+    private static final Logger log = LoggerFactory.getLogger(LocalRiskScorer.class);
+
+    private final FeatureService featureService;
+    private final LocalRiskModel model;
+
+    public LocalRiskScorer(
+            ObjectMapper objectMapper,
+            FeatureService featureService,
+            @Value("${ml.local-model.file:/app/model/model.json}") String modelFile) {
+        this.featureService = featureService;
+        this.model = load(objectMapper, modelFile);
+    }
+
+    private static LocalRiskModel load(ObjectMapper objectMapper, String modelFile) {
+        File f = new File(modelFile);
+        if (!f.exists()) {
+            return null;
+        }
+        try {
+            long start = System.nanoTime();
+            LocalRiskModel loaded = LocalRiskModel.parse(objectMapper.readTree(f));
+            log.info("Loaded local risk model from {} in {} ms (trained_at={}, explainable={})",
+                    modelFile, (System.nanoTime() - start) / 1_000_000, loaded.trainedAt(), loaded.isExplainable());
+            return loaded;
+        } catch (Exception ex) {
+            log.warn("Failed to load local risk model from {}: {}", modelFile, ex.getMessage());
+            return null;
+        }
+    }
+
+    public boolean isAvailable() {
+        return model != null;
+    }
+
+    /** True when contributions can be computed here without the perturbation fallback. */
+    public boolean canExplain() {
+        return model != null && model.isExplainable();
+    }
+
+    /** Expects features already passed through {@link FeatureService#sanitize}. */
+    public RiskResult score(WalletFeatures clean) {
+        return score(clean, true);
+    }
+
+    /** With {@code explain=false} the result carries no feature contributions. */
+    public RiskResult score(WalletFeatures clean, boolean explain) {
+        double[] row = transform(clean);
+        double prob = model.predictProbability(row);
+
+        RiskResult result = new RiskResult(1.0 - prob, null, null);
+        if (explain) {
+            result.setFeatureContributions(model.isExplainable() ? contributions(row) : perturbation(row, prob));
+        }
+        result.setDenialReasons(denialReasons(clean, prob));
+        return result;
+    }
+
+    /**
+     * Path-based contributions only, for results scored elsewhere (ml-service called with
+     * explain=false). Requires {@link #canExplain()}.
+     */
+    public Map<String, Double> explain(WalletFeatures clean) {
+        return contributions(transform(clean));
+    }
+
+    private double[] transform(WalletFeatures clean) {
+        if (model == null) {
+            throw new IllegalStateException("Local risk model is not loaded");
+        }
+        return model.transform(featureService.toMlVector(clean));
+    }
+
+    private Map<String, Double> contributions(double[] row) {
+        double[] phi = model.explain(row);
+        Map<String, Double> contributions = new LinkedHashMap<>();
+        List<String> names = model.features();
+        for (int i = 0; i < phi.length; i++) {
+            contributions.put(names.get(i), round4(phi[i]));
+        }
+        return contributions;
+    }
+
+    /** The sensitivity analysis ml-service uses; one extra model evaluation per feature. */
+    private Map<String, Double> perturbation(double[] row, double prob) {
+        Map<String, Double> contributions = new LinkedHashMap<>();
+        List<String> names = model.features();
+        for (int i = 0; i < row.length; i++) {
+            double original = row[i];
+            row[i] = original * 1.1 + 0.01;
+            double delta = model.predictProbability(row) - prob;
+            row[i] = original;
+            contributions.put(names.get(i), round4(delta));
+        }
+        return contributions;
+    }
+
+    private static double round4(double v) {
+        return Math.round(v * 10_000.0) / 10_000.0;
+    }
+
+    /** Mirrors _build_denial_reasons in ml-service/main.py. */
+    private static List<String> denialReasons(WalletFeatures f, double trustProb) {
+        List<String> reasons = new ArrayList<>();
+        if (f.getWalletAgeDays() < 60) {
+            reasons.add("Wallet age below 60 days - insufficient history");
+        }
+        if (f.getTxCount() < 10) {
+            reasons.add("Very low transaction count - limited activity");
+        }
+        if (f.getLiquidationEvents() > 0) {
+            reasons.add(f.getLiquidationEvents() + " liquidation event(s) - high-risk history");
+        }
+        if (f.getFlashLoanCount() > 2) {
+            reasons.add(f.getFlashLoanCount() + " flash loans detected - elevated manipulation risk");
+        }
+        if (f.getRugpullExposureScore() > 0.3) {
+            reasons.add("High exposure to rugpull contracts");
+        }
+        if (f.getCollateralRatio() < 1.2) {
+            reasons.add("Insufficient collateral ratio for requested loan");
+        }
+        if (f.getDormantPeriodDays() > 180) {
+            reasons.add("Long dormant period suggests inactive wallet");
+        }
+        if (f.getIncomingOutgoingRatio() < 0.2) {
+            reasons.add("Very few incoming transactions relative to outgoing");
+        }
+        if (trustProb > 0.5 && reasons.isEmpty()) {
+            reasons.add("Wallet meets all credit criteria");
+        }
+        return reasons;
+    }
+}
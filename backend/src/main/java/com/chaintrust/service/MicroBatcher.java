@@ -0,0 +1,126 @@
+package com.chaintrust.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Groups concurrent single-item calls into batches. A batch is flushed as soon as it holds
+ * {@code maxBatchSize} items or the oldest item has waited {@code maxWait}. The sender is called
+ * on the dispatcher thread and must not block: it starts the call and returns a future, so the
+ * next batch can be collected while the previous one is in flight. It must complete with
+ * exactly one output per input, in input order.
+ * <p>
+ * At most {@code queueCapacity} items wait for a batch; beyond that {@link #submit} fails the
+ * item at once with a {@link RejectedExecutionException} instead of queueing without bound.
+ */
+public final class MicroBatcher<I, O> implements AutoCloseable {
+
+    private final BlockingQueue<Pending<I, O>> queue;
+    private final int maxBatchSize;
+    private final long maxWaitNanos;
+    private final Function<List<I>, CompletableFuture<List<O>>> sender;
+    private final Thread dispatcher;
+    private volatile boolean running = true;
+
+    public MicroBatcher(String name, int maxBatchSize, long maxWaitMs, int queueCapacity,
+                        Function<List<I>, CompletableFuture<List<O>>> sender) {
+        this.queue = new LinkedBlockingQueue<>(Math.max(1, queueCapacity));
+        this.maxBatchSize = Math.max(1, maxBatchSize);
+        this.maxWaitNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, maxWaitMs));
+        this.sender = sender;
+        this.dispatcher = new Thread(this::collect, name + "-batcher");
+        this.dispatcher.setDaemon(true);
+        this.dispatcher.start();
+    }
+
+    public CompletableFuture<O> submit(I item) {
+        CompletableFuture<O> future = new CompletableFuture<>();
+        if (!running) {
+            future.completeExceptionally(new IllegalStateException("Batcher is closed"));
+            return future;
+        }
+        if (!queue.offer(new Pending<>(item, future))) {
+            future.completeExceptionally(new RejectedExecutionException("Batcher queue is full"));
+        }
+        return future;
+    }
+
+    public int queuedCount() {
+        return queue.size();
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        dispatcher.interrupt();
+        List<Pending<I, O>> leftover = new ArrayList<>();
+        queue.drainTo(leftover);
+        leftover.forEach(p -> p.future.completeExceptionally(new IllegalStateException("Batcher is closed")));
+    }
+
+    private void collect() {
+        while (running) {
+            try {
+                Pending<I, O> first = queue.poll(1, TimeUnit.SECONDS);
+                if (first == null) {
+                    continue;
+                }
+                List<Pending<I, O>> batch = new ArrayList<>(maxBatchSize);
+                batch.add(first);
+                long deadline = System.nanoTime() + maxWaitNanos;
+                while (batch.size() < maxBatchSize) {
+                    if (queue.drainTo(batch, maxBatchSize - batch.size()) > 0) {
+                        continue;
+                    }
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        break;
+                    }
+                    Pending<I, O> next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+                dispatch(batch);
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private void dispatch(List<Pending<I, O>> batch) {
+        List<I> items = new ArrayList<>(batch.size());
+        batch.forEach(p -> items.add(p.item));
+        CompletableFuture<List<O>> sent;
+        try {
+            sent = sender.apply(items);
+        } catch (RuntimeException ex) {
+            batch.forEach(p -> p.future.completeExceptionally(ex));
+            return;
+        }
+        sent.whenComplete((outputs, ex) -> {
+            if (ex == null && (outputs == null || outputs.size() != batch.size())) {
+                ex = new IllegalStateException("Batch sender returned "
+                        + (outputs == null ? "null" : outputs.size() + " results") + " for " + batch.size() + " items");
+            }
+            if (ex != null) {
+                Throwable failure = ex;
+                batch.forEach(p -> p.future.completeExceptionally(failure));
+                return;
+            }
+            for (int i = 0; i < batch.size(); i++) {
+                batch.get(i).future.complete(outputs.get(i));
+            }
+        });
+    }
+
+    private record Pending<I, O>(I item, CompletableFuture<O> future) {}
+}
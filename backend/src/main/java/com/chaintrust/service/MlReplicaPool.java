@@ -0,0 +1,418 @@
+package com.chaintrust.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * The ml-service replicas behind one logical endpoint, each with its own {@link CircuitBreaker}.
+ * A call goes to the available replica with the lowest cost, {@code (ewma + 1ms) x (outstanding + 1)},
+ * where the EWMA is a peak-sensitive latency average that decays while the replica is idle, so a
+ * replica that was slow is tried again a few seconds later. If that attempt fails with a
+ * retryable error it is repeated once on another replica; with hedging on, the same second
+ * attempt is also sent when the first has not answered within the recent p95. The first success
+ * wins; the loser is left to finish and still feeds its replica's latency.
+ * When warm-up is required, a replica takes calls only after a {@link #warmUp} call has
+ * succeeded on it, and goes cold again whenever its breaker opens.
+ * Publishes {@code ml.replica.outstanding} and {@code ml.replica.latency.ewma} per replica, and
+ * {@code ml.replica.retries{kind=failover|hedge}} and {@code ml.replica.hedges.won}.
+ */
+final class MlReplicaPool {
+
+    /** How the upstream answered, as far as the breaker and the retry policy are concerned. */
+    enum Outcome {
+        /** Answered. */
+        OK,
+        /** Answered with a request error: the replica is healthy and another would say the same. */
+        REJECTED,
+        /** Failed; counts towards opening the breaker and may go to another replica. */
+        FAILED,
+        /** Cold or restarting; opens the breaker at once and may go to another replica. */
+        TRIPPED
+    }
+
+    /** Completes a call when no replica can take it because every breaker is open. */
+    static final class NoReplicaAvailableException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        NoReplicaAvailableException() {
+            super("no ml-service replica available", null, false, false);
+        }
+    }
+
+    private static final Logger log = LoggerFactory.getLogger(MlReplicaPool.class);
+
+    /** Time constant of the latency average; an idle replica's cost halves in about 7 s. */
+    private static final double DECAY_NANOS = TimeUnit.SECONDS.toNanos(10);
+    /** Latency charged for a failed attempt so a replica that fails fast does not look fast. */
+    private static final long FAILURE_PENALTY_NANOS = TimeUnit.SECONDS.toNanos(1);
+    private static final int LATENCY_WINDOW = 512;
+    private static final int MIN_HEDGE_SAMPLES = 50;
+
+    private final List<Replica> replicas;
+    private final Function<Throwable, Outcome> classifier;
+    private final boolean requireWarm;
+    private final boolean hedgeEnabled;
+    private final long hedgeMinDelayNanos;
+    private final LatencyWindow latencies = new LatencyWindow(LATENCY_WINDOW);
+    private final AtomicInteger nextStart = new AtomicInteger();
+    private final Counter failovers;
+    private final Counter hedges;
+    private final Counter hedgesWon;
+
+    MlReplicaPool(
+        List<String> urls,
+        int failureThreshold,
+        int halfOpenCalls,
+        boolean hedgeEnabled,
+        long hedgeMinDelayMs,
+        boolean requireWarm,
+        Function<Throwable, Outcome> classifier,
+        MeterRegistry meterRegistry
+    ) {
+        if (urls.isEmpty()) {
+            throw new IllegalArgumentException("ml.service.url lists no replica");
+        }
+        this.replicas = urls.stream()
+            .map(url -> new Replica(url, new CircuitBreaker("ml", failureThreshold, halfOpenCalls, meterRegistry,
+                Tags.of("replica", url)), !requireWarm))
+            .toList();
+        this.classifier = classifier;
+        this.requireWarm = requireWarm;
+        this.hedgeEnabled = hedgeEnabled && replicas.size() > 1;
+        this.hedgeMinDelayNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, hedgeMinDelayMs));
+        for (Replica replica : replicas) {
+            Tags tags = Tags.of("replica", replica.url);
+            meterRegistry.gauge("ml.replica.outstanding", tags, replica.outstanding);
+            meterRegistry.gauge("ml.replica.latency.ewma", tags, replica, r -> r.latencyMillis(System.nanoTime()));
+        }
+        this.failovers = meterRegistry.counter("ml.replica.retries", "kind", "failover");
+        this.hedges = meterRegistry.counter("ml.replica.retries", "kind", "hedge");
+        this.hedgesWon = meterRegistry.counter("ml.replica.hedges.won");
+    }
+
+    List<Replica> replicas() {
+        return replicas;
+    }
+
+    /**
+     * Cheap admission check before queueing work: false while no replica is warm with its breaker
+     * closed or half-open. Each open breaker it passes counts a rejection.
+     */
+    boolean allowRequest() {
+        for (Replica replica : replicas) {
+            if (replica.warm && replica.breaker.allowRequest()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** True when some replica could take a call now. */
+    boolean ready() {
+        for (Replica replica : replicas) {
+            if (replica.warm && replica.breaker.state() != CircuitBreaker.State.OPEN) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Sends {@code call} to this replica only, outside the balancer, unless its breaker is open or
+     * a warm-up is already running there. It takes a half-open trial slot like any other call.
+     * Any answer, including a request error, shows the model is loaded and marks the replica warm.
+     * Completes with whether the replica is warm afterwards.
+     */
+    CompletableFuture<Boolean> warmUp(Replica replica, Function<Replica, CompletableFuture<?>> call) {
+        if (replica.breaker.state() == CircuitBreaker.State.OPEN || !replica.warming.compareAndSet(false, true)) {
+            return CompletableFuture.completedFuture(replica.warm);
+        }
+        if (!replica.breaker.tryAcquire()) {
+            replica.warming.set(false);
+            return CompletableFuture.completedFuture(replica.warm);
+        }
+        long start = System.nanoTime();
+        CompletableFuture<?> attempt;
+        try {
+            attempt = call.apply(replica);
+        } catch (RuntimeException e) {
+            attempt = CompletableFuture.failedFuture(e);
+        }
+        return attempt.handle((value, error) -> {
+            long end = System.nanoTime();
+            Outcome outcome = error == null ? Outcome.OK : classifier.apply(error);
+            report(replica, outcome, error);
+            if (outcome == Outcome.OK || outcome == Outcome.REJECTED) {
+                replica.lastSuccess = end;
+                if (!replica.warm && replica.breaker.state() != CircuitBreaker.State.OPEN) {
+                    log.info("ml-service {} is warm ({} ms)", replica.url, TimeUnit.NANOSECONDS.toMillis(end - start));
+                    replica.warm = true;
+                }
+            } else {
+                log.debug("ml-service {} warm-up failed: {}", replica.url, reason(error));
+            }
+            replica.warming.set(false);
+            return replica.warm;
+        });
+    }
+
+    /**
+     * Runs {@code call} against the cheapest available replica, with at most one more attempt on
+     * another replica after a retryable failure or, with hedging on, after the hedge delay. The
+     * call must be safe to repeat. Completes with {@link NoReplicaAvailableException} when no
+     * replica takes the first attempt.
+     */
+    <T> CompletableFuture<T> execute(Function<Replica, CompletableFuture<T>> call) {
+        Replica first = acquire(null);
+        if (first == null) {
+            return CompletableFuture.failedFuture(new NoReplicaAvailableException());
+        }
+        Race<T> race = new Race<>(first, call);
+        launch(race, first);
+        if (hedgeEnabled) {
+            long delay = hedgeDelayNanos();
+            if (delay > 0) {
+                CompletableFuture.delayedExecutor(delay, TimeUnit.NANOSECONDS).execute(() -> hedge(race));
+            }
+        }
+        return race.result;
+    }
+
+    private <T> void hedge(Race<T> race) {
+        Replica second;
+        synchronized (race) {
+            if (race.result.isDone() || race.secondSent) {
+                return;
+            }
+            second = acquire(race.first);
+            if (second == null) {
+                return;
+            }
+            race.secondSent = true;
+            race.hedged = true;
+            race.running++;
+        }
+        hedges.increment();
+        launch(race, second);
+    }
+
+    /** Starts one attempt; {@code replica} already holds a breaker permit and an outstanding slot. */
+    private <T> void launch(Race<T> race, Replica replica) {
+        long start = System.nanoTime();
+        CompletableFuture<T> attempt;
+        try {
+            attempt = race.call.apply(replica);
+        } catch (RuntimeException e) {
+            attempt = CompletableFuture.failedFuture(e);
+        }
+        attempt.whenComplete((value, error) -> {
+            long end = System.nanoTime();
+            replica.outstanding.decrementAndGet();
+            Outcome outcome = error == null ? Outcome.OK : classifier.apply(error);
+            report(replica, outcome, error);
+            if (outcome == Outcome.OK) {
+                replica.lastSuccess = end;
+                replica.observe(end - start, end);
+                latencies.record(end - start);
+                if (race.result.complete(value) && race.hedged && replica != race.first) {
+                    hedgesWon.increment();
+                }
+                return;
+            }
+            replica.observe(Math.max(end - start, FAILURE_PENALTY_NANOS), end);
+            settleFailure(race, outcome, error);
+        });
+    }
+
+    private void report(Replica replica, Outcome outcome, Throwable error) {
+        switch (outcome) {
+            case OK, REJECTED -> replica.breaker.onSuccess();
+            case TRIPPED -> replica.breaker.trip(reason(error) + ", ml-service is cold or restarting");
+            case FAILED -> replica.breaker.onFailure(reason(error));
+        }
+        if (requireWarm && replica.breaker.state() == CircuitBreaker.State.OPEN) {
+            replica.warm = false;
+        }
+    }
+
+    private <T> void settleFailure(Race<T> race, Outcome outcome, Throwable error) {
+        Replica second = null;
+        boolean failed = false;
+        synchronized (race) {
+            race.running--;
+            if (outcome != Outcome.REJECTED && !race.secondSent && !race.result.isDone()) {
+                second = acquire(race.first);
+                if (second != null) {
+                    race.secondSent = true;
+                    race.running++;
+                }
+            }
+            if (second == null && race.running == 0) {
+                failed = true;
+            }
+        }
+        if (second != null) {
+            failovers.increment();
+            launch(race, second);
+        } else if (failed) {
+            race.result.completeExceptionally(error);
+        }
+    }
+
+    /**
+     * Picks the cheapest replica, other than {@code exclude}, whose breaker grants a permit, and
+     * counts the call as outstanding on it. Returns null when none does.
+     */
+    private Replica acquire(Replica exclude) {
+        int n = replicas.size();
+        long now = System.nanoTime();
+        Replica[] order = new Replica[n];
+        double[] costs = new double[n];
+        int count = 0;
+        int start = Math.floorMod(nextStart.getAndIncrement(), n);
+        for (int i = 0; i < n; i++) {
+            Replica replica = replicas.get((start + i) % n);
+            if (replica == exclude || !replica.warm || replica.breaker.state() == CircuitBreaker.State.OPEN) {
+                continue;
+            }
+            // Insertion sort keeps the rotation order among equal costs, spreading ties.
+            double cost = replica.cost(now, replica.outstanding.get());
+            int j = count++;
+            while (j > 0 && costs[j - 1] > cost) {
+                order[j] = order[j - 1];
+                costs[j] = costs[j - 1];
+                j--;
+            }
+            order[j] = replica;
+            costs[j] = cost;
+        }
+        for (int i = 0; i < count; i++) {
+            if (order[i].breaker.tryAcquire()) {
+                order[i].outstanding.incrementAndGet();
+                return order[i];
+            }
+        }
+        return null;
+    }
+
+    private static String reason(Throwable error) {
+        Throwable cause = error;
+        while (cause instanceof CompletionException && cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+        return cause.getMessage() != null ? cause.getMessage() : cause.getClass().getSimpleName();
+    }
+
+    /** The recent p95 of successful calls, floored at ml.hedge.min-delay-ms; 0 (no hedge) until known. */
+    private long hedgeDelayNanos() {
+        long p95 = latencies.p95();
+        return p95 <= 0 ? 0 : Math.max(hedgeMinDelayNanos, p95);
+    }
+
+    /** One ml-service instance. The pool owns the balancing state; the client keeps its /health view here. */
+    static final class Replica {
+        final String url;
+        final CircuitBreaker breaker;
+        private final AtomicInteger outstanding = new AtomicInteger();
+        private double ewmaNanos;
+        private long lastObserved = System.nanoTime();
+
+        private final AtomicBoolean warming = new AtomicBoolean();
+        /** Whether user calls may go here; always true when warm-up is not required. */
+        volatile boolean warm;
+        /** System.nanoTime() of the last answered call, 0 before the first. */
+        volatile long lastSuccess;
+
+        /** Set while a /health request to this replica is in flight. */
+        final AtomicBoolean probing = new AtomicBoolean();
+        volatile long lastHealthCheck;
+        volatile String modelVersion;
+        /** Null until /health publishes a feature schema the client can fill; JSON is used meanwhile. */
+        volatile RiskServiceClient.VectorSchema vectorSchema;
+
+        Replica(String url, CircuitBreaker breaker, boolean warm) {
+            this.url = url;
+            this.breaker = breaker;
+            this.warm = warm;
+        }
+
+        /** Folds in one latency; a slower sample replaces the average outright. */
+        private synchronized void observe(long nanos, long now) {
+            double decayed = decayed(now);
+            ewmaNanos = nanos > decayed ? nanos : decayed + (nanos - decayed) * (1 - weight(now));
+            lastObserved = now;
+        }
+
+        private synchronized double latencyMillis(long now) {
+            return decayed(now) / 1e6;
+        }
+
+        private synchronized double cost(long now, int outstanding) {
+            return (decayed(now) + 1e6) * (outstanding + 1);
+        }
+
+        private double decayed(long now) {
+            return ewmaNanos * weight(now);
+        }
+
+        private double weight(long now) {
+            return Math.exp(-Math.max(0, now - lastObserved) / DECAY_NANOS);
+        }
+    }
+
+    /** State shared by the attempts of one call. Fields other than result are guarded by the race. */
+    private static final class Race<T> {
+        final Replica first;
+        final Function<Replica, CompletableFuture<T>> call;
+        final CompletableFuture<T> result = new CompletableFuture<>();
+        int running = 1;
+        boolean secondSent;
+        boolean hedged;
+
+        Race(Replica first, Function<Replica, CompletableFuture<T>> call) {
+            this.first = first;
+            this.call = call;
+        }
+    }
+
+    /** Ring buffer of recent successful latencies; the p95 is recomputed every 32 samples. */
+    private static final class LatencyWindow {
+        private final long[] samples;
+        private int size;
+        private int next;
+        private int sinceSort;
+        private volatile long p95;
+
+        LatencyWindow(int capacity) {
+            this.samples = new long[capacity];
+        }
+
+        synchronized void record(long nanos) {
+            samples[next] = nanos;
+            next = (next + 1) % samples.length;
+            size = Math.min(size + 1, samples.length);
+            if (size >= MIN_HEDGE_SAMPLES && (++sinceSort >= 32 || p95 == 0)) {
+                sinceSort = 0;
+                long[] sorted = Arrays.copyOf(samples, size);
+                Arrays.sort(sorted);
+                p95 = sorted[(int) Math.ceil(0.95 * size) - 1];
+            }
+        }
+
+        long p95() {
+            return p95;
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package com.chaintrust.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps ml-service replicas warm ahead of user traffic. Every ml.circuit.probe-interval-ms,
+ * starting at boot, it refreshes each replica's /health and sends a synthetic prediction to any
+ * replica that is not warm yet or has answered nothing for ml.warmup.keep-alive-ms (so a host
+ * that sleeps when idle stays up). Until a replica's warm-up succeeds it gets no user calls.
+ * As the {@code mlWarmKeeper} health indicator, part of the readiness group, it reports
+ * OUT_OF_SERVICE while no replica is warm, so the platform holds traffic back during a cold start.
+ */
+@Component
+public class MlWarmKeeper implements HealthIndicator {
+
+    private final RiskServiceClient riskServiceClient;
+    private final boolean enabled;
+    private final long keepAliveNanos;
+
+    public MlWarmKeeper(
+        RiskServiceClient riskServiceClient,
+        @Value("${ml.warmup.enabled:true}") boolean enabled,
+        @Value("${ml.warmup.keep-alive-ms:600000}") long keepAliveMs
+    ) {
+        this.riskServiceClient = riskServiceClient;
+        this.enabled = enabled;
+        this.keepAliveNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1000, keepAliveMs));
+    }
+
+    /** Only starts requests, so the shared scheduler thread is never held. */
+    @Scheduled(initialDelay = 0, fixedDelayString = "${ml.circuit.probe-interval-ms:5000}")
+    void tick() {
+        if (!riskServiceClient.isRemote()) {
+            return;
+        }
+        riskServiceClient.refreshHealth();
+        if (!enabled) {
+            return;
+        }
+        long now = System.nanoTime();
+        for (MlReplicaPool.Replica replica : riskServiceClient.replicas()) {
+            boolean idle = replica.lastSuccess == 0 || now - replica.lastSuccess >= keepAliveNanos;
+            if (!replica.warm || idle) {
+                riskServiceClient.warmUp(replica);
+            }
+        }
+    }
+
+    @Override
+    public Health health() {
+        if (!riskServiceClient.isRemote()) {
+            return Health.up().withDetail("backend", "local").build();
+        }
+        Map<String, Object> replicas = new LinkedHashMap<>();
+        for (MlReplicaPool.Replica replica : riskServiceClient.replicas()) {
+            replicas.put(replica.url, Map.of(
+                "circuit", replica.breaker.state().name(),
+                "warm", replica.warm
+            ));
+        }
+        Health.Builder builder = riskServiceClient.isReady() ? Health.up() : Health.outOfService();
+        return builder.withDetail("replicas", replicas).build();
+    }
+}
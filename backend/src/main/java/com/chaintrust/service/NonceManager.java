@@ -0,0 +1,137 @@
+package com.chaintrust.service;
+
+import org.web3j.protocol.Web3j;
+import org.web3j.protocol.core.DefaultBlockParameterName;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.LongSupplier;
+import java.util.function.Predicate;
+
+/**
+ * Hands out nonces for one signer without asking the node each time. The counter is loaded from
+ * eth_getTransactionCount(pending) on first use and after {@link #resync()}; after that every
+ * allocation is local, so any number of transactions can be in flight at once.
+ * A nonce whose transaction never reached the node is released and handed out again before
+ * any new one, so a failed send does not leave a gap that stalls the transactions after it.
+ * A released nonce that nothing reuses, or a nonce the node never got, is reported by
+ * {@link #takeGaps} so the caller can fill it.
+ */
+final class NonceManager {
+
+    private final Web3j web3j;
+    private final String address;
+    private final LongSupplier clock;
+    /** Released nonce -> when it was released ({@link #clock} nanos). */
+    private final TreeMap<BigInteger, Long> released = new TreeMap<>();
+    private BigInteger next;
+
+    NonceManager(Web3j web3j, String address) {
+        this(web3j, address, System::nanoTime);
+    }
+
+    NonceManager(Web3j web3j, String address, LongSupplier clock) {
+        this.web3j = web3j;
+        this.address = address;
+        this.clock = clock;
+    }
+
+    synchronized BigInteger allocate() throws IOException {
+        if (next == null) {
+            next = pendingCount();
+            released.clear();
+        }
+        Map.Entry<BigInteger, Long> reused = released.pollFirstEntry();
+        if (reused != null) {
+            return reused.getKey();
+        }
+        BigInteger nonce = next;
+        next = next.add(BigInteger.ONE);
+        return nonce;
+    }
+
+    /** Returns a nonce whose transaction the node did not accept. */
+    synchronized void release(BigInteger nonce) {
+        if (next != null && nonce.compareTo(next) < 0) {
+            released.put(nonce, clock.getAsLong());
+        }
+    }
+
+    /**
+     * Drops the local counter; the next allocation reloads it from the node. Used when the node
+     * reports the nonce as already used, e.g. another process signed with the same key.
+     */
+    synchronized void resync() {
+        next = null;
+        released.clear();
+    }
+
+    /**
+     * Nonces below the local counter that would stall every later transaction, removed from the
+     * released set: released nonces no send has reused for {@code grace}, and the node's next
+     * pending nonce when it is missing from the node and {@code tracked} says no transaction of
+     * ours holds it (e.g. its jobs failed for good after the nonce was released). If the node is
+     * already past the local counter the key was used elsewhere, so the counter is resynced.
+     */
+    synchronized List<BigInteger> takeGaps(Duration grace, Predicate<BigInteger> tracked) throws IOException {
+        List<BigInteger> gaps = new ArrayList<>();
+        if (next == null) {
+            return gaps;
+        }
+        BigInteger pending = pendingCount();
+        if (pending.compareTo(next) > 0) {
+            resync();
+            return gaps;
+        }
+        long now = clock.getAsLong();
+        for (Iterator<Map.Entry<BigInteger, Long>> it = released.entrySet().iterator(); it.hasNext(); ) {
+            Map.Entry<BigInteger, Long> entry = it.next();
+            if (entry.getKey().compareTo(pending) < 0) {
+                // Already used at the node (filled elsewhere); nothing to hand out again.
+                it.remove();
+            } else if (now - entry.getValue() >= grace.toNanos()) {
+                gaps.add(entry.getKey());
+                it.remove();
+            }
+        }
+        if (pending.compareTo(next) < 0 && !released.containsKey(pending) && !gaps.contains(pending)
+                && !tracked.test(pending)) {
+            gaps.add(0, pending);
+        }
+        return gaps;
+    }
+
+    private BigInteger pendingCount() throws IOException {
+        return web3j.ethGetTransactionCount(address, DefaultBlockParameterName.PENDING)
+                .send()
+                .getTransactionCount();
+    }
+
+    /** Node errors (geth, Hardhat, Besu wording) that mean the nonce is already taken. */
+    static boolean isNonceConflict(String error) {
+        if (error == null) {
+            return false;
+        }
+        String msg = error.toLowerCase(Locale.ROOT);
+        return msg.contains("nonce too low")
+                || msg.contains("nonce has already been used")
+                || msg.contains("replacement transaction underpriced")
+                || msg.contains("replacement fee too low");
+    }
+
+    /** The exact same signed transaction is already in the node's pool. */
+    static boolean isAlreadyKnown(String error) {
+        if (error == null) {
+            return false;
+        }
+        String msg = error.toLowerCase(Locale.ROOT);
+        return msg.contains("already known") || msg.contains("known transaction");
+    }
+}
@@ -0,0 +1,134 @@
+package com.chaintrust.service;
+
+import com.chaintrust.model.RiskResult;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+/**
+ * Remembers ml-service scores by model version and the exact sanitized feature vector
+ * ({@link FeatureService#toMlVector}), so a wallet whose features have not changed is not
+ * scored again. Nothing is cached or served until the model version is known or while it is
+ * ambiguous, and a new version drops every entry. Callers always get their own copy of a
+ * cached result.
+ */
+final class RiskResultCache {
+
+    private static final Logger log = LoggerFactory.getLogger(RiskResultCache.class);
+
+    private final Cache<Key, RiskResult> cache;
+    private volatile String modelVersion;
+    /** Last version adopted; survives a {@link #suspend} so agreeing again on it keeps the entries. */
+    private String adopted;
+
+    RiskResultCache(long maxEntries, Duration ttl, MeterRegistry meterRegistry) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(Math.max(0, maxEntries))
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "ml.risk");
+    }
+
+    String modelVersion() {
+        return modelVersion;
+    }
+
+    /** Adopts the version ml-service reports; a different version invalidates everything. */
+    void updateModelVersion(String version) {
+        if (version == null || version.isBlank() || version.equals(modelVersion)) {
+            return;
+        }
+        synchronized (this) {
+            if (!version.equals(adopted)) {
+                log.info("ml-service model version {} -> {}; dropping {} cached scores",
+                        adopted, version, cache.estimatedSize());
+                adopted = version;
+                cache.invalidateAll();
+            }
+            modelVersion = version;
+        }
+    }
+
+    /** Stops serving and storing scores while ml-service replicas report different versions. */
+    synchronized void suspend(List<String> versions) {
+        if (modelVersion != null) {
+            log.info("ml-service replicas report model versions {}; score cache paused", versions);
+            modelVersion = null;
+        }
+    }
+
+    /**
+     * Returns a copy of the cached score, or null. An entry stored without contributions does
+     * not satisfy a request that wants them.
+     */
+    RiskResult get(double[] features, boolean explain) {
+        String version = modelVersion;
+        if (version == null) {
+            return null;
+        }
+        RiskResult cached = cache.getIfPresent(new Key(version, features));
+        if (cached == null || (explain && cached.getFeatureContributions() == null)) {
+            return null;
+        }
+        return copy(cached, explain);
+    }
+
+    /**
+     * Stores a successful score computed while {@code version} was current. Results computed
+     * under a version that has since been replaced, and degraded results, are not kept.
+     */
+    void put(String version, double[] features, RiskResult result) {
+        if (version == null || !version.equals(modelVersion) || result.getReason() != null) {
+            return;
+        }
+        cache.put(new Key(version, features), copy(result, true));
+    }
+
+    private static RiskResult copy(RiskResult source, boolean withContributions) {
+        RiskResult copy = new RiskResult(source.getRiskScore(), source.getRiskLevel(), source.getReason());
+        if (withContributions && source.getFeatureContributions() != null) {
+            copy.setFeatureContributions(new LinkedHashMap<>(source.getFeatureContributions()));
+        }
+        List<String> reasons = source.getDenialReasons();
+        copy.setDenialReasons(reasons == null ? null : List.copyOf(reasons));
+        return copy;
+    }
+
+    /** Exact vector match; -0.0 and 0.0 are the same input to the model. */
+    private static final class Key {
+        private final String version;
+        private final double[] features;
+        private final int hash;
+
+        Key(String version, double[] features) {
+            this.version = version;
+            this.features = new double[features.length];
+            for (int i = 0; i < features.length; i++) {
+                this.features[i] = features[i] == 0.0 ? 0.0 : features[i];
+            }
+            this.hash = 31 * version.hashCode() + Arrays.hashCode(this.features);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Key other
+                    && hash == other.hash
+                    && version.equals(other.version)
+                    && Arrays.equals(features, other.features);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
@@ -2,132 +2,573 @@ package com.chaintrust.service;
 
 import com.chaintrust.model.RiskResult;
 import com.chaintrust.model.WalletFeatures;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.boot.web.client.RestTemplateBuilder;
-import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpHeaders;
-import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
-import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
-import org.springframework.web.client.HttpServerErrorException;
-import org.springframework.web.client.RestTemplate;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
 
+/**
+ * Client for ml-service. All calls share one JDK HttpClient, which keeps connections alive in
+ * its pool and multiplexes requests over a single connection when HTTP/2 is negotiated.
+ * ml.service.url may list several replicas; {@link MlReplicaPool} sends each call to the one
+ * with the lowest latency-weighted load, fails over once on a retryable error and can hedge slow
+ * calls. No caller thread ever sleeps or polls: each replica has a {@link CircuitBreaker} that
+ * opens on a 502 (cold start) or after repeated failures, callers get
+ * {@link #CIRCUIT_OPEN_REASON} at once while no replica can take the call, and
+ * {@link MlWarmKeeper} watches each replica's /health and warms it up before user calls are
+ * let through, so a cold start is never paid for by a user request.
+ * Remote scores are cached per model version and feature vector ({@link RiskResultCache}); the
+ * cache is paused while replicas report different model versions. /health is also re-read
+ * every ml.health.refresh-ms for the model version and the feature schema; while a replica's
+ * schema is agreed, batches to it go to /predict_vectors as packed float64 rows instead of one
+ * JSON object per wallet.
+ */
 @Service
 public class RiskServiceClient {
 
     private static final Logger log = LoggerFactory.getLogger(RiskServiceClient.class);
 
-    /** How many times to attempt /predict total (1 initial + N-1 retries). */
-    private static final int MAX_ATTEMPTS = 4;
-
-    /** Wait between retries when we get 502 (Render cold start). */
-    private static final long RETRY_SLEEP_MS = 10_000;
-
     /**
-     * After detecting 502, we ping /health in a loop waiting for the service
-     * to wake up before retrying /predict. Max wait = WARMUP_POLLS * WARMUP_POLL_MS.
+     * Reason on the degraded result returned while every replica's circuit is open or no replica
+     * has warmed up yet: risk score 1.0, level HIGH, no contributions. Loan policy treats it like any other unavailable-ML result.
      */
-    private static final int    WARMUP_POLLS    = 14;
-    private static final long   WARMUP_POLL_MS  = 5_000;  // 14 × 5s = 70s warmup window (Render says 50s+)
+    public static final String CIRCUIT_OPEN_REASON = "ML_UNAVAILABLE:CircuitOpen";
 
-    private final RestTemplate restTemplate;
+    private static final String FEATURE_SCHEMA_HEADER = "X-Feature-Schema";
+
+    private final HttpClient httpClient;
+    private final ObjectMapper objectMapper;
+    private final Duration readTimeout;
     private final FeatureService featureService;
-    private final String mlServiceUrl;
+    private final MlReplicaPool pool;
+    private final MicroBatcher<ScoreRequest, RiskResult> batcher;
+    private final LocalRiskScorer localScorer;
+    /** Computes contributions in-process so ml-service can skip its perturbation loop. */
+    private final LocalRiskScorer explainer;
+    private final RiskResultCache cache;
+    private final long healthRefreshNanos;
 
     public RiskServiceClient(
-        RestTemplateBuilder restTemplateBuilder,
+        ObjectMapper objectMapper,
         FeatureService featureService,
-        @Value("${ml.service.url}") String mlServiceUrl
+        LocalRiskScorer localRiskScorer,
+        MeterRegistry meterRegistry,
+        @Value("${ml.service.url}") String mlServiceUrl,
+        @Value("${ml.http.version:HTTP_2}") HttpClient.Version httpVersion,
+        @Value("${ml.http.connect-timeout-ms:5000}") long connectTimeoutMs,
+        @Value("${ml.http.read-timeout-ms:60000}") long readTimeoutMs,
+        @Value("${ml.scoring.backend:remote}") String scoringBackend,
+        @Value("${ml.batch.enabled:true}") boolean batchEnabled,
+        @Value("${ml.batch.max-size:32}") int batchMaxSize,
+        @Value("${ml.batch.max-wait-ms:5}") long batchMaxWaitMs,
+        @Value("${ml.batch.queue-capacity:1024}") int batchQueueCapacity,
+        @Value("${ml.circuit.failure-threshold:5}") int failureThreshold,
+        @Value("${ml.circuit.half-open-calls:1}") int halfOpenCalls,
+        @Value("${ml.cache.enabled:true}") boolean cacheEnabled,
+        @Value("${ml.cache.max-entries:10000}") long cacheMaxEntries,
+        @Value("${ml.cache.ttl-seconds:3600}") long cacheTtlSeconds,
+        @Value("${ml.health.refresh-ms:30000}") long healthRefreshMs,
+        @Value("${ml.hedge.enabled:false}") boolean hedgeEnabled,
+        @Value("${ml.hedge.min-delay-ms:20}") long hedgeMinDelayMs,
+        @Value("${ml.warmup.enabled:true}") boolean warmupEnabled
     ) {
-        this.restTemplate = restTemplateBuilder
-            .setConnectTimeout(Duration.ofSeconds(20))
-            .setReadTimeout(Duration.ofSeconds(60))
+        this.httpClient = HttpClient.newBuilder()
+            .connectTimeout(Duration.ofMillis(connectTimeoutMs))
+            .version(httpVersion)
             .build();
+        this.readTimeout = Duration.ofMillis(readTimeoutMs);
+        this.objectMapper = objectMapper;
         this.featureService = featureService;
-        this.mlServiceUrl = mlServiceUrl;
+        List<String> urls = Arrays.stream(mlServiceUrl.split(","))
+            .map(String::trim)
+            .filter(url -> !url.isEmpty())
+            .map(url -> url.endsWith("/") ? url.substring(0, url.length() - 1) : url)
+            .distinct()
+            .toList();
+        this.batcher = batchEnabled
+            ? new MicroBatcher<>("ml-predict", batchMaxSize, batchMaxWaitMs, batchQueueCapacity, this::sendBatch)
+            : null;
+
+        boolean wantLocal = "local".equalsIgnoreCase(scoringBackend.trim());
+        if (wantLocal && !localRiskScorer.isAvailable()) {
+            log.warn("ml.scoring.backend=local but no local model is loaded; scoring through {}", mlServiceUrl);
+        }
+        this.localScorer = wantLocal && localRiskScorer.isAvailable() ? localRiskScorer : null;
+        this.explainer = localRiskScorer.canExplain() ? localRiskScorer : null;
+        this.pool = new MlReplicaPool(urls, failureThreshold, halfOpenCalls, hedgeEnabled, hedgeMinDelayMs,
+            warmupEnabled && localScorer == null, RiskServiceClient::classify, meterRegistry);
+
+        this.cache = cacheEnabled && localScorer == null
+            ? new RiskResultCache(cacheMaxEntries, Duration.ofSeconds(Math.max(1, cacheTtlSeconds)), meterRegistry)
+            : null;
+        this.healthRefreshNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1000, healthRefreshMs));
+        for (MlReplicaPool.Replica replica : pool.replicas()) {
+            replica.lastHealthCheck = System.nanoTime() - healthRefreshNanos;
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        if (batcher != null) {
+            batcher.close();
+        }
     }
 
+    /**
+     * Scores one wallet, in-process when the local backend is active. Otherwise, with batching
+     * enabled, concurrent callers are grouped into a single /predict_batch request and each gets
+     * its own row of the response.
+     */
     public RiskResult predict(WalletFeatures features) {
+        return predict(features, true);
+    }
+
+    /** With {@code explain=false} no feature contributions are computed or returned. */
+    public RiskResult predict(WalletFeatures features, boolean explain) {
+        return join(predictAsync(features, explain));
+    }
+
+    /** False while ml-service scoring is in use and no replica is warm and closed or half-open. */
+    public boolean isReady() {
+        return localScorer != null || pool.ready();
+    }
+
+    boolean isRemote() {
+        return localScorer == null;
+    }
+
+    List<MlReplicaPool.Replica> replicas() {
+        return pool.replicas();
+    }
+
+    /**
+     * Sends one synthetic wallet to {@code replica} the way a real batch would go, so the first
+     * user request finds the model loaded and its code paths warm. Completes with whether the
+     * replica is warm afterwards; never completes exceptionally.
+     */
+    CompletableFuture<Boolean> warmUp(MlReplicaPool.Replica replica) {
+        ScoreRequest synthetic = new ScoreRequest(featureService.sanitize(new WalletFeatures()), true);
+        return pool.warmUp(replica, r -> postBatchAsync(r, List.of(synthetic), explainer == null));
+    }
+
+    /**
+     * Non-blocking {@link #predict(WalletFeatures, boolean)}: the future completes when ml-service
+     * answers, without holding the calling thread. Failures complete it with a HIGH risk result.
+     */
+    public CompletableFuture<RiskResult> predictAsync(WalletFeatures features, boolean explain) {
         WalletFeatures clean = featureService.sanitize(features);
-        Map<String, Object> payload = featureService.toMlPayload(clean);
+        if (localScorer != null) {
+            return CompletableFuture.completedFuture(localScorer.score(clean, explain));
+        }
+        double[] vector = null;
+        String version = null;
+        if (cache != null) {
+            vector = featureService.toMlVector(clean);
+            RiskResult cached = cache.get(vector, explain);
+            if (cached != null) {
+                return CompletableFuture.completedFuture(cached);
+            }
+            version = cache.modelVersion();
+        }
+        if (!pool.allowRequest()) {
+            return CompletableFuture.completedFuture(circuitOpen());
+        }
+        CompletableFuture<RiskResult> future;
+        if (batcher != null) {
+            future = batcher.submit(new ScoreRequest(clean, explain));
+        } else if (pool.replicas().stream().anyMatch(r -> r.vectorSchema != null)) {
+            future = sendBatch(List.of(new ScoreRequest(clean, explain))).thenApply(results -> results.get(0));
+        } else {
+            future = sendSingle(clean, explain);
+        }
+        if (cache != null) {
+            double[] key = vector;
+            String keyVersion = version;
+            future = future.thenApply(result -> {
+                cache.put(keyVersion, key, result);
+                return result;
+            });
+        }
+        return future.exceptionally(RiskServiceClient::scoringFailed);
+    }
 
-        HttpHeaders headers = new HttpHeaders();
-        headers.setContentType(MediaType.APPLICATION_JSON);
-        HttpEntity<Map<String, Object>> request = new HttpEntity<>(payload, headers);
+    /**
+     * Scores many wallets; results are in input order. Items are fed through the same batcher,
+     * so a large list goes out as ceil(n / max-size) requests.
+     */
+    public List<RiskResult> predictAll(List<WalletFeatures> features) {
+        return predictAll(features, true);
+    }
 
-        for (int attempt = 1; attempt <= MAX_ATTEMPTS; attempt++) {
-            try {
-                ResponseEntity<RiskResult> response = restTemplate.postForEntity(
-                    mlServiceUrl + "/predict",
-                    request,
-                    RiskResult.class
-                );
-
-                RiskResult result = response.getBody();
-                if (!response.getStatusCode().is2xxSuccessful() || result == null) {
-                    return RiskResult.highRisk("ML_NON_200");
+    public List<RiskResult> predictAll(List<WalletFeatures> features, boolean explain) {
+        List<CompletableFuture<RiskResult>> futures = features.stream()
+            .map(f -> predictAsync(f, explain))
+            .toList();
+        return futures.stream().map(RiskServiceClient::join).toList();
+    }
+
+    /**
+     * One round trip for a batch, to whichever replica the pool picks: /predict_vectors when that
+     * replica's feature schema is agreed, otherwise /predict_batch. If the replica refuses the
+     * vectors (schema changed, or route missing) its schema is dropped, a health refresh is
+     * scheduled and the batch is resent to it as JSON. An ml-service without the batch route (404)
+     * gets the items as individual /predict calls; any other failure fails the batch. ml-service
+     * only runs its perturbation loop when an item wants contributions and they cannot be
+     * computed here.
+     */
+    private CompletableFuture<List<RiskResult>> sendBatch(List<ScoreRequest> batch) {
+        boolean remoteExplain = explainer == null && batch.stream().anyMatch(ScoreRequest::explain);
+        return pool.execute(replica -> postBatchAsync(replica, batch, remoteExplain))
+            .thenApply(body -> {
+                if (body == null || body.results == null || body.results.size() != batch.size()) {
+                    throw new IllegalStateException("unexpected batch body");
                 }
-                return result.normalized();
-
-            } catch (HttpServerErrorException e) {
-                if (e.getStatusCode() == HttpStatus.BAD_GATEWAY) {
-                    log.warn("ML service 502 on attempt {}/{} — waiting for cold-start warmup", attempt, MAX_ATTEMPTS);
-                    if (attempt < MAX_ATTEMPTS) {
-                        // Poll /health until the service is up, then retry /predict
-                        boolean warmedUp = waitForHealth();
-                        if (!warmedUp) {
-                            log.warn("ML service did not respond to health checks — retrying /predict anyway");
-                        }
-                    }
-                } else {
-                    log.error("ML service HTTP {}: {}", e.getStatusCode(), e.getMessage());
-                    return RiskResult.highRisk("ML_UNAVAILABLE:" + e.getStatusCode());
+                List<RiskResult> results = new ArrayList<>(batch.size());
+                for (int i = 0; i < batch.size(); i++) {
+                    RiskResult result = body.results.get(i);
+                    ScoreRequest req = batch.get(i);
+                    results.add(result != null
+                        ? withContributions(result.normalized(), req.features(), req.explain())
+                        : RiskResult.highRisk("ML_NON_200"));
+                }
+                return results;
+            })
+            .exceptionallyCompose(e -> {
+                Throwable cause = unwrap(e);
+                if (cause instanceof MlReplicaPool.NoReplicaAvailableException) {
+                    return CompletableFuture.completedFuture(Collections.nCopies(batch.size(), circuitOpen()));
+                }
+                if (!(cause instanceof MlHttpException http) || http.status != 404) {
+                    return CompletableFuture.failedFuture(e);
                 }
+                log.warn("ml-service has no /predict_batch; scoring {} items individually", batch.size());
+                List<CompletableFuture<RiskResult>> singles = batch.stream()
+                    .map(r -> sendSingle(r.features(), r.explain()).exceptionally(RiskServiceClient::scoringFailed))
+                    .toList();
+                return CompletableFuture.allOf(singles.toArray(new CompletableFuture<?>[0]))
+                    .thenApply(ignored -> singles.stream().map(CompletableFuture::join).toList());
+            });
+    }
+
+    private CompletableFuture<BatchResponse> postBatchAsync(MlReplicaPool.Replica replica, List<ScoreRequest> batch,
+                                                            boolean remoteExplain) {
+        VectorSchema schema = replica.vectorSchema;
+        CompletableFuture<BatchResponse> call;
+        if (schema != null) {
+            call = postVectorsAsync(replica, "/predict_vectors?explain=" + remoteExplain, schema, batch)
+                .exceptionallyCompose(e -> {
+                    if (unwrap(e) instanceof MlHttpException http
+                            && (http.status == 404 || http.status == 409 || http.status == 415)) {
+                        log.warn("{} refused feature vectors (HTTP {}); renegotiating, sending JSON meanwhile",
+                            replica.url, http.status);
+                        dropVectorSchema(replica, schema);
+                        return postBatchAsync(replica, batch, remoteExplain);
+                    }
+                    return CompletableFuture.failedFuture(e);
+                });
+        } else {
+            List<Map<String, Object>> items = batch.stream().map(r -> featureService.toMlPayload(r.features())).toList();
+            call = postAsync(replica, "/predict_batch?explain=" + remoteExplain, Map.of("items", items), BatchResponse.class);
+        }
+        return call.thenApply(body -> {
+            if (body != null) {
+                updateModelVersion(replica, body.modelVersion);
+            }
+            return body;
+        });
+    }
 
-            } catch (Exception e) {
-                log.error("ML service call failed attempt {}/{}: {}", attempt, MAX_ATTEMPTS, e.getMessage());
-                if (attempt < MAX_ATTEMPTS) {
-                    sleep(RETRY_SLEEP_MS);
+    private CompletableFuture<RiskResult> sendSingle(WalletFeatures clean, boolean explain) {
+        String path = "/predict?explain=" + (explain && explainer == null);
+        Map<String, Object> payload = featureService.toMlPayload(clean);
+        return pool.execute(replica -> postAsync(replica, path, payload, RiskResult.class))
+            .thenApply(result -> {
+                if (result == null) {
+                    return RiskResult.highRisk("ML_NON_200");
                 }
+                return withContributions(result.normalized(), clean, explain);
+            })
+            .exceptionally(e -> {
+                if (unwrap(e) instanceof MlReplicaPool.NoReplicaAvailableException) {
+                    return circuitOpen();
+                }
+                if (unwrap(e) instanceof MlHttpException http && http.status != 502) {
+                    log.error("ML service HTTP {}", http.status);
+                    return RiskResult.highRisk("ML_UNAVAILABLE:" + http.status);
+                }
+                throw e instanceof CompletionException ce ? ce : new CompletionException(e);
+            });
+    }
+
+    /**
+     * How a replica's breaker and the pool see a failed call. A 502 is how the hosting proxy
+     * answers while ml-service is cold, so it opens the circuit straight away; 4xx replies mean
+     * the service is up and are not held against it.
+     */
+    private static MlReplicaPool.Outcome classify(Throwable e) {
+        if (unwrap(e) instanceof MlHttpException http) {
+            if (http.status == 502) {
+                return MlReplicaPool.Outcome.TRIPPED;
             }
+            return http.status < 500 ? MlReplicaPool.Outcome.REJECTED : MlReplicaPool.Outcome.FAILED;
         }
+        return MlReplicaPool.Outcome.FAILED;
+    }
 
-        log.error("ML service unreachable after {} attempts", MAX_ATTEMPTS);
-        return RiskResult.highRisk("ML_UNAVAILABLE:MaxRetriesExceeded");
+    /** POSTs JSON and decodes a 2xx body; any other status completes with {@link MlHttpException}. */
+    private <T> CompletableFuture<T> postAsync(MlReplicaPool.Replica replica, String path, Object payload, Class<T> type) {
+        HttpRequest request;
+        try {
+            request = HttpRequest.newBuilder(URI.create(replica.url + path))
+                .timeout(readTimeout)
+                .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                .POST(HttpRequest.BodyPublishers.ofByteArray(objectMapper.writeValueAsBytes(payload)))
+                .build();
+        } catch (IOException | IllegalArgumentException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        return httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofByteArray())
+            .thenApply(response -> decode(response, type));
+    }
+
+    private <T> T decode(HttpResponse<byte[]> response, Class<T> type) {
+        if (response.statusCode() / 100 != 2) {
+            throw new MlHttpException(response.statusCode());
+        }
+        try {
+            return objectMapper.readValue(response.body(), type);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Sends the batch as {@code batch.size() x schema.width()} little-endian float64 values in
+     * the server's feature order, tagged with the schema id it published.
+     */
+    private CompletableFuture<BatchResponse> postVectorsAsync(MlReplicaPool.Replica replica, String path,
+                                                              VectorSchema schema, List<ScoreRequest> batch) {
+        int[] index = schema.inputIndex();
+        ByteBuffer body = ByteBuffer.allocate(batch.size() * index.length * Double.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        for (ScoreRequest req : batch) {
+            double[] vector = featureService.toMlVector(req.features());
+            for (int column : index) {
+                body.putDouble(vector[column]);
+            }
+        }
+        HttpRequest request = HttpRequest.newBuilder(URI.create(replica.url + path))
+            .timeout(readTimeout)
+            .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_OCTET_STREAM_VALUE)
+            .header(FEATURE_SCHEMA_HEADER, schema.id())
+            .POST(HttpRequest.BodyPublishers.ofByteArray(body.array()))
+            .build();
+        return httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofByteArray())
+            .thenApply(response -> decode(response, BatchResponse.class));
+    }
+
+    /** Adopts the schema a replica publishes on /health when every server feature is one this client sends. */
+    private void updateVectorSchema(MlReplicaPool.Replica replica, JsonNode health) {
+        String id = health.path("feature_schema").asText(null);
+        VectorSchema current = replica.vectorSchema;
+        if (id == null) {
+            replica.vectorSchema = null;
+            return;
+        }
+        if (current != null && current.id().equals(id)) {
+            return;
+        }
+        JsonNode features = health.path("features");
+        int[] index = new int[features.size()];
+        for (int i = 0; i < index.length; i++) {
+            index[i] = FeatureService.ML_FEATURES.indexOf(features.get(i).asText());
+            if (index[i] < 0) {
+                log.warn("{} expects unknown feature {}; using JSON requests", replica.url, features.get(i).asText());
+                replica.vectorSchema = null;
+                return;
+            }
+        }
+        log.info("{} feature schema {} ({} features); using /predict_vectors", replica.url, id, index.length);
+        replica.vectorSchema = new VectorSchema(id, index);
+    }
+
+    private void dropVectorSchema(MlReplicaPool.Replica replica, VectorSchema refused) {
+        if (replica.vectorSchema == refused) {
+            replica.vectorSchema = null;
+            replica.lastHealthCheck = System.nanoTime() - healthRefreshNanos;
+        }
+    }
+
+    private void updateModelVersion(MlReplicaPool.Replica replica, String version) {
+        if (version == null || version.isBlank() || version.equals(replica.modelVersion)) {
+            return;
+        }
+        replica.modelVersion = version;
+        refreshCacheVersion();
+    }
+
+    /**
+     * The cache follows the model version while every replica that is not open agrees on it,
+     * and is paused while they differ (a rolling deploy).
+     */
+    private void refreshCacheVersion() {
+        if (cache == null) {
+            return;
+        }
+        List<String> versions = pool.replicas().stream()
+            .filter(r -> r.breaker.state() != CircuitBreaker.State.OPEN)
+            .map(r -> r.modelVersion)
+            .filter(v -> v != null)
+            .distinct()
+            .toList();
+        if (versions.size() == 1) {
+            cache.updateModelVersion(versions.get(0));
+        } else if (versions.size() > 1) {
+            cache.suspend(versions);
+        }
     }
 
     /**
-     * Polls GET /health until the ML service responds with 200 or we time out.
-     * Returns true if the service came up within the poll window.
+     * Called by {@link MlWarmKeeper}; only starts requests. For each replica whose circuit is open,
+     * GET /health (which also wakes a sleeping host); once it answers 2xx with the model loaded,
+     * that circuit goes half-open. Every replica's /health is also read every
+     * ml.health.refresh-ms to pick up a new model version or feature schema.
      */
-    private boolean waitForHealth() {
-        String healthUrl = mlServiceUrl + "/health";
-        for (int i = 0; i < WARMUP_POLLS; i++) {
-            sleep(WARMUP_POLL_MS);
+    void refreshHealth() {
+        refreshCacheVersion();
+        long now = System.nanoTime();
+        for (MlReplicaPool.Replica replica : pool.replicas()) {
+            boolean open = replica.breaker.state() == CircuitBreaker.State.OPEN;
+            boolean refreshDue = now - replica.lastHealthCheck >= healthRefreshNanos;
+            if ((!open && !refreshDue) || !replica.probing.compareAndSet(false, true)) {
+                continue;
+            }
+            HttpRequest request;
             try {
-                ResponseEntity<String> resp = restTemplate.getForEntity(healthUrl, String.class);
-                if (resp.getStatusCode().is2xxSuccessful()) {
-                    log.info("ML service is up after {}s warmup — retrying /predict", (i + 1) * (WARMUP_POLL_MS / 1000));
-                    return true;
-                }
-            } catch (Exception ignored) {
-                // Still waking up — keep polling
+                request = HttpRequest.newBuilder(URI.create(replica.url + "/health"))
+                    .timeout(readTimeout)
+                    .GET()
+                    .build();
+            } catch (IllegalArgumentException e) {
+                replica.probing.set(false);
+                log.debug("ML health probe failed for {}: {}", replica.url, e.getMessage());
+                continue;
             }
+            httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofByteArray())
+                .thenAccept(response -> {
+                    if (response.statusCode() / 100 != 2) {
+                        return;
+                    }
+                    JsonNode health;
+                    try {
+                        health = objectMapper.readTree(response.body());
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                    replica.lastHealthCheck = System.nanoTime();
+                    updateModelVersion(replica, health.path("model_version").asText(null));
+                    updateVectorSchema(replica, health);
+                    if (open && health.path("model_loaded").asBoolean(true)) {
+                        replica.breaker.probeSucceeded();
+                    }
+                })
+                .whenComplete((ignored, e) -> {
+                    replica.probing.set(false);
+                    if (e != null) {
+                        log.debug("ML health probe failed for {}: {}", replica.url, rootMessage(e));
+                    }
+                });
+        }
+    }
+
+    /** Fills contributions locally when the explainer is available; drops them when not requested. */
+    private RiskResult withContributions(RiskResult result, WalletFeatures clean, boolean explain) {
+        if (!explain) {
+            result.setFeatureContributions(null);
+        } else if (explainer != null) {
+            result.setFeatureContributions(explainer.explain(clean));
         }
-        return false;
+        return result;
+    }
+
+    private static RiskResult circuitOpen() {
+        return RiskResult.highRisk(CIRCUIT_OPEN_REASON);
     }
 
-    private static void sleep(long ms) {
+    private static RiskResult join(CompletableFuture<RiskResult> future) {
         try {
-            Thread.sleep(ms);
-        } catch (InterruptedException ie) {
-            Thread.currentThread().interrupt();
+            return future.join();
+        } catch (CompletionException e) {
+            return scoringFailed(e);
         }
     }
+
+    private static RiskResult scoringFailed(Throwable e) {
+        Throwable cause = unwrap(e);
+        log.error("ML scoring failed: {}", rootMessage(cause));
+        if (cause instanceof MlHttpException http) {
+            return RiskResult.highRisk("ML_UNAVAILABLE:" + http.status);
+        }
+        return RiskResult.highRisk("ML_UNAVAILABLE:" + cause.getClass().getSimpleName());
+    }
+
+    private static Throwable unwrap(Throwable e) {
+        while (e instanceof CompletionException && e.getCause() != null) {
+            e = e.getCause();
+        }
+        return e;
+    }
+
+    private static String rootMessage(Throwable e) {
+        Throwable cause = unwrap(e);
+        return cause.getMessage() != null ? cause.getMessage() : cause.getClass().getSimpleName();
+    }
+
+    private record ScoreRequest(WalletFeatures features, boolean explain) {
+    }
+
+    /** inputIndex[i] is the {@link FeatureService#toMlVector} position of the server's column i. */
+    record VectorSchema(String id, int[] inputIndex) {
+    }
+
+    private static final class MlHttpException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        private final int status;
+
+        MlHttpException(int status) {
+            super("HTTP " + status);
+            this.status = status;
+        }
+    }
+
+    private static final class BatchResponse {
+        public List<RiskResult> results;
+        @JsonProperty("model_version")
+        public String modelVersion;
+    }
 }
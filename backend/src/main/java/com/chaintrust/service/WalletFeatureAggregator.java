@@ -0,0 +1,283 @@
+package com.chaintrust.service;
+
+import com.chaintrust.model.TxRecord;
+import com.chaintrust.model.WalletFeatures;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Single-pass feature accumulator behind {@link WalletHistoryService#deriveFeatures}.
+ * Transactions are fed one at a time and only primitive running totals are kept
+ * (compensated sum, Welford variance, flag counters), a {@link DistinctCounter} for contracts
+ * and the protocol names (at most {@value #MAX_PROTOCOLS}), so the saved state stays small.
+ * <p>
+ * {@link #ordered(String)} expects ascending timestamps (e.g. pages from the local store) and
+ * tracks dormancy gaps against the previous transaction, so memory does not grow with history
+ * length. {@link #unordered(String, int)} accepts any order and buffers timestamps in a
+ * primitive array that is sorted once when the features are built.
+ * <p>
+ * An ordered aggregator can be saved with {@link #state()} and picked up again with
+ * {@link #restore(String, State)}, so stored history only has to be read once and later
+ * transactions are added on top.
+ */
+public final class WalletFeatureAggregator {
+
+    private static final DateTimeFormatter DATE_FMT = DateTimeFormatter.ISO_LOCAL_DATE;
+    private static final long CROSS_CHAIN_GAP_SECONDS = 14L * 86400;
+    /** Protocol names come from a fixed address map; the cap only guards the saved state. */
+    static final int MAX_PROTOCOLS = 64;
+
+    private final String address;
+    private final String addressLower;
+    private final boolean ordered;
+    private long[] timestamps;
+
+    private long count;
+    private long minTs = Long.MAX_VALUE;
+    private long maxTs = Long.MIN_VALUE;
+    private long previousTs = Long.MIN_VALUE;
+
+    // Welford running mean / sum of squared deviations.
+    private double mean;
+    private double m2;
+    // Kahan-compensated sum, matching DoubleStream.sum().
+    private double sum;
+    private double sumCompensation;
+    private double maxValue = Double.NEGATIVE_INFINITY;
+
+    private long incoming;
+    private long outgoing;
+    private long flashLoans;
+    private long liquidations;
+    private long nftTxs;
+    private long rugpulls;
+    private long longGaps;
+    private long maxGapSeconds;
+
+    private DistinctCounter contracts = new DistinctCounter();
+    private final Set<String> protocols = new HashSet<>();
+
+    private WalletFeatureAggregator(String address, boolean ordered, int expectedSize) {
+        this.address = address != null ? address : "";
+        this.addressLower = this.address.toLowerCase(Locale.ROOT);
+        this.ordered = ordered;
+        this.timestamps = ordered ? null : new long[Math.max(16, expectedSize)];
+    }
+
+    public static WalletFeatureAggregator ordered(String address) {
+        return new WalletFeatureAggregator(address, true, 0);
+    }
+
+    public static WalletFeatureAggregator unordered(String address, int expectedSize) {
+        return new WalletFeatureAggregator(address, false, expectedSize);
+    }
+
+    public static WalletFeatureAggregator restore(String address, State state) {
+        WalletFeatureAggregator aggregator = ordered(address);
+        aggregator.count = state.count();
+        aggregator.minTs = state.minTs();
+        aggregator.maxTs = state.maxTs();
+        aggregator.previousTs = state.previousTs();
+        aggregator.mean = state.mean();
+        aggregator.m2 = state.m2();
+        aggregator.sum = state.sum();
+        aggregator.sumCompensation = state.sumCompensation();
+        aggregator.maxValue = state.maxValue();
+        aggregator.incoming = state.incoming();
+        aggregator.outgoing = state.outgoing();
+        aggregator.flashLoans = state.flashLoans();
+        aggregator.liquidations = state.liquidations();
+        aggregator.nftTxs = state.nftTxs();
+        aggregator.rugpulls = state.rugpulls();
+        aggregator.longGaps = state.longGaps();
+        aggregator.maxGapSeconds = state.maxGapSeconds();
+        aggregator.contracts = DistinctCounter.restore(state.contracts());
+        aggregator.protocols.addAll(state.protocols());
+        return aggregator;
+    }
+
+    /** Running totals of an ordered aggregator, for {@link #restore(String, State)}. */
+    public State state() {
+        if (!ordered) {
+            throw new IllegalStateException("Only an ordered aggregator can be saved");
+        }
+        return new State(count, minTs, maxTs, previousTs, mean, m2, sum, sumCompensation, maxValue,
+                incoming, outgoing, flashLoans, liquidations, nftTxs, rugpulls, longGaps, maxGapSeconds,
+                contracts.state(), List.copyOf(protocols));
+    }
+
+    public void accept(TxRecord tx) {
+        long ts = tx.getTimestamp();
+        if (ordered) {
+            if (count > 0) {
+                if (ts < previousTs) {
+                    throw new IllegalArgumentException("Transactions must be fed in ascending timestamp order");
+                }
+                trackGap(ts - previousTs);
+            }
+            previousTs = ts;
+        } else {
+            if (count == timestamps.length) {
+                timestamps = Arrays.copyOf(timestamps, timestamps.length * 2);
+            }
+            timestamps[(int) count] = ts;
+        }
+        if (ts < minTs) {
+            minTs = ts;
+        }
+        if (ts > maxTs) {
+            maxTs = ts;
+        }
+
+        count++;
+        double value = tx.getValueEth();
+        double delta = value - mean;
+        mean += delta / count;
+        m2 += delta * (value - mean);
+        double y = value - sumCompensation;
+        double t = sum + y;
+        sumCompensation = (t - sum) - y;
+        sum = t;
+        if (value > maxValue) {
+            maxValue = value;
+        }
+
+        String to = tx.getTo();
+        if (to != null && isSelf(to)) {
+            incoming++;
+        }
+        String from = tx.getFrom();
+        if (from != null && isSelf(from)) {
+            outgoing++;
+        }
+        if (tx.isContract() && to != null && !to.isEmpty()) {
+            contracts.add(to);
+        }
+        String protocol = tx.getProtocol();
+        if (protocol != null && !protocol.equals("Unknown") && !protocol.equals("ETH Transfer")
+                && protocols.size() < MAX_PROTOCOLS) {
+            protocols.add(protocol);
+        }
+
+        String riskFlag = tx.getRiskFlag();
+        if (riskFlag != null) {
+            switch (riskFlag) {
+                case "FLASH_LOAN" -> flashLoans++;
+                case "LIQUIDATION" -> liquidations++;
+                case "NFT" -> nftTxs++;
+                case "RUGPULL" -> rugpulls++;
+                default -> { }
+            }
+        }
+    }
+
+    private void trackGap(long gap) {
+        if (gap > CROSS_CHAIN_GAP_SECONDS) {
+            longGaps++;
+        }
+        if (gap > maxGapSeconds) {
+            maxGapSeconds = gap;
+        }
+    }
+
+    /** Etherscan already returns lowercase hex, so the common case is a plain equals. */
+    private boolean isSelf(String candidate) {
+        return candidate.equals(addressLower) || candidate.equalsIgnoreCase(address);
+    }
+
+    public long count() {
+        return count;
+    }
+
+    /**
+     * Builds the feature vector; arguments have the same meaning as in
+     * {@link WalletHistoryService#deriveFeatures(String, java.util.List, long, long)}.
+     */
+    public WalletFeatures toFeatures(long firstTxTimestamp, long totalTxCount) {
+        WalletFeatures f = new WalletFeatures();
+        f.setAddress(address);
+
+        if (count == 0) {
+            f.setWalletAgeDays(1);
+            f.setCollateralRatio(1.5);
+            return f;
+        }
+
+        if (!ordered) {
+            // The one shared sort: dormancy and long-gap counts both read the same sorted array.
+            Arrays.sort(timestamps, 0, (int) count);
+            longGaps = 0;
+            maxGapSeconds = 0;
+            for (int i = 1; i < count; i++) {
+                trackGap(timestamps[i] - timestamps[i - 1]);
+            }
+        }
+
+        long nowTs = Instant.now().getEpochSecond();
+        long ageBaseTs = (firstTxTimestamp > 0) ? firstTxTimestamp : minTs;
+        f.setWalletAgeDays(Math.max(1, (nowTs - ageBaseTs) / 86400));
+
+        long effectiveTxCount = (totalTxCount > 0) ? totalTxCount : count;
+        f.setTxCount((int) Math.min(effectiveTxCount, Integer.MAX_VALUE));
+        f.setFirstSeenDate(LocalDate.ofInstant(Instant.ofEpochSecond(ageBaseTs), ZoneOffset.UTC).format(DATE_FMT));
+        f.setLastSeenDate(LocalDate.ofInstant(Instant.ofEpochSecond(maxTs), ZoneOffset.UTC).format(DATE_FMT));
+
+        f.setAvgTxValue(sum / count);
+        f.setMaxSingleTxEth(maxValue);
+        f.setTxVariance(Math.sqrt(m2 / count));
+        f.setTotalVolumeEth(sum);
+
+        long totalDirectional = incoming + outgoing;
+        f.setIncomingOutgoingRatio(totalDirectional == 0 ? 0.0 : (double) incoming / totalDirectional);
+        f.setUniqueContracts(toInt(contracts.count()));
+        f.setDefiProtocolCount(protocols.size());
+        f.setKnownProtocols(new ArrayList<>(protocols));
+
+        f.setFlashLoanCount(toInt(flashLoans));
+        f.setLiquidationEvents(toInt(liquidations));
+        f.setNftTransactionCount(toInt(nftTxs));
+        f.setCrossChainCount((int) Math.min(longGaps, 10));
+        f.setDormantPeriodDays(maxGapSeconds / 86400.0);
+
+        double collateral = 1.5 + (protocols.size() * 0.15) - (f.getFlashLoanCount() * 0.3)
+                - (f.getLiquidationEvents() * 0.5);
+        f.setCollateralRatio(Math.max(0.1, Math.min(4.0, collateral)));
+        f.setRugpullExposureScore(Math.min(1.0, (double) rugpulls / Math.max(1, count)));
+        return f;
+    }
+
+    private static int toInt(long value) {
+        return (int) Math.min(value, Integer.MAX_VALUE);
+    }
+
+    public record State(
+            long count,
+            long minTs,
+            long maxTs,
+            long previousTs,
+            double mean,
+            double m2,
+            double sum,
+            double sumCompensation,
+            double maxValue,
+            long incoming,
+            long outgoing,
+            long flashLoans,
+            long liquidations,
+            long nftTxs,
+            long rugpulls,
+            long longGaps,
+            long maxGapSeconds,
+            DistinctCounter.State contracts,
+            List<String> protocols) {
+    }
+}
@@ -2,27 +2,34 @@ package com.chaintrust.service;
 
 import com.chaintrust.model.TxRecord;
 import com.chaintrust.model.WalletFeatures;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.boot.web.client.RestTemplateBuilder;
 import org.springframework.stereotype.Service;
-import org.springframework.web.client.RestTemplate;
 
+import java.io.IOException;
 import java.math.BigDecimal;
 import java.time.Duration;
 import java.time.Instant;
-import java.time.LocalDate;
-import java.time.ZoneOffset;
-import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.Optional;
 import java.util.Random;
 import java.util.Set;
-import java.util.concurrent.atomic.AtomicInteger;
-import java.util.stream.Collectors;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Fetches wallet transactions from Etherscan and derives model features.
@@ -31,8 +38,13 @@ import java.util.stream.Collectors;
 @Service
 public class WalletHistoryService {
 
-    private static final double WEI_TO_ETH = 1e-18;
-    private static final DateTimeFormatter DATE_FMT = DateTimeFormatter.ISO_LOCAL_DATE;
+    private static final Logger log = LoggerFactory.getLogger(WalletHistoryService.class);
+
+    private static final double WEI_PER_ETH = 1e18;
+    private static final int HISTORY_WINDOW = 100;
+    private static final int DELTA_PAGE_SIZE = 1000;
+    private static final int MAX_DELTA_PAGES = 10;
+    private static final long LATEST_BLOCK = 99999999L;
 
     private static final Map<String, String> PROTOCOL_MAP = Map.of(
         "0x7a250d5630b4cf539739df2c5dacb4c659f2488d", "Uniswap V2",
@@ -57,42 +69,113 @@ public class WalletHistoryService {
         "0x23581767a106ae21c074b2276d25e5c3e136a68b"
     );
 
-    private final RestTemplate restTemplate;
-    private final List<String> apiKeys;
-    private final AtomicInteger keyIndex = new AtomicInteger(0);
+    private final EtherscanGateway etherscan;
     private final long etherscanChainId;
     private final boolean syntheticFallbackEnabled;
+    private final ExecutorService fetchExecutor;
+    private final Cache<SnapshotKey, WalletSnapshot> snapshotCache;
+    private final SingleFlight<SnapshotKey, WalletSnapshot> snapshotFlights = new SingleFlight<>();
+    private final WalletTxStoreService txStore;
+    private final boolean fullHistoryEnabled;
+    private final long maxSyncTransactions;
+    private final long syncTimeBudgetMs;
 
     public WalletHistoryService(
-            RestTemplateBuilder builder,
-            @Value("${etherscan.api-keys:}") String apiKeysCsv,
-            @Value("${etherscan.chain-id:1}") long etherscanChainId,
-            @Value("${wallet.synthetic-fallback-enabled:false}") boolean syntheticFallbackEnabled) {
-        this.restTemplate = builder
-                .setConnectTimeout(Duration.ofSeconds(5))
-                .setReadTimeout(Duration.ofSeconds(10))
-                .build();
-        this.apiKeys = Arrays.stream(apiKeysCsv.split(","))
-                .map(String::trim)
-                .filter(k -> !k.isBlank())
-                .toList();
-        this.etherscanChainId = etherscanChainId;
+            EtherscanGateway etherscan,
+            WalletTxStoreService txStore,
+            @Qualifier("walletFetchExecutor") ExecutorService fetchExecutor,
+            MeterRegistry meterRegistry,
+            @Value("${wallet.synthetic-fallback-enabled:false}") boolean syntheticFallbackEnabled,
+            @Value("${wallet.cache.max-entries:10000}") long cacheMaxEntries,
+            @Value("${wallet.cache.ttl-seconds:120}") long cacheTtlSeconds,
+            @Value("${wallet.cache.negative-ttl-seconds:30}") long cacheNegativeTtlSeconds,
+            @Value("${wallet.history.full-sync-enabled:false}") boolean fullHistoryEnabled,
+            @Value("${wallet.history.max-sync-transactions:100000}") long maxSyncTransactions,
+            @Value("${wallet.history.sync-time-budget-ms:8000}") long syncTimeBudgetMs) {
+        this.etherscan = etherscan;
+        this.etherscanChainId = etherscan.chainId();
         this.syntheticFallbackEnabled = syntheticFallbackEnabled;
+        this.fetchExecutor = fetchExecutor;
+        this.txStore = txStore;
+        this.fullHistoryEnabled = fullHistoryEnabled;
+        this.maxSyncTransactions = Math.max(1, maxSyncTransactions);
+        this.syncTimeBudgetMs = Math.max(1, syncTimeBudgetMs);
+        this.snapshotCache = Caffeine.newBuilder()
+                .maximumSize(Math.max(0, cacheMaxEntries))
+                .expireAfter(new SnapshotExpiry(
+                        Duration.ofSeconds(Math.max(0, cacheTtlSeconds)),
+                        Duration.ofSeconds(Math.max(0, cacheNegativeTtlSeconds))))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, snapshotCache, "wallet.snapshot");
     }
 
     public List<TxRecord> fetchHistory(String address) {
-        if (apiKeys.isEmpty()) {
+        return fetchSnapshot(address).transactions();
+    }
+
+    /**
+     * Fetches everything deriveFeatures needs in one go. The first-tx and nonce lookups are
+     * sent in parallel with the history call; if either fails it degrades to -1 on its own
+     * instead of holding up or failing the whole snapshot.
+     * Snapshots are cached per (chainId, address). A failed history fetch throws and is never
+     * cached; synthetic fallback history is never cached either, so real data is served as soon
+     * as Etherscan recovers. A snapshot whose first-tx or nonce lookup failed is cached only for
+     * the negative TTL.
+     * Concurrent misses for the same wallet share one upstream fetch. The load runs outside the
+     * cache's compute lock so a slow wallet never blocks lookups of unrelated keys.
+     */
+    public WalletSnapshot fetchSnapshot(String address) {
+        SnapshotKey key = new SnapshotKey(etherscanChainId, address.trim().toLowerCase(Locale.ROOT));
+        WalletSnapshot cached = snapshotCache.getIfPresent(key);
+        if (cached != null) {
+            return cached;
+        }
+        return snapshotFlights.execute(key, () -> {
+            WalletSnapshot loaded = loadSnapshot(address);
+            if (!loaded.synthetic()) {
+                snapshotCache.put(key, loaded);
+            }
+            return loaded;
+        });
+    }
+
+    private WalletSnapshot loadSnapshot(String address) {
+        CompletableFuture<Long> firstTxFuture = CompletableFuture
+                .supplyAsync(() -> fetchFirstTxTimestamp(address), fetchExecutor)
+                .exceptionally(ex -> -1L);
+        CompletableFuture<Long> totalTxFuture = CompletableFuture
+                .supplyAsync(() -> fetchTotalTxCount(address), fetchExecutor)
+                .exceptionally(ex -> -1L);
+
+        HistoryLoad history = loadHistory(address);
+        long firstTxTimestamp = firstTxFuture.join();
+        long totalTxCount = totalTxFuture.join();
+
+        WalletFeatures fullHistoryFeatures = null;
+        if (fullHistoryEnabled && history.stored()) {
+            // Until the backfill reaches block 0 the latest window is used, as without full sync.
+            fullHistoryFeatures = txStore.fullHistory(etherscanChainId, address)
+                    .map(aggregator -> aggregator.toFeatures(firstTxTimestamp, totalTxCount))
+                    .orElse(null);
+        }
+        return new WalletSnapshot(List.copyOf(history.records()), firstTxTimestamp, totalTxCount, fullHistoryFeatures,
+                !history.stored());
+    }
+
+    private HistoryLoad loadHistory(String address) {
+        if (!etherscan.isConfigured()) {
             if (syntheticFallbackEnabled) {
-                return buildSyntheticHistory(address);
+                return new HistoryLoad(buildSyntheticHistory(address), false);
             }
             throw new IllegalStateException("ETHERSCAN_API_KEYS is missing and synthetic fallback is disabled");
         }
 
         try {
-            return fetchFromEtherscan(address);
+            return new HistoryLoad(fetchFromEtherscan(address), true);
         } catch (RuntimeException ex) {
             if (syntheticFallbackEnabled) {
-                return buildSyntheticHistory(address);
+                return new HistoryLoad(buildSyntheticHistory(address), false);
             }
             throw ex;
         }
@@ -104,27 +187,17 @@ public class WalletHistoryService {
      * Returns -1 if unavailable.
      */
     public long fetchFirstTxTimestamp(String address) {
-        if (apiKeys.isEmpty()) return -1;
-        for (String key : orderedApiKeys()) {
-            try {
-                String url = "https://api.etherscan.io/v2/api"
-                        + "?chainid=" + etherscanChainId
-                        + "&module=account&action=txlist"
-                        + "&address=" + address
-                        + "&startblock=0&endblock=99999999"
-                        + "&page=1&offset=1&sort=asc"
-                        + "&apikey=" + key;
-                Map<String, Object> resp = restTemplate.getForObject(url, Map.class);
-                if (resp == null) continue;
-                Object resultObj = resp.get("result");
-                if ("1".equals(str(resp.get("status"))) && resultObj instanceof List<?> rawList && !((List<?>) rawList).isEmpty()) {
-                    @SuppressWarnings("unchecked")
-                    Map<String, Object> first = (Map<String, Object>) ((List<?>) rawList).get(0);
-                    long ts = parseLong(first.get("timeStamp"));
-                    if (ts > 0) return ts;
-                }
-            } catch (Exception ignored) {}
-        }
+        if (!etherscan.isConfigured()) return -1;
+        try {
+            EtherscanGateway.Envelope<List<TxRecord>> resp = etherscan.getStreaming("module=account&action=txlist"
+                    + "&address=" + address
+                    + "&startblock=0&endblock=99999999"
+                    + "&page=1&offset=1&sort=asc", this::readTransactions);
+            if ("1".equals(resp.status()) && resp.result() != null && !resp.result().isEmpty()) {
+                long ts = resp.result().get(0).getTimestamp();
+                if (ts > 0) return ts;
+            }
+        } catch (Exception ignored) {}
         return -1;
     }
 
@@ -134,27 +207,31 @@ public class WalletHistoryService {
      * Returns -1 if unavailable.
      */
     public long fetchTotalTxCount(String address) {
-        if (apiKeys.isEmpty()) return -1;
-        for (String key : orderedApiKeys()) {
-            try {
-                String url = "https://api.etherscan.io/v2/api"
-                        + "?chainid=" + etherscanChainId
-                        + "&module=proxy&action=eth_getTransactionCount"
-                        + "&address=" + address
-                        + "&tag=latest"
-                        + "&apikey=" + key;
-                Map<String, Object> resp = restTemplate.getForObject(url, Map.class);
-                if (resp == null) continue;
-                String hexResult = str(resp.get("result"));
-                if (hexResult != null && hexResult.startsWith("0x")) {
-                    long count = Long.parseLong(hexResult.substring(2), 16);
-                    if (count >= 0) return count;
-                }
-            } catch (Exception ignored) {}
-        }
+        if (!etherscan.isConfigured()) return -1;
+        try {
+            Map<String, Object> resp = etherscan.get("module=proxy&action=eth_getTransactionCount"
+                    + "&address=" + address
+                    + "&tag=latest");
+            String hexResult = str(resp.get("result"));
+            if (hexResult.startsWith("0x")) {
+                long count = Long.parseLong(hexResult.substring(2), 16);
+                if (count >= 0) return count;
+            }
+        } catch (Exception ignored) {}
         return -1;
     }
 
+    /**
+     * Features for a fetched snapshot: the full stored history when full-sync mode produced
+     * them, otherwise the latest window held in the snapshot.
+     */
+    public WalletFeatures deriveFeatures(String address, WalletSnapshot snapshot) {
+        if (snapshot.fullHistoryFeatures() != null) {
+            return snapshot.fullHistoryFeatures();
+        }
+        return deriveFeatures(address, snapshot.transactions(), snapshot.firstTxTimestamp(), snapshot.totalTxCount());
+    }
+
     public WalletFeatures deriveFeatures(String address, List<TxRecord> txs) {
         return deriveFeatures(address, txs, -1, -1);
     }
@@ -168,184 +245,209 @@ public class WalletHistoryService {
      *                          Pass -1 to fall back to list size.
      */
     public WalletFeatures deriveFeatures(String address, List<TxRecord> txs, long firstTxTimestamp, long totalTxCount) {
-        WalletFeatures f = new WalletFeatures();
-        f.setAddress(address);
-
-        if (txs.isEmpty()) {
-            f.setWalletAgeDays(1);
-            f.setCollateralRatio(1.5); // neutral default — avoids triggering the <1.2 denial threshold
-            return f;
+        WalletFeatureAggregator aggregator = WalletFeatureAggregator.unordered(address, txs.size());
+        for (TxRecord tx : txs) {
+            aggregator.accept(tx);
         }
-
-        long minTs = txs.stream().mapToLong(TxRecord::getTimestamp).min().orElse(Instant.now().getEpochSecond());
-        long maxTs = txs.stream().mapToLong(TxRecord::getTimestamp).max().orElse(Instant.now().getEpochSecond());
-        long nowTs = Instant.now().getEpochSecond();
-
-        // Use the true first-tx timestamp if available (more accurate for wallets with >100 txs)
-        long ageBaseTs = (firstTxTimestamp > 0) ? firstTxTimestamp : minTs;
-        long walletAgeDays = Math.max(1, (nowTs - ageBaseTs) / 86400);
-        f.setWalletAgeDays(walletAgeDays);
-
-        // Use true total tx count if available, else fall back to list size
-        long effectiveTxCount = (totalTxCount > 0) ? totalTxCount : txs.size();
-        f.setTxCount((int) Math.min(effectiveTxCount, Integer.MAX_VALUE));
-        // Use true first-tx timestamp for firstSeenDate (same source as walletAgeDays)
-        long firstSeenTs = (firstTxTimestamp > 0) ? firstTxTimestamp : minTs;
-        f.setFirstSeenDate(LocalDate.ofInstant(Instant.ofEpochSecond(firstSeenTs), ZoneOffset.UTC).format(DATE_FMT));
-        f.setLastSeenDate(LocalDate.ofInstant(Instant.ofEpochSecond(maxTs), ZoneOffset.UTC).format(DATE_FMT));
-
-        double[] values = txs.stream().mapToDouble(TxRecord::getValueEth).toArray();
-        double avg = Arrays.stream(values).average().orElse(0);
-        double max = Arrays.stream(values).max().orElse(0);
-        double variance = Arrays.stream(values).map(v -> (v - avg) * (v - avg)).average().orElse(0);
-        double totalVolume = Arrays.stream(values).sum();
-
-        f.setAvgTxValue(avg);
-        f.setMaxSingleTxEth(max);
-        f.setTxVariance(Math.sqrt(variance));
-        f.setTotalVolumeEth(totalVolume);
-
-        long incoming = txs.stream().filter(t -> t.getTo() != null && t.getTo().equalsIgnoreCase(address)).count();
-        long outgoing = txs.stream().filter(t -> t.getFrom() != null && t.getFrom().equalsIgnoreCase(address)).count();
-        long totalDirectional = incoming + outgoing;
-        f.setIncomingOutgoingRatio(totalDirectional == 0 ? 0.0 : (double) incoming / totalDirectional);
-
-        Set<String> contracts = txs.stream()
-                .filter(TxRecord::isContract)
-                .map(t -> t.getTo() != null ? t.getTo().toLowerCase(Locale.ROOT) : "")
-                .filter(s -> !s.isEmpty())
-                .collect(Collectors.toSet());
-        f.setUniqueContracts(contracts.size());
-
-        Set<String> protocolsUsed = txs.stream()
-                .map(TxRecord::getProtocol)
-                .filter(p -> p != null && !p.equals("Unknown") && !p.equals("ETH Transfer"))
-                .collect(Collectors.toSet());
-        f.setDefiProtocolCount(protocolsUsed.size());
-        f.setKnownProtocols(new ArrayList<>(protocolsUsed));
-
-        f.setFlashLoanCount((int) txs.stream().filter(t -> "FLASH_LOAN".equals(t.getRiskFlag())).count());
-        f.setLiquidationEvents((int) txs.stream().filter(t -> "LIQUIDATION".equals(t.getRiskFlag())).count());
-        f.setNftTransactionCount((int) txs.stream().filter(t -> "NFT".equals(t.getRiskFlag())).count());
-        f.setCrossChainCount(estimateCrossChainCount(txs));
-        f.setDormantPeriodDays(computeMaxDormantDays(txs));
-
-        double collateral = 1.5 + (protocolsUsed.size() * 0.15) - (f.getFlashLoanCount() * 0.3)
-                - (f.getLiquidationEvents() * 0.5);
-        f.setCollateralRatio(Math.max(0.1, Math.min(4.0, collateral)));
-
-        long rugExposure = txs.stream().filter(t -> "RUGPULL".equals(t.getRiskFlag())).count();
-        f.setRugpullExposureScore(Math.min(1.0, (double) rugExposure / Math.max(1, txs.size())));
-        return f;
+        return aggregator.toFeatures(firstTxTimestamp, totalTxCount);
     }
 
+    /**
+     * First sight of a wallet downloads the latest window and seeds the local store with it.
+     * After that only blocks above the stored range are requested, and the window is served from
+     * the store. If the delta request fails the stored copy is returned instead.
+     * In full-sync mode each sync also backfills older history downward from the stored range
+     * within the sync budget, newest first, until it reaches block 0; that includes wallets
+     * first seeded before full sync was turned on.
+     */
     private List<TxRecord> fetchFromEtherscan(String address) {
-        String lastError = "Unknown Etherscan error";
-        for (String key : orderedApiKeys()) {
-            AttemptResult attempt = attemptFetch(address, key);
-            if (attempt.type == AttemptType.SUCCESS) {
-                return attempt.records;
-            }
-            if (attempt.type == AttemptType.NO_TRANSACTIONS) {
+        SyncBudget budget = new SyncBudget(maxSyncTransactions, syncTimeBudgetMs);
+        Optional<WalletTxStoreService.SyncedRange> synced = txStore.syncedRange(etherscanChainId, address);
+        if (synced.isEmpty()) {
+            AttemptResult initial = fetchPage(address, 0, LATEST_BLOCK, HISTORY_WINDOW, "desc");
+            if (initial.type == AttemptType.NO_TRANSACTIONS) {
                 return List.of();
             }
-            lastError = attempt.error;
-        }
-
-        if (syntheticFallbackEnabled) {
-            return buildSyntheticHistory(address);
+            long oldest = storeOlderPage(address, initial.records, HISTORY_WINDOW, maxBlock(initial.records));
+            if (fullHistoryEnabled && oldest > 0) {
+                backfill(address, oldest, budget);
+            }
+            return initial.records;
         }
-        throw new IllegalStateException("Unable to fetch Etherscan history: " + lastError);
-    }
 
-    private List<String> orderedApiKeys() {
-        if (apiKeys.isEmpty()) {
-            return List.of("");
-        }
-        int start = Math.floorMod(keyIndex.getAndIncrement(), apiKeys.size());
-        List<String> ordered = new ArrayList<>(apiKeys.size());
-        for (int i = 0; i < apiKeys.size(); i++) {
-            ordered.add(apiKeys.get((start + i) % apiKeys.size()));
+        try {
+            syncDelta(address, synced.get().lastSyncedBlock() + 1, budget);
+            if (fullHistoryEnabled && !synced.get().complete()) {
+                backfill(address, synced.get().oldestSyncedBlock(), budget);
+            }
+        } catch (RuntimeException ex) {
+            log.warn("Delta sync failed for {} — serving stored history: {}", address, ex.getMessage());
         }
-        return ordered;
+        return txStore.latest(etherscanChainId, address, HISTORY_WINDOW);
     }
 
-    @SuppressWarnings("unchecked")
-    private AttemptResult attemptFetch(String address, String key) {
-        try {
-            String url = "https://api.etherscan.io/v2/api"
-                    + "?chainid=" + etherscanChainId
-                    + "&module=account&action=txlist"
-                    + "&address=" + address
-                    + "&startblock=0&endblock=99999999"
-                    + "&page=1&offset=100&sort=desc"
-                    + "&apikey=" + key;
-
-            Map<String, Object> resp = restTemplate.getForObject(url, Map.class);
-            if (resp == null) {
-                return AttemptResult.retry("Empty Etherscan response");
+    /**
+     * Walks blocks from {@code fromBlock} in ascending pages and appends them to the store.
+     * A full page may end part-way through a block, so that trailing block is re-read as the
+     * start of the next page rather than being marked as synced.
+     * Stops once the transaction or time budget is spent; the next sync resumes from the marker.
+     */
+    private void syncDelta(String address, long fromBlock, SyncBudget budget) {
+        int maxPages = fullHistoryEnabled ? Integer.MAX_VALUE : MAX_DELTA_PAGES;
+        long cursor = fromBlock;
+        for (int page = 0; page < maxPages && budget.remains(); page++) {
+            AttemptResult attempt = fetchPage(address, cursor, LATEST_BLOCK, DELTA_PAGE_SIZE, "asc");
+            if (attempt.type == AttemptType.NO_TRANSACTIONS || attempt.records.isEmpty()) {
+                return;
             }
 
-            String status = str(resp.get("status"));
-            Object resultObj = resp.get("result");
-            String message = str(resp.get("message"));
-            String resultText = resultObj instanceof String ? (String) resultObj : "";
-
-            if ("1".equals(status) && resultObj instanceof List<?> rawList) {
-                List<Map<String, Object>> rawTxs = (List<Map<String, Object>>) rawList;
-                return AttemptResult.success(parseTransactions(rawTxs));
+            List<TxRecord> records = attempt.records;
+            budget.spend(records.size());
+            long boundary = maxBlock(records);
+            if (records.size() < DELTA_PAGE_SIZE) {
+                txStore.store(etherscanChainId, address, records, cursor, boundary);
+                return;
             }
 
-            String normalized = (message + " " + resultText).toLowerCase(Locale.ROOT);
-            if (normalized.contains("no transactions found")) {
-                return AttemptResult.noTransactions();
+            List<TxRecord> complete = records.stream().filter(t -> t.getBlockNumber() < boundary).toList();
+            if (complete.isEmpty()) {
+                // A whole page inside a single block: accept it so the cursor still moves.
+                txStore.store(etherscanChainId, address, records, cursor, boundary);
+                cursor = boundary + 1;
+            } else {
+                txStore.store(etherscanChainId, address, complete, cursor, boundary - 1);
+                cursor = boundary;
             }
+        }
+    }
 
-            if (isRetryable(normalized)) {
-                return AttemptResult.retry("Etherscan retryable response: " + message + " " + resultText);
+    /**
+     * Walks blocks below {@code belowBlock} in descending pages and adds them to the store, so the
+     * most recent history is always the part that is present. Stops at block 0 or once the budget
+     * is spent; the next sync resumes from the stored range.
+     */
+    private void backfill(String address, long belowBlock, SyncBudget budget) {
+        long oldest = belowBlock;
+        while (oldest > 0 && budget.remains()) {
+            AttemptResult attempt = fetchPage(address, 0, oldest - 1, DELTA_PAGE_SIZE, "desc");
+            if (attempt.type == AttemptType.NO_TRANSACTIONS || attempt.records.isEmpty()) {
+                txStore.store(etherscanChainId, address, List.of(), 0, oldest - 1);
+                return;
             }
+            budget.spend(attempt.records.size());
+            oldest = storeOlderPage(address, attempt.records, DELTA_PAGE_SIZE, oldest - 1);
+        }
+    }
 
-            return AttemptResult.retry("Etherscan non-success response: " + message + " " + resultText);
-        } catch (Exception ex) {
-            return AttemptResult.retry("Etherscan request failed: " + ex.getMessage());
+    /**
+     * Stores a descending page that covers blocks up to {@code throughBlock} and returns the
+     * oldest block it completes. A short page reaches back to block 0; a full page may stop
+     * part-way through its oldest block, which is then left for the next page.
+     */
+    private long storeOlderPage(String address, List<TxRecord> records, int pageSize, long throughBlock) {
+        if (records.size() < pageSize) {
+            txStore.store(etherscanChainId, address, records, 0, throughBlock);
+            return 0;
+        }
+        long boundary = minBlock(records);
+        List<TxRecord> complete = records.stream().filter(t -> t.getBlockNumber() > boundary).toList();
+        if (complete.isEmpty()) {
+            // A whole page inside a single block: accept it so the cursor still moves.
+            txStore.store(etherscanChainId, address, records, boundary, throughBlock);
+            return boundary;
         }
+        txStore.store(etherscanChainId, address, complete, boundary + 1, throughBlock);
+        return boundary + 1;
     }
 
-    private boolean isRetryable(String message) {
-        return message.contains("rate limit")
-                || message.contains("max rate limit")
-                || message.contains("invalid api key")
-                || message.contains("too many invalid api key")
-                || message.contains("temporarily unavailable")
-                || message.contains("timeout");
+    /**
+     * One txlist page. Key rotation and rate limiting happen inside the gateway; a reply that is
+     * neither a transaction list nor "no transactions found" is treated as a failed fetch.
+     */
+    private AttemptResult fetchPage(String address, long startBlock, long endBlock, int offset, String sort) {
+        EtherscanGateway.Envelope<List<TxRecord>> resp = etherscan.getStreaming("module=account&action=txlist"
+                + "&address=" + address
+                + "&startblock=" + startBlock + "&endblock=" + endBlock
+                + "&page=1&offset=" + offset + "&sort=" + sort, this::readTransactions);
+
+        if ("1".equals(resp.status()) && resp.result() != null) {
+            return AttemptResult.success(resp.result());
+        }
+
+        String normalized = (resp.message() + " " + resp.resultText()).toLowerCase(Locale.ROOT);
+        if (normalized.contains("no transactions found")) {
+            return AttemptResult.noTransactions();
+        }
+        throw new IllegalStateException("Unable to fetch Etherscan history: Etherscan non-success response: "
+                + resp.message() + " " + resp.resultText());
     }
 
-    private List<TxRecord> parseTransactions(List<Map<String, Object>> rawTxs) {
-        List<TxRecord> records = new ArrayList<>(rawTxs.size());
-        for (Map<String, Object> raw : rawTxs) {
-            TxRecord rec = new TxRecord();
-            rec.setHash(str(raw.get("hash")));
-            rec.setBlockNumber(parseLong(raw.get("blockNumber")));
-            rec.setTimestamp(parseLong(raw.get("timeStamp")));
-            rec.setFrom(str(raw.get("from")));
-            rec.setTo(str(raw.get("to")));
+    private static long maxBlock(List<TxRecord> records) {
+        long max = 0;
+        for (TxRecord record : records) {
+            max = Math.max(max, record.getBlockNumber());
+        }
+        return max;
+    }
 
-            String weiStr = str(raw.get("value"));
-            try {
-                BigDecimal wei = new BigDecimal(weiStr);
-                rec.setValueEth(wei.multiply(BigDecimal.valueOf(WEI_TO_ETH)).doubleValue());
-            } catch (Exception ex) {
-                rec.setValueEth(0.0);
+    private static long minBlock(List<TxRecord> records) {
+        long min = Long.MAX_VALUE;
+        for (TxRecord record : records) {
+            min = Math.min(min, record.getBlockNumber());
+        }
+        return min;
+    }
+
+    /**
+     * Decodes a txlist result array straight into TxRecords. Numeric fields and the wei value
+     * are parsed from the parser's character buffer, only the 4-byte selector of {@code input}
+     * is copied out, and fields the features never use are skipped without being materialized.
+     */
+    private List<TxRecord> readTransactions(JsonParser parser) throws IOException {
+        List<TxRecord> records = new ArrayList<>();
+        while (parser.nextToken() == JsonToken.START_OBJECT) {
+            TxRecord rec = new TxRecord();
+            rec.setHash("");
+            rec.setFrom("");
+            rec.setTo("");
+            boolean hasContractAddress = false;
+            boolean hasMethodInput = false;
+            String methodId = "0x";
+
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                JsonToken value = parser.nextToken();
+                if (value != JsonToken.VALUE_STRING) {
+                    parser.skipChildren();
+                    continue;
+                }
+                switch (field) {
+                    case "hash" -> rec.setHash(parser.getText());
+                    case "blockNumber" -> rec.setBlockNumber(parseDigits(
+                            parser.getTextCharacters(), parser.getTextOffset(), parser.getTextLength()));
+                    case "timeStamp" -> rec.setTimestamp(parseDigits(
+                            parser.getTextCharacters(), parser.getTextOffset(), parser.getTextLength()));
+                    case "from" -> rec.setFrom(parser.getText());
+                    case "to" -> rec.setTo(parser.getText());
+                    case "value" -> rec.setValueEth(weiToEth(
+                            parser.getTextCharacters(), parser.getTextOffset(), parser.getTextLength()));
+                    case "contractAddress" -> hasContractAddress = isPresentHex(
+                            parser.getTextCharacters(), parser.getTextOffset(), parser.getTextLength());
+                    case "input" -> {
+                        char[] chars = parser.getTextCharacters();
+                        int offset = parser.getTextOffset();
+                        int length = parser.getTextLength();
+                        hasMethodInput = isPresentHex(chars, offset, length);
+                        if (length >= 10) {
+                            methodId = new String(chars, offset, 10).toLowerCase(Locale.ROOT);
+                        }
+                    }
+                    default -> { }
+                }
             }
 
-            String contractAddress = str(raw.get("contractAddress"));
-            String input = str(raw.get("input"));
-            boolean hasContractAddress = !contractAddress.isBlank() && !"0x".equalsIgnoreCase(contractAddress);
-            boolean hasMethodInput = !input.isBlank() && !"0x".equals(input);
             boolean isContract = hasContractAddress || hasMethodInput;
             rec.setContract(isContract);
-
-            String methodId = input.length() >= 10 ? input.substring(0, 10).toLowerCase(Locale.ROOT) : "0x";
             rec.setMethodId(methodId);
 
             String toAddr = rec.getTo() != null ? rec.getTo().toLowerCase(Locale.ROOT) : "";
@@ -356,6 +458,69 @@ public class WalletHistoryService {
         return records;
     }
 
+    /** Non-blank and not the bare {@code 0x} placeholder (case-insensitive). */
+    private static boolean isPresentHex(char[] chars, int offset, int length) {
+        int start = offset;
+        int end = offset + length;
+        while (start < end && Character.isWhitespace(chars[start])) start++;
+        while (end > start && Character.isWhitespace(chars[end - 1])) end--;
+        if (start == end) {
+            return false;
+        }
+        return !(end - start == 2 && chars[start] == '0' && (chars[start + 1] == 'x' || chars[start + 1] == 'X'));
+    }
+
+    private static long parseDigits(char[] chars, int offset, int length) {
+        if (length == 0 || length > 18) {
+            return 0L;
+        }
+        long value = 0;
+        for (int i = offset; i < offset + length; i++) {
+            char c = chars[i];
+            if (c < '0' || c > '9') {
+                return 0L;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+
+    /**
+     * Fixed-point wei -> ETH: the last 18 digits are the fractional part and everything before
+     * them the whole-ETH part, each parsed as a long. Values wider than 36 digits (far beyond
+     * total ETH supply) fall back to BigDecimal. Malformed values map to 0, as before.
+     */
+    static double weiToEth(char[] chars, int offset, int length) {
+        if (length == 0) {
+            return 0.0;
+        }
+        if (length > 36) {
+            try {
+                return new BigDecimal(chars, offset, length).movePointLeft(18).doubleValue();
+            } catch (NumberFormatException ex) {
+                return 0.0;
+            }
+        }
+        int split = Math.max(0, length - 18);
+        long whole = 0;
+        for (int i = offset; i < offset + split; i++) {
+            char c = chars[i];
+            if (c < '0' || c > '9') {
+                return 0.0;
+            }
+            whole = whole * 10 + (c - '0');
+        }
+        long fraction = 0;
+        for (int i = offset + split; i < offset + length; i++) {
+            char c = chars[i];
+            if (c < '0' || c > '9') {
+                return 0.0;
+            }
+            fraction = fraction * 10 + (c - '0');
+        }
+        return whole + fraction / WEI_PER_ETH;
+    }
+
     private List<TxRecord> buildSyntheticHistory(String address) {
         int hash = Math.abs(address.toLowerCase(Locale.ROOT).hashCode());
         Random rng = new Random(hash);
@@ -417,68 +582,96 @@ public class WalletHistoryService {
         return "NORMAL";
     }
 
-    private int estimateCrossChainCount(List<TxRecord> txs) {
-        long[] timestamps = txs.stream().mapToLong(TxRecord::getTimestamp).sorted().toArray();
-        int count = 0;
-        for (int i = 1; i < timestamps.length; i++) {
-            if ((timestamps[i] - timestamps[i - 1]) > 14L * 86400) {
-                count++;
-            }
-        }
-        return Math.min(count, 10);
+    private static String str(Object o) {
+        return o != null ? o.toString() : "";
     }
 
-    private double computeMaxDormantDays(List<TxRecord> txs) {
-        long[] timestamps = txs.stream().mapToLong(TxRecord::getTimestamp).sorted().toArray();
-        double maxGap = 0;
-        for (int i = 1; i < timestamps.length; i++) {
-            double gap = (timestamps[i] - timestamps[i - 1]) / 86400.0;
-            if (gap > maxGap) {
-                maxGap = gap;
-            }
+    /**
+     * @param transactions        latest window, newest first
+     * @param fullHistoryFeatures features over the whole stored history in full-sync mode, else null
+     * @param synthetic           history was generated by the synthetic fallback, not fetched
+     */
+    public record WalletSnapshot(
+            List<TxRecord> transactions,
+            long firstTxTimestamp,
+            long totalTxCount,
+            WalletFeatures fullHistoryFeatures,
+            boolean synthetic
+    ) {}
+
+    private record HistoryLoad(List<TxRecord> records, boolean stored) {}
+
+    private record SnapshotKey(long chainId, String address) {}
+
+    /**
+     * Wallets with no transactions expire sooner so a freshly funded wallet is picked up quickly.
+     * So do snapshots where the first-tx or nonce lookup failed (-1), so they are retried soon.
+     */
+    private static final class SnapshotExpiry implements Expiry<SnapshotKey, WalletSnapshot> {
+        private final long ttlNanos;
+        private final long negativeTtlNanos;
+
+        private SnapshotExpiry(Duration ttl, Duration negativeTtl) {
+            this.ttlNanos = ttl.toNanos();
+            this.negativeTtlNanos = negativeTtl.toNanos();
         }
-        return maxGap;
-    }
 
-    private static String str(Object o) {
-        return o != null ? o.toString() : "";
+        @Override
+        public long expireAfterCreate(SnapshotKey key, WalletSnapshot value, long currentTime) {
+            boolean degraded = value.firstTxTimestamp() < 0 || value.totalTxCount() < 0;
+            return value.transactions().isEmpty() || degraded ? negativeTtlNanos : ttlNanos;
+        }
+
+        @Override
+        public long expireAfterUpdate(SnapshotKey key, WalletSnapshot value, long currentTime, long currentDuration) {
+            return expireAfterCreate(key, value, currentTime);
+        }
+
+        @Override
+        public long expireAfterRead(SnapshotKey key, WalletSnapshot value, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
     }
 
-    private static long parseLong(Object o) {
-        try {
-            return Long.parseLong(str(o));
-        } catch (Exception ex) {
-            return 0L;
+    /** Transaction and time allowance shared by the delta sync and the backfill of one fetch. */
+    private static final class SyncBudget {
+        private final long deadline;
+        private long transactionsLeft;
+
+        private SyncBudget(long maxTransactions, long timeBudgetMs) {
+            this.deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeBudgetMs);
+            this.transactionsLeft = maxTransactions;
+        }
+
+        private boolean remains() {
+            return transactionsLeft > 0 && System.nanoTime() < deadline;
+        }
+
+        private void spend(int transactions) {
+            transactionsLeft -= transactions;
         }
     }
 
     private enum AttemptType {
         SUCCESS,
-        NO_TRANSACTIONS,
-        RETRY
+        NO_TRANSACTIONS
     }
 
     private static final class AttemptResult {
         private final AttemptType type;
         private final List<TxRecord> records;
-        private final String error;
 
-        private AttemptResult(AttemptType type, List<TxRecord> records, String error) {
+        private AttemptResult(AttemptType type, List<TxRecord> records) {
             this.type = type;
             this.records = records;
-            this.error = error;
         }
 
         private static AttemptResult success(List<TxRecord> records) {
-            return new AttemptResult(AttemptType.SUCCESS, records, "");
+            return new AttemptResult(AttemptType.SUCCESS, records);
         }
 
         private static AttemptResult noTransactions() {
-            return new AttemptResult(AttemptType.NO_TRANSACTIONS, Collections.emptyList(), "");
-        }
-
-        private static AttemptResult retry(String error) {
-            return new AttemptResult(AttemptType.RETRY, Collections.emptyList(), error);
+            return new AttemptResult(AttemptType.NO_TRANSACTIONS, Collections.emptyList());
         }
     }
 }
\ No newline at end of file
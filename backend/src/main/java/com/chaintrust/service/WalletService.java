@@ -1,10 +1,9 @@
 package com.chaintrust.service;
 
-import com.chaintrust.model.TxRecord;
 import com.chaintrust.model.WalletFeatures;
 import org.springframework.stereotype.Service;
 
-import java.util.List;
+import java.util.Locale;
 import java.util.regex.Pattern;
 
 @Service
@@ -13,6 +12,7 @@ public class WalletService {
     private static final Pattern ETH_ADDRESS = Pattern.compile("^0x[a-fA-F0-9]{40}$");
 
     private final WalletHistoryService historyService;
+    private final SingleFlight<String, WalletFeatures> featureFlights = new SingleFlight<>();
 
     public WalletService(WalletHistoryService historyService) {
         this.historyService = historyService;
@@ -20,10 +20,10 @@ public class WalletService {
 
     public WalletFeatures extractFeatures(String address) {
         requireValidAddress(address);
-        List<TxRecord> txs = historyService.fetchHistory(address);
-        long firstTxTs  = historyService.fetchFirstTxTimestamp(address);
-        long totalTxCnt = historyService.fetchTotalTxCount(address);
-        return historyService.deriveFeatures(address, txs, firstTxTs, totalTxCnt);
+        return featureFlights.execute(address.toLowerCase(Locale.ROOT), () -> {
+            WalletHistoryService.WalletSnapshot snapshot = historyService.fetchSnapshot(address);
+            return historyService.deriveFeatures(address, snapshot);
+        });
     }
 
     public void requireValidAddress(String address) {
@@ -0,0 +1,198 @@
+package com.chaintrust.service;
+
+import com.chaintrust.model.TxRecord;
+import com.chaintrust.model.WalletSyncStateEntity;
+import com.chaintrust.model.WalletTransactionEntity;
+import com.chaintrust.repository.WalletSyncStateRepository;
+import com.chaintrust.repository.WalletTransactionRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+/**
+ * Local copy of each wallet's Etherscan history plus the block range already synced, so later
+ * fetches only need to ask for blocks above it (new activity) or below it (older history that
+ * has not been backfilled yet).
+ */
+@Service
+public class WalletTxStoreService {
+
+    private static final int FEATURE_PAGE_SIZE = 2000;
+
+    private final WalletTransactionRepository transactionRepository;
+    private final WalletSyncStateRepository syncStateRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectMapper objectMapper;
+
+    public WalletTxStoreService(
+            WalletTransactionRepository transactionRepository,
+            WalletSyncStateRepository syncStateRepository,
+            PlatformTransactionManager transactionManager,
+            ObjectMapper objectMapper) {
+        this.transactionRepository = transactionRepository;
+        this.syncStateRepository = syncStateRepository;
+        this.objectMapper = objectMapper;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    /** Which blocks are stored for the wallet, or empty if it has never been synced. */
+    @Transactional(readOnly = true)
+    public Optional<SyncedRange> syncedRange(long chainId, String address) {
+        return syncStateRepository.findByChainIdAndWalletAddress(chainId, normalize(address))
+                .map(state -> new SyncedRange(state.getOldestSyncedBlock(), state.getLastSyncedBlock()));
+    }
+
+    /**
+     * Full-history totals, once every transaction of the wallet is stored. Empty while the
+     * history is still being backfilled, so callers never mistake part of it for the whole.
+     */
+    @Transactional(readOnly = true)
+    public Optional<WalletFeatureAggregator> fullHistory(long chainId, String address) {
+        return syncStateRepository.findByChainIdAndWalletAddress(chainId, normalize(address))
+                .filter(state -> state.getFeatureState() != null)
+                .map(state -> WalletFeatureAggregator.restore(address, readState(state.getFeatureState())));
+    }
+
+    /**
+     * Stores the wallet's transactions in blocks {@code fromBlock..throughBlock}, which must touch
+     * or overlap the range already stored: new blocks above it, older blocks below it, or both on
+     * the first sync. Rows inside the stored range are skipped. When the range reaches block 0 the
+     * full-history totals are built once from the store; after that each new block's rows are added
+     * to them in the same transaction.
+     * <p>
+     * The wallet's sync-state row is locked for the write, so concurrent syncs of one wallet take
+     * turns and cannot insert the same rows twice ((chain, wallet, tx hash) is also unique). When
+     * two first syncs race to create the state row, the loser retries once under the winner's lock.
+     */
+    public void store(long chainId, String address, List<TxRecord> txs, long fromBlock, long throughBlock) {
+        String wallet = normalize(address);
+        try {
+            transactionTemplate.executeWithoutResult(status -> storeLocked(chainId, wallet, txs, fromBlock, throughBlock));
+        } catch (DataIntegrityViolationException concurrentInsert) {
+            // Another sync stored this wallet first; its range now covers what it inserted.
+            transactionTemplate.executeWithoutResult(status -> storeLocked(chainId, wallet, txs, fromBlock, throughBlock));
+        }
+    }
+
+    private void storeLocked(long chainId, String wallet, List<TxRecord> txs, long fromBlock, long throughBlock) {
+        WalletSyncStateEntity state = syncStateRepository.findForUpdate(chainId, wallet).orElse(null);
+        long storedFrom;
+        long storedThrough;
+        if (state == null) {
+            state = new WalletSyncStateEntity();
+            state.setChainId(chainId);
+            state.setWalletAddress(wallet);
+            storedFrom = Long.MAX_VALUE;
+            storedThrough = -1;
+        } else {
+            storedFrom = state.getOldestSyncedBlock();
+            storedThrough = state.getLastSyncedBlock();
+        }
+
+        List<TxRecord> added = new ArrayList<>(txs.size());
+        for (TxRecord tx : txs) {
+            long block = tx.getBlockNumber();
+            if (block >= fromBlock && block <= throughBlock && (block < storedFrom || block > storedThrough)) {
+                added.add(tx);
+            }
+        }
+        added.sort(Comparator.comparingLong(TxRecord::getBlockNumber).thenComparingLong(TxRecord::getTimestamp));
+        transactionRepository.saveAll(added.stream().map(tx -> WalletTransactionEntity.from(chainId, wallet, tx)).toList());
+
+        long oldest = Math.min(storedFrom, fromBlock);
+        state.setOldestSyncedBlock(oldest);
+        state.setLastSyncedBlock(Math.max(storedThrough, throughBlock));
+        state.setStoredTxCount(state.getStoredTxCount() + added.size());
+        state.setSyncedAt(Instant.now());
+        if (state.getFeatureState() != null) {
+            WalletFeatureAggregator aggregator = WalletFeatureAggregator.restore(wallet, readState(state.getFeatureState()));
+            added.forEach(aggregator::accept);
+            state.setFeatureState(writeState(aggregator.state()));
+        } else if (oldest == 0) {
+            transactionRepository.flush();
+            WalletFeatureAggregator aggregator = WalletFeatureAggregator.ordered(wallet);
+            forEachAscending(chainId, wallet, FEATURE_PAGE_SIZE, aggregator::accept);
+            state.setFeatureState(writeState(aggregator.state()));
+        }
+        syncStateRepository.save(state);
+    }
+
+    private WalletFeatureAggregator.State readState(String json) {
+        try {
+            return objectMapper.readValue(json, WalletFeatureAggregator.State.class);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Unreadable wallet feature state", e);
+        }
+    }
+
+    private String writeState(WalletFeatureAggregator.State state) {
+        try {
+            return objectMapper.writeValueAsString(state);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Unable to save wallet feature state", e);
+        }
+    }
+
+    /**
+     * Most recent stored transactions, newest first (same order as Etherscan sort=desc).
+     */
+    @Transactional(readOnly = true)
+    public List<TxRecord> latest(long chainId, String address, int limit) {
+        return transactionRepository
+                .findByChainIdAndWalletAddressOrderByBlockNumberDescTimestampDesc(
+                        chainId, normalize(address), PageRequest.of(0, Math.max(1, limit)))
+                .stream()
+                .map(WalletTransactionEntity::toTxRecord)
+                .toList();
+    }
+
+    /**
+     * Streams every stored transaction in ascending block order using keyset pagination.
+     * Each page is loaded in its own short read, so only {@code pageSize} rows are held at once.
+     */
+    public long forEachAscending(long chainId, String address, int pageSize, Consumer<TxRecord> consumer) {
+        String wallet = normalize(address);
+        PageRequest page = PageRequest.of(0, Math.max(1, pageSize));
+        long afterBlock = -1;
+        long afterId = 0;
+        long visited = 0;
+        while (true) {
+            List<WalletTransactionEntity> rows = transactionRepository.findPageAfter(chainId, wallet, afterBlock, afterId, page);
+            for (WalletTransactionEntity row : rows) {
+                consumer.accept(row.toTxRecord());
+            }
+            visited += rows.size();
+            if (rows.size() < page.getPageSize()) {
+                return visited;
+            }
+            WalletTransactionEntity last = rows.get(rows.size() - 1);
+            afterBlock = last.getBlockNumber();
+            afterId = last.getId();
+        }
+    }
+
+    private static String normalize(String address) {
+        return address == null ? "" : address.trim().toLowerCase(Locale.ROOT);
+    }
+
+    /** Every transaction in blocks {@code oldestSyncedBlock..lastSyncedBlock} is stored. */
+    public record SyncedRange(long oldestSyncedBlock, long lastSyncedBlock) {
+
+        public boolean complete() {
+            return oldestSyncedBlock == 0;
+        }
+    }
+}
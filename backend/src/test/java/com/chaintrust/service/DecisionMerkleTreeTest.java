@@ -0,0 +1,153 @@
+package com.chaintrust.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.web3j.utils.Numeric;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Roots and proofs must be what ChainTrust.verifyDecisionProof accepts. The expected vectors
+ * were computed independently with hashlib, following the contract: leaf =
+ * sha256(0x00 || decisionHash), node = sha256(0x01 || min || max), odd node promoted unchanged.
+ * Decision hash i is sha256("decision-i").
+ */
+class DecisionMerkleTreeTest {
+
+    @Test
+    void leafIsPrefixedWithZeroByte() {
+        String decisionHash = decisionHash(0);
+
+        assertEquals("0x40fd369f973e179fc19a618f21b4828c85d6c8d38c9729aeff9ea0f1a8ebdc3e", decisionHash);
+        assertEquals("0xc97ab602a96e5be7ad8e53472d170f3d56473096c784237e5c0242d41cdaaf72",
+                Numeric.toHexString(DecisionMerkleTree.leaf(decisionHash)));
+    }
+
+    @ParameterizedTest
+    @CsvSource({
+            "1, 0xc97ab602a96e5be7ad8e53472d170f3d56473096c784237e5c0242d41cdaaf72",
+            "2, 0x89371f2f7879260e45317f58b4e89c5320f8175fef464fa0b01e084cd68c3483",
+            "3, 0xd3f8b77193cb5a6804b7e9b5e83925954c210972e4e37bf8ff0219e8166025dd",
+            "4, 0x31bfbc1da9fa184e4b56059525f9a36024d13e7ca5d78362089a5fd6f61c5f5f",
+            "5, 0xff9b73fa169aa26b42587ec7c287bdd5d5f6c753f47b622643f07f59304580ee",
+            "7, 0xce24a5ee2d1b01b7bf1b599d783862187036966227aeffa4c496eb6387c99b31",
+            "8, 0x447d7307c922385de5b3dcfc3807f91f868353119469d7fad4ff91d008f1ac38"
+    })
+    void rootMatchesContractHashing(int leaves, String expectedRoot) {
+        assertEquals(expectedRoot, Numeric.toHexString(DecisionMerkleTree.root(decisionHashes(leaves))));
+    }
+
+    @Test
+    void singleLeafHasEmptyProof() {
+        assertTrue(DecisionMerkleTree.proof(decisionHashes(1), 0).isEmpty());
+    }
+
+    @ParameterizedTest
+    @CsvSource(delimiter = '|', value = {
+            "2 | 1 | 0xc97ab602a96e5be7ad8e53472d170f3d56473096c784237e5c0242d41cdaaf72",
+            // The last leaf of an odd level is promoted, so it skips a sibling.
+            "5 | 4 | 0x31bfbc1da9fa184e4b56059525f9a36024d13e7ca5d78362089a5fd6f61c5f5f",
+            "5 | 2 | 0x3a818055ad9356ae1775b27a917efe8d86afbc9a0b2b53a6b9071a1afd4e908f"
+                    + " 0x89371f2f7879260e45317f58b4e89c5320f8175fef464fa0b01e084cd68c3483"
+                    + " 0x7312b30f9fb92070fd84bb0c935aea3fb9e3fcd79cc67d5287f8cd7e922b726f",
+            "7 | 6 | 0xf706c295bf48fc8a0cec22403c12dce4622adde669606520e4b09435121d8cf9"
+                    + " 0x31bfbc1da9fa184e4b56059525f9a36024d13e7ca5d78362089a5fd6f61c5f5f"
+    })
+    void proofMatchesContractHashing(int leaves, int index, String expectedProof) {
+        List<String> proof = DecisionMerkleTree.proof(decisionHashes(leaves), index).stream()
+                .map(Numeric::toHexString)
+                .toList();
+
+        assertEquals(Arrays.asList(expectedProof.split(" ")), proof);
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 2, 3, 4, 5, 6, 7, 8, 9, 16, 17, 33})
+    void everyProofVerifiesLikeTheContract(int leaves) {
+        List<String> hashes = decisionHashes(leaves);
+        byte[] root = DecisionMerkleTree.root(hashes);
+
+        for (int i = 0; i < leaves; i++) {
+            List<byte[]> proof = DecisionMerkleTree.proof(hashes, i);
+            assertTrue(verifyDecisionProof(root, hashes.get(i), proof), "leaf " + i + " of " + leaves);
+            assertFalse(verifyDecisionProof(root, decisionHash(leaves + 1), proof), "foreign leaf at " + i);
+            if (!proof.isEmpty()) {
+                List<byte[]> tampered = new ArrayList<>(proof);
+                byte[] sibling = tampered.get(0).clone();
+                sibling[31] ^= 1;
+                tampered.set(0, sibling);
+                assertFalse(verifyDecisionProof(root, hashes.get(i), tampered), "tampered proof at " + i);
+            }
+        }
+    }
+
+    @Test
+    void internalNodeCannotBeProvenAsDecision() {
+        // Without the 0x00 leaf prefix, the pair under the root would verify as a decision hash.
+        List<String> hashes = decisionHashes(4);
+        byte[] root = DecisionMerkleTree.root(hashes);
+        List<byte[]> proof = DecisionMerkleTree.proof(hashes, 0);
+        byte[] leftPair = node(DecisionMerkleTree.leaf(hashes.get(0)), proof.get(0));
+
+        assertFalse(verifyDecisionProof(root, Numeric.toHexString(leftPair), List.of(proof.get(1))));
+    }
+
+    @Test
+    void rejectsEmptyTreeAndOutOfRangeIndex() {
+        assertThrows(IllegalArgumentException.class, () -> DecisionMerkleTree.root(List.of()));
+        assertThrows(IllegalArgumentException.class, () -> DecisionMerkleTree.proof(decisionHashes(3), 3));
+        assertThrows(IllegalArgumentException.class, () -> DecisionMerkleTree.proof(decisionHashes(3), -1));
+    }
+
+    /** Transcription of ChainTrust.verifyDecisionProof for an anchored root. */
+    private static boolean verifyDecisionProof(byte[] root, String decisionHash, List<byte[]> proof) {
+        byte[] node = sha256(new byte[] {0x00}, Numeric.hexStringToByteArray(decisionHash));
+        for (byte[] sibling : proof) {
+            node = node(node, sibling);
+        }
+        return Arrays.equals(node, root);
+    }
+
+    private static byte[] node(byte[] a, byte[] b) {
+        return Arrays.compareUnsigned(a, b) <= 0
+                ? sha256(new byte[] {0x01}, a, b)
+                : sha256(new byte[] {0x01}, b, a);
+    }
+
+    private static List<String> decisionHashes(int count) {
+        List<String> hashes = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            hashes.add(decisionHash(i));
+        }
+        return hashes;
+    }
+
+    private static String decisionHash(int i) {
+        return Numeric.toHexString(sha256(("decision-" + i).getBytes(StandardCharsets.US_ASCII)));
+    }
+
+    private static byte[] sha256(byte[]... parts) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            for (byte[] part : parts) {
+                digest.update(part);
+            }
+            return digest.digest();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
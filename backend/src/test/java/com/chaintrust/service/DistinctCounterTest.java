@@ -0,0 +1,62 @@
+package com.chaintrust.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DistinctCounterTest {
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    @Test
+    void exactUpToLimitAndCaseInsensitive() {
+        DistinctCounter counter = new DistinctCounter();
+        for (int i = 0; i < DistinctCounter.EXACT_LIMIT; i++) {
+            counter.add(address(i));
+            counter.add(address(i).toUpperCase().replace("0X", "0x"));
+        }
+
+        assertEquals(DistinctCounter.EXACT_LIMIT, counter.count());
+        assertNull(counter.state().registers());
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {DistinctCounter.EXACT_LIMIT + 1, 5_000, 100_000, 1_000_000})
+    void estimatePastLimitStaysClose(int distinct) {
+        DistinctCounter counter = new DistinctCounter();
+        for (int i = 0; i < distinct; i++) {
+            counter.add(address(i));
+            counter.add(address(i));
+        }
+
+        assertEquals(distinct, counter.count(), distinct * 0.05);
+        assertEquals(1 << DistinctCounter.PRECISION, counter.state().registers().length);
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {0, 10, DistinctCounter.EXACT_LIMIT, 50_000})
+    void restoredStateKeepsCounting(int distinct) throws Exception {
+        DistinctCounter counter = new DistinctCounter();
+        for (int i = 0; i < distinct; i++) {
+            counter.add(address(i));
+        }
+        String json = mapper.writeValueAsString(counter.state());
+        DistinctCounter restored = DistinctCounter.restore(mapper.readValue(json, DistinctCounter.State.class));
+
+        assertEquals(counter.count(), restored.count());
+        assertTrue(json.length() < 12_000, "saved state is " + json.length() + " chars");
+        for (int i = 0; i < distinct; i++) {
+            restored.add(address(i));
+        }
+        assertEquals(counter.count(), restored.count());
+    }
+
+    private static String address(int i) {
+        return String.format("0x%040x", i * 2654435761L);
+    }
+}
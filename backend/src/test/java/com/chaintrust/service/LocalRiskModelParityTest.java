@@ -0,0 +1,69 @@
+package com.chaintrust.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+/**
+ * Scores the committed export in src/test/resources/model-parity against the probabilities
+ * recorded next to it by ml-train/export_parity_fixture.py, so a change to the export format
+ * or to {@link LocalRiskModel} that drifts from predict_proba fails here rather than in
+ * production.
+ */
+class LocalRiskModelParityTest {
+
+    private static final double TOLERANCE = 1e-9;
+
+    private static LocalRiskModel model;
+    private static JsonNode expected;
+
+    @BeforeAll
+    static void load() throws IOException {
+        ObjectMapper mapper = new ObjectMapper();
+        model = LocalRiskModel.parse(read(mapper, "model-parity/model.json"));
+        expected = read(mapper, "model-parity/expected.json");
+    }
+
+    @Test
+    void exportUsesTheBackendFeatureOrder() {
+        List<String> recorded = new ArrayList<>();
+        expected.path("features").forEach(name -> recorded.add(name.asText()));
+
+        assertEquals(FeatureService.ML_FEATURES, recorded);
+        assertEquals(FeatureService.ML_FEATURES, model.features());
+    }
+
+    @Test
+    void predictProbabilityMatchesRecordedProbabilities() {
+        JsonNode rows = expected.path("rows");
+        assertFalse(rows.isEmpty());
+
+        for (int i = 0; i < rows.size(); i++) {
+            JsonNode row = rows.get(i);
+            double[] mlVector = new double[FeatureService.ML_FEATURES.size()];
+            for (int f = 0; f < mlVector.length; f++) {
+                mlVector[f] = row.path("values").get(f).asDouble();
+            }
+            double actual = model.predictProbability(model.transform(mlVector));
+            assertEquals(row.path("probability").asDouble(), actual, TOLERANCE, "row " + i);
+        }
+    }
+
+    private static JsonNode read(ObjectMapper mapper, String resource) throws IOException {
+        try (InputStream in = LocalRiskModelParityTest.class.getClassLoader().getResourceAsStream(resource)) {
+            if (in == null) {
+                throw new IOException("Missing test resource " + resource);
+            }
+            return mapper.readTree(in);
+        }
+    }
+}
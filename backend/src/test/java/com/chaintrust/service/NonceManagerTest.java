@@ -0,0 +1,170 @@
+package com.chaintrust.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.web3j.protocol.Web3j;
+import org.web3j.protocol.core.DefaultBlockParameterName;
+import org.web3j.protocol.core.Request;
+import org.web3j.protocol.core.methods.response.EthGetTransactionCount;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class NonceManagerTest {
+
+    private static final String SIGNER = "0xf39fd6e51aad88f6f4ce6ab8827279cfffb92266";
+    private static final Duration GRACE = Duration.ofSeconds(60);
+
+    private Web3j web3j;
+    private final AtomicLong pending = new AtomicLong();
+    private final AtomicLong clock = new AtomicLong();
+    private NonceManager nonces;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() throws IOException {
+        web3j = mock(Web3j.class);
+        Request<?, EthGetTransactionCount> request = mock(Request.class);
+        doReturn(request).when(web3j).ethGetTransactionCount(eq(SIGNER), eq(DefaultBlockParameterName.PENDING));
+        when(request.send()).thenAnswer(invocation -> {
+            EthGetTransactionCount response = new EthGetTransactionCount();
+            response.setResult("0x" + Long.toHexString(pending.get()));
+            return response;
+        });
+        nonces = new NonceManager(web3j, SIGNER, clock::get);
+    }
+
+    @Test
+    void loadsPendingCountOnceThenAllocatesLocally() throws IOException {
+        pending.set(5);
+
+        assertEquals(BigInteger.valueOf(5), nonces.allocate());
+        assertEquals(BigInteger.valueOf(6), nonces.allocate());
+        assertEquals(BigInteger.valueOf(7), nonces.allocate());
+        verify(web3j, times(1)).ethGetTransactionCount(any(), any());
+    }
+
+    @Test
+    void releasedNonceIsHandedOutBeforeNewOnes() throws IOException {
+        pending.set(5);
+        nonces.allocate();
+        BigInteger refused = nonces.allocate();
+        nonces.allocate();
+
+        nonces.release(refused);
+
+        assertEquals(refused, nonces.allocate());
+        assertEquals(BigInteger.valueOf(8), nonces.allocate());
+    }
+
+    @Test
+    void releaseAtOrAboveCounterIsIgnored() throws IOException {
+        pending.set(5);
+        nonces.allocate();
+
+        nonces.release(BigInteger.valueOf(6));
+
+        assertEquals(BigInteger.valueOf(6), nonces.allocate());
+        assertEquals(BigInteger.valueOf(7), nonces.allocate());
+    }
+
+    @Test
+    void nonceTooLowResyncsFromNode() throws IOException {
+        pending.set(5);
+        nonces.allocate();
+        nonces.allocate();
+        nonces.release(BigInteger.valueOf(5));
+        assertTrue(NonceManager.isNonceConflict("Nonce too low. Expected nonce to be 9 but got 6."));
+
+        // Another process signed with the same key; the node is ahead of the local counter.
+        pending.set(9);
+        nonces.resync();
+
+        assertEquals(BigInteger.valueOf(9), nonces.allocate());
+        assertEquals(BigInteger.valueOf(10), nonces.allocate());
+        verify(web3j, times(2)).ethGetTransactionCount(any(), any());
+    }
+
+    @Test
+    void classifiesNodeErrors() {
+        assertTrue(NonceManager.isNonceConflict("nonce has already been used"));
+        assertTrue(NonceManager.isNonceConflict("replacement transaction underpriced"));
+        assertFalse(NonceManager.isNonceConflict("insufficient funds for gas * price + value"));
+        assertFalse(NonceManager.isNonceConflict(null));
+        assertTrue(NonceManager.isAlreadyKnown("already known"));
+        assertFalse(NonceManager.isAlreadyKnown("nonce too low"));
+    }
+
+    @Test
+    void noGapsBeforeFirstAllocation() throws IOException {
+        assertTrue(nonces.takeGaps(GRACE, nonce -> false).isEmpty());
+        verify(web3j, never()).ethGetTransactionCount(any(), any());
+    }
+
+    @Test
+    void releasedNonceBecomesGapOnlyAfterGrace() throws IOException {
+        pending.set(5);
+        nonces.allocate();
+        nonces.allocate();
+        nonces.allocate();
+        // 5 and 7 reached the node; 6 was refused and nothing reused it.
+        nonces.release(BigInteger.valueOf(6));
+        pending.set(6);
+
+        clock.addAndGet(GRACE.toNanos() - 1);
+        assertTrue(nonces.takeGaps(GRACE, nonce -> nonce.longValue() == 7).isEmpty());
+
+        clock.addAndGet(1);
+        assertEquals(List.of(BigInteger.valueOf(6)), nonces.takeGaps(GRACE, nonce -> nonce.longValue() == 7));
+        // Taken gaps are not handed out again.
+        assertEquals(BigInteger.valueOf(8), nonces.allocate());
+    }
+
+    @Test
+    void untrackedPendingNonceBelowCounterIsAGap() throws IOException {
+        pending.set(5);
+        nonces.allocate();
+        nonces.allocate();
+        // The node never got 5 (e.g. the process restarted mid-send) and no job holds it.
+        assertEquals(List.of(BigInteger.valueOf(5)), nonces.takeGaps(GRACE, nonce -> false));
+        assertTrue(nonces.takeGaps(GRACE, nonce -> nonce.longValue() == 5).isEmpty());
+    }
+
+    @Test
+    void releasedNonceTheNodeAlreadyUsedIsDropped() throws IOException {
+        pending.set(5);
+        nonces.allocate();
+        nonces.allocate();
+        nonces.release(BigInteger.valueOf(5));
+        pending.set(7);
+
+        clock.addAndGet(GRACE.toNanos());
+        assertTrue(nonces.takeGaps(GRACE, nonce -> false).isEmpty());
+        assertEquals(BigInteger.valueOf(7), nonces.allocate());
+    }
+
+    @Test
+    void nodeAheadOfCounterResyncs() throws IOException {
+        pending.set(5);
+        nonces.allocate();
+        pending.set(12);
+
+        assertTrue(nonces.takeGaps(GRACE, nonce -> false).isEmpty());
+        assertEquals(BigInteger.valueOf(12), nonces.allocate());
+    }
+}
@@ -0,0 +1,119 @@
+package com.chaintrust.service;
+
+import com.chaintrust.model.TxRecord;
+import com.chaintrust.model.WalletFeatures;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * The multi-stream deriveFeatures that {@link WalletFeatureAggregator} replaced, kept verbatim
+ * as the reference for parity tests and as the baseline in {@link WalletFeatureAggregatorBenchmark}.
+ */
+final class StreamFeatureDerivation {
+
+    private static final DateTimeFormatter DATE_FMT = DateTimeFormatter.ISO_LOCAL_DATE;
+
+    private StreamFeatureDerivation() {
+    }
+
+    static WalletFeatures deriveFeatures(String address, List<TxRecord> txs, long firstTxTimestamp, long totalTxCount) {
+        WalletFeatures f = new WalletFeatures();
+        f.setAddress(address);
+
+        if (txs.isEmpty()) {
+            f.setWalletAgeDays(1);
+            f.setCollateralRatio(1.5);
+            return f;
+        }
+
+        long minTs = txs.stream().mapToLong(TxRecord::getTimestamp).min().orElse(Instant.now().getEpochSecond());
+        long maxTs = txs.stream().mapToLong(TxRecord::getTimestamp).max().orElse(Instant.now().getEpochSecond());
+        long nowTs = Instant.now().getEpochSecond();
+
+        long ageBaseTs = (firstTxTimestamp > 0) ? firstTxTimestamp : minTs;
+        long walletAgeDays = Math.max(1, (nowTs - ageBaseTs) / 86400);
+        f.setWalletAgeDays(walletAgeDays);
+
+        long effectiveTxCount = (totalTxCount > 0) ? totalTxCount : txs.size();
+        f.setTxCount((int) Math.min(effectiveTxCount, Integer.MAX_VALUE));
+        long firstSeenTs = (firstTxTimestamp > 0) ? firstTxTimestamp : minTs;
+        f.setFirstSeenDate(LocalDate.ofInstant(Instant.ofEpochSecond(firstSeenTs), ZoneOffset.UTC).format(DATE_FMT));
+        f.setLastSeenDate(LocalDate.ofInstant(Instant.ofEpochSecond(maxTs), ZoneOffset.UTC).format(DATE_FMT));
+
+        double[] values = txs.stream().mapToDouble(TxRecord::getValueEth).toArray();
+        double avg = Arrays.stream(values).average().orElse(0);
+        double max = Arrays.stream(values).max().orElse(0);
+        double variance = Arrays.stream(values).map(v -> (v - avg) * (v - avg)).average().orElse(0);
+        double totalVolume = Arrays.stream(values).sum();
+
+        f.setAvgTxValue(avg);
+        f.setMaxSingleTxEth(max);
+        f.setTxVariance(Math.sqrt(variance));
+        f.setTotalVolumeEth(totalVolume);
+
+        long incoming = txs.stream().filter(t -> t.getTo() != null && t.getTo().equalsIgnoreCase(address)).count();
+        long outgoing = txs.stream().filter(t -> t.getFrom() != null && t.getFrom().equalsIgnoreCase(address)).count();
+        long totalDirectional = incoming + outgoing;
+        f.setIncomingOutgoingRatio(totalDirectional == 0 ? 0.0 : (double) incoming / totalDirectional);
+
+        Set<String> contracts = txs.stream()
+                .filter(TxRecord::isContract)
+                .map(t -> t.getTo() != null ? t.getTo().toLowerCase(Locale.ROOT) : "")
+                .filter(s -> !s.isEmpty())
+                .collect(Collectors.toSet());
+        f.setUniqueContracts(contracts.size());
+
+        Set<String> protocolsUsed = txs.stream()
+                .map(TxRecord::getProtocol)
+                .filter(p -> p != null && !p.equals("Unknown") && !p.equals("ETH Transfer"))
+                .collect(Collectors.toSet());
+        f.setDefiProtocolCount(protocolsUsed.size());
+        f.setKnownProtocols(new ArrayList<>(protocolsUsed));
+
+        f.setFlashLoanCount((int) txs.stream().filter(t -> "FLASH_LOAN".equals(t.getRiskFlag())).count());
+        f.setLiquidationEvents((int) txs.stream().filter(t -> "LIQUIDATION".equals(t.getRiskFlag())).count());
+        f.setNftTransactionCount((int) txs.stream().filter(t -> "NFT".equals(t.getRiskFlag())).count());
+        f.setCrossChainCount(estimateCrossChainCount(txs));
+        f.setDormantPeriodDays(computeMaxDormantDays(txs));
+
+        double collateral = 1.5 + (protocolsUsed.size() * 0.15) - (f.getFlashLoanCount() * 0.3)
+                - (f.getLiquidationEvents() * 0.5);
+        f.setCollateralRatio(Math.max(0.1, Math.min(4.0, collateral)));
+
+        long rugExposure = txs.stream().filter(t -> "RUGPULL".equals(t.getRiskFlag())).count();
+        f.setRugpullExposureScore(Math.min(1.0, (double) rugExposure / Math.max(1, txs.size())));
+        return f;
+    }
+
+    private static int estimateCrossChainCount(List<TxRecord> txs) {
+        long[] timestamps = txs.stream().mapToLong(TxRecord::getTimestamp).sorted().toArray();
+        int count = 0;
+        for (int i = 1; i < timestamps.length; i++) {
+            if ((timestamps[i] - timestamps[i - 1]) > 14L * 86400) {
+                count++;
+            }
+        }
+        return Math.min(count, 10);
+    }
+
+    private static double computeMaxDormantDays(List<TxRecord> txs) {
+        long[] timestamps = txs.stream().mapToLong(TxRecord::getTimestamp).sorted().toArray();
+        double maxGap = 0;
+        for (int i = 1; i < timestamps.length; i++) {
+            double gap = (timestamps[i] - timestamps[i - 1]) / 86400.0;
+            if (gap > maxGap) {
+                maxGap = gap;
+            }
+        }
+        return maxGap;
+    }
+}
@@ -0,0 +1,54 @@
+package com.chaintrust.service;
+
+import com.chaintrust.model.TxRecord;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Deterministic wallet histories shaped like Etherscan txlist pages: mostly lowercase hex with
+ * some checksummed addresses, a few hundred contracts, protocol and risk-flag mixes, values
+ * spanning dust to whales, and occasional multi-week gaps.
+ */
+final class SyntheticTransactions {
+
+    static final String WALLET = "0x00000000000000000000000000000000000a11ce";
+    private static final String[] PROTOCOLS = {"Uniswap V2", "Uniswap V3", "Aave V2", "Compound", "Curve",
+            "OpenSea", "Unknown", "ETH Transfer"};
+    private static final String[] FLAGS = {"FLASH_LOAN", "LIQUIDATION", "NFT", "RUGPULL"};
+
+    private SyntheticTransactions() {
+    }
+
+    /** {@code count} transactions in ascending timestamp order. */
+    static List<TxRecord> ascending(int count, long seed) {
+        Random random = new Random(seed);
+        List<TxRecord> txs = new ArrayList<>(count);
+        long ts = 1_500_000_000L;
+        for (int i = 0; i < count; i++) {
+            ts += random.nextInt(100) == 0 ? 15L * 86400 + random.nextInt(86400 * 30) : random.nextInt(7200);
+            String counterparty = String.format("0x%040x", random.nextInt(500));
+            if (random.nextInt(10) == 0) {
+                counterparty = "0x" + counterparty.substring(2).toUpperCase();
+            }
+            boolean incoming = random.nextBoolean();
+            String self = random.nextInt(20) == 0 ? WALLET.toUpperCase().replace("0X", "0x") : WALLET;
+            boolean contract = random.nextInt(3) == 0;
+            double value = random.nextInt(50) == 0 ? random.nextDouble() * 5000 : random.nextDouble() * 2;
+            String flag = random.nextInt(25) == 0 ? FLAGS[random.nextInt(FLAGS.length)] : "NORMAL";
+            txs.add(new TxRecord("0x" + Long.toHexString(seed) + Integer.toHexString(i), 10_000_000L + i, ts,
+                    incoming ? counterparty : self, incoming ? self : counterparty, value, contract,
+                    contract ? "0x38ed1739" : "", PROTOCOLS[random.nextInt(PROTOCOLS.length)], flag));
+        }
+        return txs;
+    }
+
+    /** The same transactions in the newest-first, partly shuffled order of a merged fetch. */
+    static List<TxRecord> shuffled(int count, long seed) {
+        List<TxRecord> txs = ascending(count, seed);
+        Collections.shuffle(txs, new Random(seed + 1));
+        return txs;
+    }
+}
@@ -0,0 +1,67 @@
+package com.chaintrust.service;
+
+import com.chaintrust.model.TxRecord;
+import com.chaintrust.model.WalletFeatures;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * deriveFeatures cost for a latest-window list (unordered aggregator), a stored history page
+ * stream (ordered aggregator), and the multi-stream implementation both replaced.
+ * Run with {@code mvn -B -Pjmh test-compile exec:exec -Djmh.args=WalletFeatureAggregatorBenchmark}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class WalletFeatureAggregatorBenchmark {
+
+    @Param({"100", "10000", "1000000"})
+    int size;
+
+    private List<TxRecord> shuffled;
+    private List<TxRecord> ascending;
+
+    @Setup
+    public void setUp() {
+        shuffled = SyntheticTransactions.shuffled(size, size);
+        ascending = SyntheticTransactions.ascending(size, size);
+    }
+
+    @Benchmark
+    public WalletFeatures unordered() {
+        WalletFeatureAggregator aggregator = WalletFeatureAggregator.unordered(SyntheticTransactions.WALLET, shuffled.size());
+        for (TxRecord tx : shuffled) {
+            aggregator.accept(tx);
+        }
+        return aggregator.toFeatures(-1, -1);
+    }
+
+    @Benchmark
+    public WalletFeatures ordered() {
+        WalletFeatureAggregator aggregator = WalletFeatureAggregator.ordered(SyntheticTransactions.WALLET);
+        for (TxRecord tx : ascending) {
+            aggregator.accept(tx);
+        }
+        return aggregator.toFeatures(-1, -1);
+    }
+
+    @Benchmark
+    public WalletFeatures streams() {
+        return StreamFeatureDerivation.deriveFeatures(SyntheticTransactions.WALLET, shuffled, -1, -1);
+    }
+}
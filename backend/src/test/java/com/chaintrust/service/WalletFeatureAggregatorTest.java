@@ -0,0 +1,87 @@
+package com.chaintrust.service;
+
+import com.chaintrust.model.TxRecord;
+import com.chaintrust.model.WalletFeatures;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.util.HashSet;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Parity of the single-pass aggregator (Kahan sum, Welford variance, one shared sort) with the
+ * multi-stream deriveFeatures it replaced, on the sizes {@link WalletFeatureAggregatorBenchmark}
+ * measures.
+ */
+class WalletFeatureAggregatorTest {
+
+    /** Sums and means match to the last bits; variance differs only by Welford vs two-pass rounding. */
+    private static final double RELATIVE_TOLERANCE = 1e-12;
+
+    @ParameterizedTest
+    @ValueSource(ints = {0, 1, 2, 100, 10_000, 1_000_000})
+    void unorderedMatchesStreamImplementation(int size) {
+        List<TxRecord> txs = SyntheticTransactions.shuffled(size, size);
+
+        assertParity(StreamFeatureDerivation.deriveFeatures(SyntheticTransactions.WALLET, txs, -1, -1),
+                aggregate(WalletFeatureAggregator.unordered(SyntheticTransactions.WALLET, txs.size()), txs, -1, -1));
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 100, 10_000})
+    void orderedMatchesStreamImplementation(int size) {
+        List<TxRecord> txs = SyntheticTransactions.ascending(size, size);
+        long firstTx = txs.get(0).getTimestamp() - 86400;
+
+        assertParity(StreamFeatureDerivation.deriveFeatures(SyntheticTransactions.WALLET, txs, firstTx, size * 3L),
+                aggregate(WalletFeatureAggregator.ordered(SyntheticTransactions.WALLET), txs, firstTx, size * 3L));
+    }
+
+    @Test
+    void restoredStateContinuesWhereItStopped() {
+        List<TxRecord> txs = SyntheticTransactions.ascending(10_000, 7);
+        WalletFeatureAggregator first = WalletFeatureAggregator.ordered(SyntheticTransactions.WALLET);
+        txs.subList(0, 6_000).forEach(first::accept);
+        WalletFeatureAggregator resumed = WalletFeatureAggregator.restore(SyntheticTransactions.WALLET, first.state());
+
+        assertParity(StreamFeatureDerivation.deriveFeatures(SyntheticTransactions.WALLET, txs, -1, -1),
+                aggregate(resumed, txs.subList(6_000, txs.size()), -1, -1));
+    }
+
+    private static WalletFeatures aggregate(WalletFeatureAggregator aggregator, List<TxRecord> txs,
+                                            long firstTxTimestamp, long totalTxCount) {
+        txs.forEach(aggregator::accept);
+        return aggregator.toFeatures(firstTxTimestamp, totalTxCount);
+    }
+
+    private static void assertParity(WalletFeatures expected, WalletFeatures actual) {
+        assertEquals(expected.getAddress(), actual.getAddress());
+        assertEquals(expected.getWalletAgeDays(), actual.getWalletAgeDays());
+        assertEquals(expected.getTxCount(), actual.getTxCount());
+        assertEquals(expected.getFirstSeenDate(), actual.getFirstSeenDate());
+        assertEquals(expected.getLastSeenDate(), actual.getLastSeenDate());
+        assertClose(expected.getAvgTxValue(), actual.getAvgTxValue(), "avgTxValue");
+        assertEquals(expected.getMaxSingleTxEth(), actual.getMaxSingleTxEth(), "maxSingleTxEth");
+        assertClose(expected.getTxVariance(), actual.getTxVariance(), "txVariance");
+        assertClose(expected.getTotalVolumeEth(), actual.getTotalVolumeEth(), "totalVolumeEth");
+        assertEquals(expected.getIncomingOutgoingRatio(), actual.getIncomingOutgoingRatio(), "incomingOutgoingRatio");
+        assertEquals(expected.getUniqueContracts(), actual.getUniqueContracts(), "uniqueContracts");
+        assertEquals(expected.getDefiProtocolCount(), actual.getDefiProtocolCount(), "defiProtocolCount");
+        assertEquals(expected.getKnownProtocols() == null ? null : new HashSet<>(expected.getKnownProtocols()),
+                actual.getKnownProtocols() == null ? null : new HashSet<>(actual.getKnownProtocols()), "knownProtocols");
+        assertEquals(expected.getFlashLoanCount(), actual.getFlashLoanCount(), "flashLoanCount");
+        assertEquals(expected.getLiquidationEvents(), actual.getLiquidationEvents(), "liquidationEvents");
+        assertEquals(expected.getNftTransactionCount(), actual.getNftTransactionCount(), "nftTransactionCount");
+        assertEquals(expected.getCrossChainCount(), actual.getCrossChainCount(), "crossChainCount");
+        assertEquals(expected.getDormantPeriodDays(), actual.getDormantPeriodDays(), "dormantPeriodDays");
+        assertEquals(expected.getCollateralRatio(), actual.getCollateralRatio(), "collateralRatio");
+        assertEquals(expected.getRugpullExposureScore(), actual.getRugpullExposureScore(), "rugpullExposureScore");
+    }
+
+    private static void assertClose(double expected, double actual, String feature) {
+        assertEquals(expected, actual, Math.abs(expected) * RELATIVE_TOLERANCE, feature);
+    }
+}
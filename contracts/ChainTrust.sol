@@ -30,6 +30,17 @@ contract ChainTrust {
         string  purpose;
     }
 
+    /// @dev One entry of recordLoanDecisionsBatch; same fields as recordLoanDecision.
+    struct LoanDecisionInput {
+        address    wallet;
+        uint256    amountUsdCents;
+        uint32     riskScoreBps;
+        bool       approved;
+        CreditTier tier;
+        bytes32    decisionHash;
+        string     purpose;
+    }
+
     struct WalletStats {
         uint256 totalLoansApplied;
         uint256 totalLoansApproved;
@@ -48,6 +59,7 @@ contract ChainTrust {
     mapping(address => WalletStats)  public  walletStats;
     mapping(address => bytes32[])    public  riskHashes;
     mapping(address => bool)         public  blacklist;
+    mapping(bytes32 => uint256)      public  decisionRootAnchoredAt;
 
     // â”€â”€ Events â”€â”€â”€â”€â”€â”€â”€â”€â”€â”€â”€â”€â”€â”€â”€â”€â”€â”€â”€â”€â”€â”€â”€â”€â”€â”€â”€â”€â”€â”€â”€â”€â”€â”€â”€â”€â”€â”€â”€â”€â”€â”€â”€â”€â”€â”€â”€â”€â”€â”€â”€â”€â”€â”€â”€â”€â”€â”€â”€â”€â”€
 
@@ -68,6 +80,8 @@ contract ChainTrust {
         address indexed wallet,
         LoanState newState
     );
+    event LoanBatchEntrySkipped(bytes32 indexed decisionHash, address indexed wallet);
+    event DecisionRootAnchored(bytes32 indexed root, uint256 leafCount);
     event RiskStored(address indexed wallet, bytes32 indexed riskHash);
     event BlacklistUpdated(address indexed wallet, bool blacklisted);
 
@@ -119,7 +133,7 @@ contract ChainTrust {
         LoanState state = approved ? LoanState.APPROVED : LoanState.DENIED;
         uint32 trustScoreBps = riskScoreBps <= 10000 ? uint32(10000 - riskScoreBps) : 0;
 
-        LoanRecord memory rec = LoanRecord({
+        _storeLoan(LoanRecord({
             id:            loanId,
             wallet:        wallet,
             amount:        amountUsdCents,
@@ -130,20 +144,62 @@ contract ChainTrust {
             timestamp:     block.timestamp,
             decisionHash:  decisionHash,
             purpose:       purpose
-        });
+        }));
+    }
+
+    /**
+     * @notice Record several loan decisions in one transaction. Entries for blacklisted
+     *         wallets are skipped with LoanBatchEntrySkipped instead of reverting the batch.
+     * @param decisions   Decisions to record, in order
+     * @return firstLoanId Loan id of the first recorded entry; ids are consecutive
+     * @return recorded    Number of entries recorded
+     */
+    function recordLoanDecisionsBatch(LoanDecisionInput[] calldata decisions)
+        external
+        onlyOwner
+        returns (uint256 firstLoanId, uint256 recorded)
+    {
+        uint256 loanId = _nextLoanId;
+        firstLoanId = loanId;
+
+        for (uint256 i = 0; i < decisions.length; i++) {
+            LoanDecisionInput calldata d = decisions[i];
+            if (blacklist[d.wallet]) {
+                emit LoanBatchEntrySkipped(d.decisionHash, d.wallet);
+                continue;
+            }
+            _storeLoan(LoanRecord({
+                id:            loanId,
+                wallet:        d.wallet,
+                amount:        d.amountUsdCents,
+                riskScoreBps:  d.riskScoreBps,
+                trustScoreBps: d.riskScoreBps <= 10000 ? uint32(10000 - d.riskScoreBps) : 0,
+                creditTier:    d.tier,
+                state:         d.approved ? LoanState.APPROVED : LoanState.DENIED,
+                timestamp:     block.timestamp,
+                decisionHash:  d.decisionHash,
+                purpose:       d.purpose
+            }));
+            loanId++;
+        }
 
-        _loanHistory[wallet].push(rec);
-        _loansById[loanId] = rec;
+        _nextLoanId = loanId;
+        recorded = loanId - firstLoanId;
+    }
+
+    function _storeLoan(LoanRecord memory rec) private {
+        _loanHistory[rec.wallet].push(rec);
+        _loansById[rec.id] = rec;
 
-        WalletStats storage stats = walletStats[wallet];
+        WalletStats storage stats = walletStats[rec.wallet];
         stats.totalLoansApplied++;
-        if (approved) {
+        if (rec.state == LoanState.APPROVED) {
             stats.totalLoansApproved++;
-            stats.totalBorrowedUsd += amountUsdCents / 100;
+            stats.totalBorrowedUsd += rec.amount / 100;
         }
 
-        emit LoanApplied(loanId, wallet, amountUsdCents, tier);
-        emit LoanDecided(loanId, wallet, approved, riskScoreBps);
+        emit LoanApplied(rec.id, rec.wallet, rec.amount, rec.creditTier);
+        emit LoanDecided(rec.id, rec.wallet, rec.state == LoanState.APPROVED, rec.riskScoreBps);
     }
 
     /**
@@ -178,6 +234,40 @@ contract ChainTrust {
         emit LoanStateChanged(loanId, rec.wallet, newState);
     }
 
+    // â”€â”€ Decision anchoring â”€â”€â”€â”€â”€â”€â”€â”€â”€â”€â”€â”€â”€â”€â”€â”€â”€â”€â”€â”€â”€â”€â”€â”€â”€â”€â”€â”€â”€â”€â”€â”€â”€â”€â”€â”€â”€â”€â”€â”€â”€â”€â”€â”€â”€â”€â”€â”€â”€
+
+    /**
+     * @notice Commit the Merkle root of an epoch of off-chain decision hashes.
+     *         Anchoring a root again keeps its first timestamp.
+     */
+    function anchorDecisionRoot(bytes32 root, uint256 leafCount) external onlyOwner {
+        require(root != bytes32(0), "ChainTrust: empty root");
+        if (decisionRootAnchoredAt[root] == 0) {
+            decisionRootAnchoredAt[root] = block.timestamp;
+        }
+        emit DecisionRootAnchored(root, leafCount);
+    }
+
+    /**
+     * @notice Check that a decision hash is included under an anchored root.
+     * @dev    leaf = sha256(0x00 || decisionHash), node = sha256(0x01 || min(a, b) || max(a, b)).
+     */
+    function verifyDecisionProof(bytes32 root, bytes32 decisionHash, bytes32[] calldata proof)
+        external view returns (bool)
+    {
+        if (decisionRootAnchoredAt[root] == 0) {
+            return false;
+        }
+        bytes32 node = sha256(abi.encodePacked(bytes1(0x00), decisionHash));
+        for (uint256 i = 0; i < proof.length; i++) {
+            bytes32 sibling = proof[i];
+            node = node <= sibling
+                ? sha256(abi.encodePacked(bytes1(0x01), node, sibling))
+                : sha256(abi.encodePacked(bytes1(0x01), sibling, node));
+        }
+        return node == root;
+    }
+
     // â”€â”€ Risk hash registry â”€â”€â”€â”€â”€â”€â”€â”€â”€â”€â”€â”€â”€â”€â”€â”€â”€â”€â”€â”€â”€â”€â”€â”€â”€â”€â”€â”€â”€â”€â”€â”€â”€â”€â”€â”€â”€â”€â”€â”€â”€â”€â”€â”€â”€â”€â”€â”€â”€
 
     function storeRiskHash(address wallet, bytes32 riskHash) external onlyOwner {
@@ -0,0 +1,92 @@
+const { expect } = require("chai");
+const { ethers } = require("hardhat");
+
+// Builds trees the way the backend's DecisionMerkleTree does: leaf = sha256(0x00 || hash),
+// node = sha256(0x01 || min || max), and the last node of an odd level moves up unchanged.
+// Decision hash i is sha256("decision-i"), as in DecisionMerkleTreeTest.
+function decisionHash(i) {
+  return ethers.sha256(ethers.toUtf8Bytes(`decision-${i}`));
+}
+
+function leaf(hash) {
+  return ethers.sha256(ethers.concat(["0x00", hash]));
+}
+
+function node(a, b) {
+  const [low, high] = BigInt(a) <= BigInt(b) ? [a, b] : [b, a];
+  return ethers.sha256(ethers.concat(["0x01", low, high]));
+}
+
+function levels(hashes) {
+  const out = [hashes.map(leaf)];
+  while (out[out.length - 1].length > 1) {
+    const level = out[out.length - 1];
+    const parents = [];
+    for (let i = 0; i < level.length; i += 2) {
+      parents.push(i + 1 < level.length ? node(level[i], level[i + 1]) : level[i]);
+    }
+    out.push(parents);
+  }
+  return out;
+}
+
+function proof(hashes, index) {
+  const siblings = [];
+  let position = index;
+  for (const level of levels(hashes).slice(0, -1)) {
+    const sibling = position ^ 1;
+    if (sibling < level.length) {
+      siblings.push(level[sibling]);
+    }
+    position >>= 1;
+  }
+  return siblings;
+}
+
+describe("ChainTrust.verifyDecisionProof", function () {
+  let chainTrust;
+
+  beforeEach(async function () {
+    chainTrust = await (await ethers.getContractFactory("ChainTrust")).deploy();
+    await chainTrust.waitForDeployment();
+  });
+
+  // Same roots DecisionMerkleTreeTest expects from the backend.
+  const roots = {
+    1: "0xc97ab602a96e5be7ad8e53472d170f3d56473096c784237e5c0242d41cdaaf72",
+    2: "0x89371f2f7879260e45317f58b4e89c5320f8175fef464fa0b01e084cd68c3483",
+    3: "0xd3f8b77193cb5a6804b7e9b5e83925954c210972e4e37bf8ff0219e8166025dd",
+    4: "0x31bfbc1da9fa184e4b56059525f9a36024d13e7ca5d78362089a5fd6f61c5f5f",
+    5: "0xff9b73fa169aa26b42587ec7c287bdd5d5f6c753f47b622643f07f59304580ee",
+    7: "0xce24a5ee2d1b01b7bf1b599d783862187036966227aeffa4c496eb6387c99b31",
+    8: "0x447d7307c922385de5b3dcfc3807f91f868353119469d7fad4ff91d008f1ac38",
+  };
+
+  for (const [count, expectedRoot] of Object.entries(roots)) {
+    it(`accepts every leaf of a ${count}-leaf tree`, async function () {
+      const hashes = Array.from({ length: Number(count) }, (_, i) => decisionHash(i));
+      const root = levels(hashes).pop()[0];
+      expect(root).to.equal(expectedRoot);
+
+      await chainTrust.anchorDecisionRoot(root, hashes.length);
+      for (let i = 0; i < hashes.length; i++) {
+        expect(await chainTrust.verifyDecisionProof(root, hashes[i], proof(hashes, i))).to.equal(true);
+        expect(await chainTrust.verifyDecisionProof(root, decisionHash(100), proof(hashes, i))).to.equal(false);
+      }
+    });
+  }
+
+  it("rejects proofs for a root that was never anchored", async function () {
+    const hashes = [decisionHash(0), decisionHash(1)];
+    const root = levels(hashes).pop()[0];
+    expect(await chainTrust.verifyDecisionProof(root, hashes[0], proof(hashes, 0))).to.equal(false);
+  });
+
+  it("rejects an internal node presented as a decision hash", async function () {
+    const hashes = [0, 1, 2, 3].map(decisionHash);
+    const tree = levels(hashes);
+    const root = tree[2][0];
+    await chainTrust.anchorDecisionRoot(root, hashes.length);
+    expect(await chainTrust.verifyDecisionProof(root, tree[1][0], [tree[1][1]])).to.equal(false);
+  });
+});
@@ -1,11 +1,13 @@
+import hashlib
 import os
+from typing import List
 
 import joblib
 import numpy as np
-from fastapi import FastAPI, HTTPException
+from fastapi import FastAPI, HTTPException, Request
 from fastapi.middleware.cors import CORSMiddleware
 
-from predict_schema import FeatureSchema, RiskResult
+from predict_schema import BatchFeatureSchema, BatchRiskResult, FeatureSchema, RiskResult
 
 app = FastAPI(title="ChainTrust ML Service", version="2.0.0")
 
@@ -17,7 +19,14 @@ app.add_middleware(
 )
 
 MODEL_PATH = "/app/model/model.pkl"
+MAX_BATCH_SIZE = int(os.environ.get("MAX_BATCH_SIZE", "512"))
 _bundle = None  # {"model": ..., "features": [...]} 
+_model_version = None  # content hash of the loaded model.pkl; clients key cached scores on it
+
+# /predict_vectors body: rows of little-endian float64 in the model's feature order, identified
+# by a schema id the client reads from /health once instead of sending feature names per row.
+VECTOR_SCHEMA_VERSION = 1
+VECTOR_CONTENT_TYPE = "application/octet-stream"
 
 FEATURE_LABELS = {
     "wallet_age_days": "Wallet Age",
@@ -40,12 +49,15 @@ FEATURE_LABELS = {
 
 @app.on_event("startup")
 def load_model() -> None:
-    global _bundle
+    global _bundle, _model_version
     path = os.environ.get("MODEL_PATH", MODEL_PATH)
     if not os.path.exists(path):
         _bundle = None
+        _model_version = None
         return
 
+    with open(path, "rb") as fh:
+        _model_version = hashlib.sha256(fh.read()).hexdigest()[:16]
     loaded = joblib.load(path)
     if isinstance(loaded, dict) and "model" in loaded:
         _bundle = loaded
@@ -73,29 +85,93 @@ def load_model() -> None:
         }
 
 
+def _feature_schema_id(features: List[str]) -> str:
+    digest = hashlib.sha256(",".join(features).encode("utf-8")).hexdigest()[:12]
+    return f"v{VECTOR_SCHEMA_VERSION}:{digest}"
+
+
 @app.get("/health")
 def health() -> dict:
     return {
         "status": "ok",
         "model_loaded": _bundle is not None,
+        "model_version": _model_version,
         "features": _bundle["features"] if _bundle else [],
+        "feature_schema": _feature_schema_id(_bundle["features"]) if _bundle else None,
     }
 
 
 @app.post("/predict", response_model=RiskResult)
-def predict(feat: FeatureSchema) -> RiskResult:
+def predict(feat: FeatureSchema, explain: bool = True) -> RiskResult:
+    return _score([feat], explain)[0]
+
+
+@app.post("/predict_batch", response_model=BatchRiskResult)
+def predict_batch(req: BatchFeatureSchema, explain: bool = True) -> BatchRiskResult:
+    if len(req.items) > MAX_BATCH_SIZE:
+        raise HTTPException(status_code=413, detail=f"batch larger than {MAX_BATCH_SIZE} items")
+    return BatchRiskResult(
+        results=_score(req.items, explain) if req.items else [],
+        model_version=_model_version,
+    )
+
+
+@app.post("/predict_vectors", response_model=BatchRiskResult)
+async def predict_vectors(request: Request, explain: bool = True) -> BatchRiskResult:
+    """Batch scoring from a packed float64 matrix; see VECTOR_SCHEMA_VERSION."""
+    if _bundle is None:
+        raise HTTPException(status_code=503, detail="model.pkl not found; run train_model.py first")
+    feature_names = _bundle["features"]
+    expected = _feature_schema_id(feature_names)
+    if request.headers.get("x-feature-schema") != expected:
+        raise HTTPException(status_code=409, detail={"feature_schema": expected, "features": feature_names})
+    if request.headers.get("content-type", "").split(";")[0].strip() != VECTOR_CONTENT_TYPE:
+        raise HTTPException(status_code=415, detail=f"expected {VECTOR_CONTENT_TYPE}")
+
+    body = await request.body()
+    row_bytes = 8 * len(feature_names)
+    if len(body) % row_bytes != 0:
+        raise HTTPException(status_code=422, detail=f"body is not a whole number of {row_bytes}-byte rows")
+    raw = np.frombuffer(body, dtype="<f8").reshape(-1, len(feature_names)).astype(np.float64)
+    if raw.shape[0] > MAX_BATCH_SIZE:
+        raise HTTPException(status_code=413, detail=f"batch larger than {MAX_BATCH_SIZE} items")
+    if not np.all(np.isfinite(raw)) or np.any(raw < 0):
+        raise HTTPException(status_code=422, detail="feature values must be finite and non-negative")
+
+    values = [dict(zip(feature_names, row)) for row in raw.tolist()]
+    return BatchRiskResult(
+        results=_score_matrix(raw, values, explain) if values else [],
+        model_version=_model_version,
+    )
+
+
+def _score(feats: List[FeatureSchema], explain: bool = True) -> List[RiskResult]:
+    """Scores all rows with one predict_proba call, plus one per feature for the sensitivities.
+
+    With explain=False the sensitivity pass is skipped and feature_contributions is null;
+    the backend does this when it computes contributions itself from model.json.
+    """
     if _bundle is None:
         raise HTTPException(status_code=503, detail="model.pkl not found; run train_model.py first")
 
-    model = _bundle["model"]
     feature_names = _bundle["features"]
 
-    # Build feature dict and handle legacy avg_tx_value alias.
-    feat_dict = feat.dict()
-    if feat_dict.get("avg_tx_value_eth") is None and feat_dict.get("avg_tx_value") is not None:
-        feat_dict["avg_tx_value_eth"] = feat_dict["avg_tx_value"]
+    rows = []
+    values = []
+    for feat in feats:
+        # Build feature dict and handle legacy avg_tx_value alias.
+        feat_dict = feat.dict()
+        if feat_dict.get("avg_tx_value_eth") is None and feat_dict.get("avg_tx_value") is not None:
+            feat_dict["avg_tx_value_eth"] = feat_dict["avg_tx_value"]
+        rows.append([feat_dict.get(f, 0.0) for f in feature_names])
+        values.append(feat_dict)
+    return _score_matrix(np.array(rows, dtype=np.float64), values, explain)
+
 
-    raw = np.array([[feat_dict.get(f, 0.0) for f in feature_names]], dtype=np.float64)
+def _score_matrix(raw: np.ndarray, values: List[dict], explain: bool) -> List[RiskResult]:
+    """Scores a (rows x features) matrix in model feature order; values feed the denial reasons."""
+    model = _bundle["model"]
+    feature_names = _bundle["features"]
 
     # Log-transform skewed features (same indices as training).
     log_idx = [1, 3, 6, 7, 8, 9, 10, 13]
@@ -104,56 +180,61 @@ def predict(feat: FeatureSchema) -> RiskResult:
 
     try:
         if hasattr(model, "predict_proba"):
-            prob = float(model.predict_proba(raw)[0][1])
+            probs = model.predict_proba(raw)[:, 1].astype(np.float64)
         else:
-            prob = float(model.predict(raw)[0])
+            probs = np.asarray(model.predict(raw), dtype=np.float64)
     except Exception as exc:
         raise HTTPException(status_code=500, detail=str(exc))
 
-    prob = max(0.0, min(1.0, prob))
-
-    # Risk is inverse of trust; prob is P(approved).
-    risk_score = 1.0 - prob
-    level = "LOW" if risk_score < 0.35 else ("MEDIUM" if risk_score < 0.65 else "HIGH")
+    probs = np.clip(probs, 0.0, 1.0)
 
-    # Feature contribution via simple sensitivity analysis.
-    contributions = {}
-    for i, fname in enumerate(feature_names):
+    # Feature contribution via simple sensitivity analysis, one column at a time for all rows.
+    contributions = [{} if explain else None for _ in values]
+    for i, fname in enumerate(feature_names if explain else []):
         perturbed = raw.copy()
-        perturbed[0, i] = perturbed[0, i] * 1.1 + 0.01
+        perturbed[:, i] = perturbed[:, i] * 1.1 + 0.01
         try:
-            p2 = float(model.predict_proba(perturbed)[0][1])
-            contributions[fname] = round(p2 - prob, 4)
+            deltas = model.predict_proba(perturbed)[:, 1] - probs
         except Exception:
-            contributions[fname] = 0.0
-
-    denial_reasons = _build_denial_reasons(feat, prob)
-
-    return RiskResult(
-        risk_score=risk_score,
-        risk_level=level,
-        feature_contributions=contributions,
-        denial_reasons=denial_reasons,
-    )
-
+            deltas = np.zeros(len(values))
+        for row, delta in enumerate(deltas):
+            contributions[row][fname] = round(float(delta), 4)
+
+    results = []
+    for row, feat in enumerate(values):
+        prob = float(probs[row])
+        # Risk is inverse of trust; prob is P(approved).
+        risk_score = 1.0 - prob
+        level = "LOW" if risk_score < 0.35 else ("MEDIUM" if risk_score < 0.65 else "HIGH")
+        results.append(RiskResult(
+            risk_score=risk_score,
+            risk_level=level,
+            feature_contributions=contributions[row],
+            denial_reasons=_build_denial_reasons(feat, prob),
+        ))
+    return results
+
+
+def _build_denial_reasons(feat: dict, trust_prob: float) -> list:
+    def value(name: str) -> float:
+        return feat.get(name) or 0.0
 
-def _build_denial_reasons(feat: FeatureSchema, trust_prob: float) -> list:
     reasons = []
-    if feat.wallet_age_days < 60:
+    if value("wallet_age_days") < 60:
         reasons.append("Wallet age below 60 days - insufficient history")
-    if feat.tx_count < 10:
+    if value("tx_count") < 10:
         reasons.append("Very low transaction count - limited activity")
-    if feat.liquidation_events > 0:
-        reasons.append(f"{feat.liquidation_events} liquidation event(s) - high-risk history")
-    if feat.flash_loan_count > 2:
-        reasons.append(f"{feat.flash_loan_count} flash loans detected - elevated manipulation risk")
-    if feat.rugpull_exposure_score > 0.3:
+    if value("liquidation_events") > 0:
+        reasons.append(f"{int(value('liquidation_events'))} liquidation event(s) - high-risk history")
+    if value("flash_loan_count") > 2:
+        reasons.append(f"{int(value('flash_loan_count'))} flash loans detected - elevated manipulation risk")
+    if value("rugpull_exposure_score") > 0.3:
         reasons.append("High exposure to rugpull contracts")
-    if feat.collateral_ratio < 1.2:
+    if value("collateral_ratio") < 1.2:
         reasons.append("Insufficient collateral ratio for requested loan")
-    if feat.dormant_period_days > 180:
+    if value("dormant_period_days") > 180:
         reasons.append("Long dormant period suggests inactive wallet")
-    if feat.incoming_outgoing_ratio < 0.2:
+    if value("incoming_outgoing_ratio") < 0.2:
         reasons.append("Very few incoming transactions relative to outgoing")
     if trust_prob > 0.5 and not reasons:
         reasons.append("Wallet meets all credit criteria")
@@ -1,5 +1,5 @@
 from pydantic import BaseModel, Field
-from typing import Optional, Dict
+from typing import Optional, Dict, List
 
 
 class FeatureSchema(BaseModel):
@@ -31,3 +31,12 @@ class RiskResult(BaseModel):
     risk_level: str
     feature_contributions: Optional[Dict[str, float]] = None
     denial_reasons: Optional[list] = None
+
+
+class BatchFeatureSchema(BaseModel):
+    items: List[FeatureSchema]
+
+
+class BatchRiskResult(BaseModel):
+    results: List[RiskResult]
+    model_version: Optional[str] = None
@@ -0,0 +1,195 @@
+"""
+Export a trained ChainTrust model bundle to a portable JSON document that the
+backend can score in-process (see LocalRiskScorer in the backend).
+
+The export covers the pipeline train_model.py produces:
+  CalibratedClassifierCV(FrozenEstimator(Pipeline(StandardScaler, VotingClassifier)))
+with gradient boosting, random forest / extra trees, or logistic regression members.
+Uncalibrated pipelines and single estimators are exported as well.
+
+Usage:
+  python ml-train/export_model.py --model ml-service/model/model.pkl --out ml-service/model/model.json
+"""
+
+from __future__ import annotations
+
+import argparse
+import json
+from datetime import datetime, timezone
+from pathlib import Path
+
+import joblib
+import numpy as np
+from sklearn.calibration import CalibratedClassifierCV
+from sklearn.ensemble import (
+    ExtraTreesClassifier,
+    GradientBoostingClassifier,
+    RandomForestClassifier,
+    VotingClassifier,
+)
+from sklearn.linear_model import LogisticRegression
+from sklearn.pipeline import Pipeline
+from sklearn.preprocessing import StandardScaler
+
+FORMAT = "chaintrust-model"
+FORMAT_VERSION = 1
+DEFAULT_LOG_IDX = [1, 3, 6, 7, 8, 9, 10, 13]
+
+
+def _unfreeze(estimator):
+    # FrozenEstimator keeps the fitted model in .estimator
+    return getattr(estimator, "estimator", estimator) if type(estimator).__name__ == "FrozenEstimator" else estimator
+
+
+def _export_tree(tree, classifier: bool) -> dict:
+    t = tree.tree_
+    if classifier:
+        counts = t.value[:, 0, :]
+        totals = counts.sum(axis=1)
+        totals[totals == 0] = 1.0
+        value = counts[:, 1] / totals
+    else:
+        value = t.value[:, 0, 0]
+    return {
+        "left": t.children_left.tolist(),
+        "right": t.children_right.tolist(),
+        "feature": t.feature.tolist(),
+        "threshold": t.threshold.tolist(),
+        "value": [float(v) for v in value],
+        # Weighted samples per node; lets the scorer derive node expectations for path attributions.
+        "cover": [float(v) for v in t.weighted_n_node_samples],
+    }
+
+
+def _export_member(est, weight: float, n_features: int) -> dict:
+    if isinstance(est, GradientBoostingClassifier):
+        if est.n_classes_ != 2:
+            raise ValueError("Only binary gradient boosting is supported")
+        zero = np.zeros((1, n_features))
+        tree_sum = sum(float(stage[0].predict(zero)[0]) for stage in est.estimators_)
+        init_raw = float(est.decision_function(zero)[0]) - est.learning_rate * tree_sum
+        return {
+            "type": "gradient_boosting",
+            "weight": weight,
+            "init_raw": init_raw,
+            "learning_rate": float(est.learning_rate),
+            "trees": [_export_tree(stage[0], classifier=False) for stage in est.estimators_],
+        }
+    if isinstance(est, (RandomForestClassifier, ExtraTreesClassifier)):
+        if len(est.classes_) != 2:
+            raise ValueError("Only binary forests are supported")
+        return {
+            "type": "random_forest",
+            "weight": weight,
+            "trees": [_export_tree(tree, classifier=True) for tree in est.estimators_],
+        }
+    if isinstance(est, LogisticRegression):
+        if est.coef_.shape[0] != 1:
+            raise ValueError("Only binary logistic regression is supported")
+        return {
+            "type": "logistic",
+            "weight": weight,
+            "coef": [float(c) for c in est.coef_[0]],
+            "intercept": float(est.intercept_[0]),
+        }
+    raise ValueError(f"Unsupported estimator for export: {type(est).__name__}")
+
+
+def _export_pipeline(model, n_features: int) -> tuple[dict | None, list[dict]]:
+    scaler = None
+    final = model
+    if isinstance(model, Pipeline):
+        steps = [s for _, s in model.steps if s not in (None, "passthrough")]
+        for step in steps[:-1]:
+            if not isinstance(step, StandardScaler):
+                raise ValueError(f"Unsupported pipeline step for export: {type(step).__name__}")
+            if scaler is not None:
+                raise ValueError("Only one StandardScaler step is supported")
+            scaler = step
+        final = steps[-1]
+
+    scaler_doc = None
+    if scaler is not None:
+        mean = scaler.mean_ if scaler.with_mean else np.zeros(n_features)
+        scale = scaler.scale_ if scaler.with_std else np.ones(n_features)
+        scaler_doc = {"mean": [float(v) for v in mean], "scale": [float(v) for v in scale]}
+
+    if isinstance(final, VotingClassifier):
+        if final.voting != "soft":
+            raise ValueError("Only soft voting can be exported")
+        weights = final.weights if final.weights is not None else [1.0] * len(final.estimators)
+        active = [w for (_, est), w in zip(final.estimators, weights) if est != "drop"]
+        members = [
+            _export_member(est, float(w), n_features)
+            for est, w in zip(final.estimators_, active)
+        ]
+    else:
+        members = [_export_member(final, 1.0, n_features)]
+    return scaler_doc, members
+
+
+def export_model(bundle, out_path: Path, log_idx: list[int] | None = None) -> dict:
+    """Writes the JSON export for a bundle ({"model": ..., "features": [...]}) or a bare model."""
+    if isinstance(bundle, dict) and "model" in bundle:
+        model = bundle["model"]
+        features = list(bundle["features"])
+        trained_at = bundle.get("trained_at")
+    else:
+        from train_model import FEATURES
+
+        model = bundle
+        features = list(FEATURES)
+        trained_at = None
+    n_features = len(features)
+    log_idx = [i for i in (log_idx if log_idx is not None else DEFAULT_LOG_IDX) if i < n_features]
+
+    calibrators = []
+    if isinstance(model, CalibratedClassifierCV):
+        base = None
+        for cc in model.calibrated_classifiers_:
+            est = _unfreeze(cc.estimator)
+            if base is None:
+                base = est
+            elif est is not base:
+                raise ValueError("Calibrated folds use different base models; export a FrozenEstimator model")
+            if len(cc.calibrators) != 1:
+                raise ValueError("Only binary calibration is supported")
+            iso = cc.calibrators[0]
+            if not hasattr(iso, "X_thresholds_"):
+                raise ValueError("Only isotonic calibration is supported")
+            calibrators.append({
+                "x": [float(v) for v in iso.X_thresholds_],
+                "y": [float(v) for v in iso.y_thresholds_],
+            })
+        model = base
+
+    scaler_doc, members = _export_pipeline(_unfreeze(model), n_features)
+
+    doc = {
+        "format": FORMAT,
+        "format_version": FORMAT_VERSION,
+        "exported_at": datetime.now(timezone.utc).isoformat(),
+        "trained_at": trained_at,
+        "features": features,
+        "log1p_indices": log_idx,
+        "scaler": scaler_doc,
+        "estimators": members,
+        "calibrators": calibrators,
+    }
+    out_path.parent.mkdir(parents=True, exist_ok=True)
+    out_path.write_text(json.dumps(doc, separators=(",", ":")), encoding="utf-8")
+    return doc
+
+
+def parse_args() -> argparse.Namespace:
+    root = Path(__file__).resolve().parent.parent
+    parser = argparse.ArgumentParser(description="Export model.pkl to JSON for in-JVM scoring")
+    parser.add_argument("--model", type=Path, default=root / "ml-service" / "model" / "model.pkl")
+    parser.add_argument("--out", type=Path, default=root / "ml-service" / "model" / "model.json")
+    return parser.parse_args()
+
+
+if __name__ == "__main__":
+    args = parse_args()
+    export_model(joblib.load(args.model), args.out)
+    print(f"Model exported: {args.out}")
@@ -0,0 +1,88 @@
+"""
+Writes the scorer parity fixture for the backend's LocalRiskModelParityTest: a compact model
+with the pipeline shape train_model.py produces
+  CalibratedClassifierCV(FrozenEstimator(Pipeline(StandardScaler, VotingClassifier(GB, RF))))
+its export_model.py JSON, and scikit-learn's predict_proba for a fixed set of wallets.
+
+Re-run after changing export_model.py or the scorer, and commit both files:
+  python ml-train/export_parity_fixture.py
+"""
+
+from __future__ import annotations
+
+import argparse
+import json
+from pathlib import Path
+
+import numpy as np
+import pandas as pd
+import sklearn
+from sklearn.calibration import CalibratedClassifierCV
+from sklearn.ensemble import GradientBoostingClassifier, RandomForestClassifier, VotingClassifier
+from sklearn.frozen import FrozenEstimator
+from sklearn.model_selection import train_test_split
+from sklearn.pipeline import Pipeline
+from sklearn.preprocessing import StandardScaler
+
+from export_model import export_model
+from make_dataset import make_synthetic
+from train_model import FEATURES, build_X
+
+
+def build_compact_pipeline() -> Pipeline:
+    # Same members and settings style as train_model.build_base_pipeline, with few shallow
+    # trees so the fixture stays small.
+    gb = GradientBoostingClassifier(
+        n_estimators=12, max_depth=3, learning_rate=0.1, min_samples_leaf=20,
+        subsample=0.85, max_features="sqrt", random_state=42,
+    )
+    rf = RandomForestClassifier(
+        n_estimators=8, max_depth=5, min_samples_leaf=10, max_features="sqrt", random_state=42, n_jobs=1,
+    )
+    voter = VotingClassifier(estimators=[("gb", gb), ("rf", rf)], voting="soft", weights=[2, 1])
+    return Pipeline([("scaler", StandardScaler()), ("clf", voter)])
+
+
+def edge_rows() -> pd.DataFrame:
+    zero = {f: 0.0 for f in FEATURES}
+    whale = dict(zero, wallet_age_days=3000, tx_count=5000, avg_tx_value_eth=50, unique_contracts=200,
+                 tx_variance=10, max_single_tx_eth=500, defi_protocol_count=50, collateral_ratio=4)
+    risky = dict(zero, wallet_age_days=1, tx_count=1, flash_loan_count=20, liquidation_events=10,
+                 dormant_period_days=365, rugpull_exposure_score=1, collateral_ratio=0.1)
+    return pd.DataFrame([zero, whale, risky])
+
+
+def main() -> None:
+    root = Path(__file__).resolve().parent.parent
+    parser = argparse.ArgumentParser(description="Write the Java scorer parity fixture")
+    parser.add_argument("--out-dir", type=Path,
+                        default=root / "backend" / "src" / "test" / "resources" / "model-parity")
+    parser.add_argument("--rows", type=int, default=200)
+    args = parser.parse_args()
+
+    train = make_synthetic(n=4000, seed=11)
+    X = build_X(train)
+    y = train["label"].values
+    X_fit, X_cal, y_fit, y_cal = train_test_split(X, y, test_size=0.25, random_state=11, stratify=y)
+    base = build_compact_pipeline().fit(X_fit, y_fit)
+    model = CalibratedClassifierCV(FrozenEstimator(base), method="isotonic").fit(X_cal, y_cal)
+
+    bundle = {"model": model, "features": FEATURES, "trained_at": None}
+    export_model(bundle, args.out_dir / "model.json")
+
+    wallets = pd.concat([make_synthetic(n=args.rows, seed=23)[FEATURES], edge_rows()], ignore_index=True)
+    probabilities = model.predict_proba(build_X(wallets))[:, 1]
+    expected = {
+        "recorded_with": f"scikit-learn {sklearn.__version__}",
+        "features": FEATURES,
+        "rows": [
+            {"values": [float(v) for v in row], "probability": float(p)}
+            for row, p in zip(wallets[FEATURES].astype(np.float64).values, probabilities)
+        ],
+    }
+    (args.out_dir / "expected.json").write_text(json.dumps(expected, indent=1), encoding="utf-8")
+    print(f"Parity fixture written to {args.out_dir}")
+
+
+if __name__ == "__main__":
+    main()
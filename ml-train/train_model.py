@@ -9,6 +9,7 @@ Synthetic mode is available only when --allow-synthetic is set.
 
 Outputs:
 - ml-service/model/model.pkl
+- ml-service/model/model.json (portable export for in-JVM scoring)
 - ml-service/model/policy_thresholds.json
 - ml-service/model/metrics.json
 """
@@ -34,6 +35,7 @@ from sklearn.model_selection import GroupShuffleSplit, StratifiedGroupKFold, Str
 from sklearn.pipeline import Pipeline
 from sklearn.preprocessing import StandardScaler
 
+from export_model import export_model
 from make_dataset import make_synthetic
 
 FEATURES = [
@@ -264,6 +266,7 @@ def train_and_save(
     allow_synthetic: bool,
     min_samples: int,
     model_path: Path,
+    model_json_path: Path,
     thresholds_path: Path,
     metrics_path: Path,
 ) -> None:
@@ -400,6 +403,7 @@ def train_and_save(
         "sample_count": int(len(df)),
     }
     joblib.dump(bundle, model_path)
+    export_model(bundle, model_json_path, LOG_IDX)
 
     thresholds_payload = {
         "generated_at": datetime.now(timezone.utc).isoformat(),
@@ -435,12 +439,14 @@ def train_and_save(
         },
         "artifacts": {
             "model": str(model_path),
+            "model_json": str(model_json_path),
             "policy_thresholds": str(thresholds_path),
         },
     }
     metrics_path.write_text(json.dumps(metrics_payload, indent=2), encoding="utf-8")
 
     print(f"Model saved: {model_path}")
+    print(f"Model export saved: {model_json_path}")
     print(f"Policy thresholds saved: {thresholds_path}")
     print(f"Metrics saved: {metrics_path}")
 
@@ -448,6 +454,7 @@ def train_and_save(
 def parse_args() -> argparse.Namespace:
     root = Path(__file__).resolve().parent.parent
     default_model = root / "ml-service" / "model" / "model.pkl"
+    default_model_json = root / "ml-service" / "model" / "model.json"
     default_thresholds = root / "ml-service" / "model" / "policy_thresholds.json"
     default_metrics = root / "ml-service" / "model" / "metrics.json"
     default_csv = Path(__file__).resolve().parent / "data" / "loan_outcomes.csv"
@@ -459,6 +466,7 @@ def parse_args() -> argparse.Namespace:
     parser.add_argument("--allow-synthetic", action="store_true")
     parser.add_argument("--min-samples", type=int, default=20)
     parser.add_argument("--model-out", type=Path, default=default_model)
+    parser.add_argument("--model-json-out", type=Path, default=default_model_json)
     parser.add_argument("--thresholds-out", type=Path, default=default_thresholds)
     parser.add_argument("--metrics-out", type=Path, default=default_metrics)
     return parser.parse_args()
@@ -474,6 +482,7 @@ if __name__ == "__main__":
             allow_synthetic=args.allow_synthetic,
             min_samples=args.min_samples,
             model_path=args.model_out,
+            model_json_path=args.model_json_out,
             thresholds_path=args.thresholds_out,
             metrics_path=args.metrics_out,
         )
@@ -0,0 +1,113 @@
+"""
+Checks that the backend's in-JVM scorer (ML_SCORING_BACKEND=local, model.json) returns
+the same risk scores as ml-service (model.pkl) for a set of random wallets.
+
+Start ml-service and a backend running with ML_SCORING_BACKEND=local against the same
+model directory, then:
+  python scripts/check_scorer_parity.py --backend-url http://localhost:8080 --ml-url http://localhost:8000
+
+Exits non-zero if any risk score differs by more than --tolerance or any risk level differs.
+"""
+
+from __future__ import annotations
+
+import argparse
+import json
+import random
+import sys
+from typing import Any, Dict, List
+from urllib.request import Request, urlopen
+
+
+def http_json(url: str, payload: Any, timeout: int) -> Any:
+    req = Request(
+        url=url,
+        method="POST",
+        data=json.dumps(payload).encode("utf-8"),
+        headers={"Content-Type": "application/json"},
+    )
+    with urlopen(req, timeout=timeout) as resp:
+        return json.loads(resp.read().decode("utf-8"))
+
+
+def random_wallet(rng: random.Random, i: int) -> Dict[str, Any]:
+    # Values stay inside FeatureService.sanitize bounds so both sides score identical inputs.
+    return {
+        "wallet_age_days": rng.randint(0, 3000),
+        "tx_count": rng.randint(0, 5000),
+        "avg_tx_value_eth": round(rng.expovariate(1.5), 6),
+        "unique_contracts": rng.randint(0, 200),
+        "incoming_outgoing_ratio": round(rng.random(), 6),
+        "tx_variance": round(rng.expovariate(0.5), 6),
+        "defi_protocol_count": rng.randint(0, 15),
+        "flash_loan_count": rng.choice([0, 0, 0, 1, 2, 5]),
+        "liquidation_events": rng.choice([0, 0, 0, 1, 3]),
+        "nft_transaction_count": rng.randint(0, 300),
+        "max_single_tx_eth": round(rng.expovariate(0.2), 6),
+        "dormant_period_days": round(rng.uniform(0, 400), 3),
+        "collateral_ratio": round(rng.uniform(0, 4), 4),
+        "cross_chain_count": rng.randint(0, 40),
+        "rugpull_exposure_score": round(rng.random() * rng.random(), 6),
+        "_address": "0x" + f"{i:040x}",
+    }
+
+
+def to_backend(w: Dict[str, Any]) -> Dict[str, Any]:
+    return {
+        "address": w["_address"],
+        "walletAgeDays": w["wallet_age_days"],
+        "txCount": w["tx_count"],
+        "avgTxValue": w["avg_tx_value_eth"],
+        "uniqueContracts": w["unique_contracts"],
+        "incomingOutgoingRatio": w["incoming_outgoing_ratio"],
+        "txVariance": w["tx_variance"],
+        "defiProtocolCount": w["defi_protocol_count"],
+        "flashLoanCount": w["flash_loan_count"],
+        "liquidationEvents": w["liquidation_events"],
+        "nftTransactionCount": w["nft_transaction_count"],
+        "maxSingleTxEth": w["max_single_tx_eth"],
+        "dormantPeriodDays": w["dormant_period_days"],
+        "collateralRatio": w["collateral_ratio"],
+        "crossChainCount": w["cross_chain_count"],
+        "rugpullExposureScore": w["rugpull_exposure_score"],
+    }
+
+
+def main() -> int:
+    parser = argparse.ArgumentParser(description="Compare backend local scoring with ml-service")
+    parser.add_argument("--backend-url", default="http://localhost:8080")
+    parser.add_argument("--ml-url", default="http://localhost:8000")
+    parser.add_argument("--samples", type=int, default=500)
+    parser.add_argument("--seed", type=int, default=7)
+    parser.add_argument("--tolerance", type=float, default=1e-6)
+    parser.add_argument("--timeout", type=int, default=120)
+    args = parser.parse_args()
+
+    rng = random.Random(args.seed)
+    wallets: List[Dict[str, Any]] = [random_wallet(rng, i) for i in range(args.samples)]
+
+    ml_items = [{k: v for k, v in w.items() if not k.startswith("_")} for w in wallets]
+    remote = http_json(args.ml_url.rstrip("/") + "/predict_batch", {"items": ml_items}, args.timeout)["results"]
+    local = http_json(args.backend_url.rstrip("/") + "/risk/batch", [to_backend(w) for w in wallets], args.timeout)
+
+    if len(remote) != len(local):
+        print(f"Result count mismatch: ml-service={len(remote)} backend={len(local)}")
+        return 1
+
+    worst = 0.0
+    failures = 0
+    for i, (r, l) in enumerate(zip(remote, local)):
+        diff = abs(float(r["risk_score"]) - float(l["riskScore"]))
+        worst = max(worst, diff)
+        if diff > args.tolerance or r["risk_level"] != l["riskLevel"]:
+            failures += 1
+            if failures <= 10:
+                print(f"[{i}] ml-service={r['risk_score']:.10f}/{r['risk_level']} "
+                      f"backend={l['riskScore']:.10f}/{l['riskLevel']}")
+
+    print(f"Compared {len(local)} wallets; max |delta risk| = {worst:.3e}; mismatches = {failures}")
+    return 1 if failures else 0
+
+
+if __name__ == "__main__":
+    sys.exit(main())
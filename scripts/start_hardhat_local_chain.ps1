@@ -78,6 +78,7 @@ Set-EnvValue -FilePath $EnvPath -Key "CONTRACT_ADDRESS" -Value $contractAddress
 Set-EnvValue -FilePath $EnvPath -Key "BLOCKCHAIN_ENABLED" -Value "true"
 Set-EnvValue -FilePath $EnvPath -Key "BLOCKCHAIN_CHAIN_ID" -Value "31337"
 Set-EnvValue -FilePath $EnvPath -Key "BLOCKCHAIN_PRIVATE_KEY" -Value $DefaultDevPk
+Set-EnvValue -FilePath $EnvPath -Key "BLOCKCHAIN_BATCH_ENABLED" -Value "true"
 
 if ($RestartBackend) {
     Push-Location $Root
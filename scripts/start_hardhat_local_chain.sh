@@ -45,6 +45,7 @@ set_env "CONTRACT_ADDRESS" "${CONTRACT_ADDRESS}"
 set_env "BLOCKCHAIN_ENABLED" "true"
 set_env "BLOCKCHAIN_CHAIN_ID" "31337"
 set_env "BLOCKCHAIN_PRIVATE_KEY" "${DEFAULT_DEV_PK}"
+set_env "BLOCKCHAIN_BATCH_ENABLED" "true"
 
 pushd "${ROOT_DIR}" >/dev/null
 docker compose up -d backend
@@ -0,0 +1,97 @@
+"""
+Verifies a decision's Merkle inclusion proof from the backend (BLOCKCHAIN_MODE=anchor) without
+trusting the backend's own check. Recomputes the root from the decision hash and the proof
+path, then optionally asks the ChainTrust contract whether that root is anchored.
+
+  python scripts/verify_decision_proof.py <decisionHash> --backend-url http://localhost:8080
+  python scripts/verify_decision_proof.py <decisionHash> --rpc-url http://localhost:8545 --contract 0x...
+
+Exits non-zero if the recomputed root differs from the reported one, or if --rpc-url is given
+and the root is not anchored on chain.
+"""
+
+from __future__ import annotations
+
+import argparse
+import hashlib
+import json
+import sys
+from typing import Any, List
+from urllib.request import Request, urlopen
+
+
+def http_get(url: str, timeout: int) -> Any:
+    with urlopen(url, timeout=timeout) as resp:
+        return json.loads(resp.read().decode("utf-8"))
+
+
+def from_hex(value: str) -> bytes:
+    return bytes.fromhex(value[2:] if value.lower().startswith("0x") else value)
+
+
+def compute_root(decision_hash: str, proof: List[str]) -> bytes:
+    # Same hashing as DecisionMerkleTree and ChainTrust.verifyDecisionProof.
+    node = hashlib.sha256(b"\x00" + from_hex(decision_hash)).digest()
+    for sibling_hex in proof:
+        sibling = from_hex(sibling_hex)
+        low, high = (node, sibling) if node <= sibling else (sibling, node)
+        node = hashlib.sha256(b"\x01" + low + high).digest()
+    return node
+
+
+def anchored_at(rpc_url: str, contract: str, root: bytes, timeout: int) -> int:
+    # decisionRootAnchoredAt(bytes32) selector = keccak256("decisionRootAnchoredAt(bytes32)")[:4]
+    data = "0x" + "753f2ac5" + root.hex()
+    payload = {
+        "jsonrpc": "2.0",
+        "id": 1,
+        "method": "eth_call",
+        "params": [{"to": contract, "data": data}, "latest"],
+    }
+    req = Request(
+        url=rpc_url,
+        method="POST",
+        data=json.dumps(payload).encode("utf-8"),
+        headers={"Content-Type": "application/json"},
+    )
+    with urlopen(req, timeout=timeout) as resp:
+        body = json.loads(resp.read().decode("utf-8"))
+    if "error" in body:
+        raise RuntimeError(body["error"])
+    return int(body["result"], 16)
+
+
+def main() -> int:
+    parser = argparse.ArgumentParser(description=__doc__, formatter_class=argparse.RawDescriptionHelpFormatter)
+    parser.add_argument("decision_hash")
+    parser.add_argument("--backend-url", default="http://localhost:8080")
+    parser.add_argument("--rpc-url", default="")
+    parser.add_argument("--contract", default="")
+    parser.add_argument("--timeout", type=int, default=15)
+    args = parser.parse_args()
+
+    decision_hash = args.decision_hash.lower().removeprefix("0x")
+    proof = http_get(f"{args.backend_url.rstrip('/')}/loan/{decision_hash}/proof", args.timeout)
+    root = compute_root(decision_hash, proof["proof"])
+    reported = from_hex(proof["merkleRoot"])
+    print(f"anchor {proof['anchorId']}: leaf {proof['leafIndex']} of {proof['leafCount']}, "
+          f"{len(proof['proof'])} proof step(s), status {proof['onChainStatus']}")
+    print(f"recomputed root 0x{root.hex()}")
+    if root != reported:
+        print(f"MISMATCH: backend reported {proof['merkleRoot']}")
+        return 1
+
+    if args.rpc_url:
+        if not args.contract:
+            print("--contract is required with --rpc-url")
+            return 2
+        timestamp = anchored_at(args.rpc_url, args.contract, root, args.timeout)
+        if timestamp == 0:
+            print("root is NOT anchored on chain")
+            return 1
+        print(f"root anchored on chain at unix time {timestamp}")
+    return 0
+
+
+if __name__ == "__main__":
+    sys.exit(main())